@@ -1,18 +1,32 @@
 package com.basilalasadi.fasters;
 
 import android.app.Application;
+import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.util.Log;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.preference.PreferenceManager;
 
+import com.basilalasadi.fasters.bloc.CountdownBloc;
 import com.basilalasadi.fasters.database.CitiesDatabase;
+import com.basilalasadi.fasters.executors.AppExecutors;
+import com.basilalasadi.fasters.executors.StartupGraph;
+import com.basilalasadi.fasters.logic.TimingsCache;
 import com.basilalasadi.fasters.logic.settings.SettingsChangeListener;
+import com.basilalasadi.fasters.logic.settings.SettingsDelta;
 import com.basilalasadi.fasters.logic.settings.SettingsManager;
+import com.basilalasadi.fasters.model.CountdownViewModel;
+import com.basilalasadi.fasters.service.RemindersService;
 import com.basilalasadi.fasters.view.AppTheme;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 
 public class FastersApplication extends Application implements SettingsChangeListener {
 	
@@ -29,23 +43,96 @@ public class FastersApplication extends Application implements SettingsChangeLis
 	
 	
 	private AppTheme currentAppTheme = null;
+	private StartupGraph.Task firstViewModelTask;
+	private volatile CountdownViewModel firstViewModel = null;
+	private Set<String> reminderKeys;
+	private Set<String> calculationKeys;
+	private Set<String> locationKeys;
 	
 	@Override
 	public void onCreate() {
 		super.onCreate();
 		
-		CitiesDatabase.getInstance(this);
+		final CitiesDatabase citiesDatabase = CitiesDatabase.getInstance(this);
+		final SettingsManager settingsManager = SettingsManager.getInstance(this);
+		
+		StartupGraph startup = new StartupGraph(AppExecutors.ioExecutor);
+		
+		StartupGraph.Task database = startup.add("cities database", citiesDatabase::initialize);
+		startup.add("geo index", citiesDatabase::buildGeoIndex, database);
+		
+		StartupGraph.Task settings = startup.add("settings", () -> settingsManager.ensureSettingsInitialized(this));
+		firstViewModelTask = startup.add("first countdown",
+				() -> firstViewModel = CountdownBloc.computeViewModel(this), settings);
+		
+		startup.start();
+		
+		// Activities read the settings as soon as they are created.
+		try {
+			settings.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		reminderKeys = new HashSet<>(Arrays.asList(
+				getString(R.string.settings_key_all_notifications),
+				getString(R.string.settings_key_prefast_meal_reminder),
+				getString(R.string.settings_key_water_reminder),
+				getString(R.string.settings_key_prepare_breakfast_reminder),
+				getString(R.string.settings_key_breakfast_near_reminder)));
+		calculationKeys = TimingsCache.getInstance(this).getCalculationKeys();
+		locationKeys = new HashSet<>(Arrays.asList(
+				getString(R.string.settings_key_country),
+				getString(R.string.settings_key_city)));
 		
-		SettingsManager settingsManager = SettingsManager.getInstance(this);
-		settingsManager.ensureSettingsInitialized(this);
 		settingsManager.addSettingsChangeListener(this);
+		
+		// Zone offsets are baked into the timeline, so it is recomputed for the new zone.
+		registerReceiver(new BroadcastReceiver() {
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				Log.d(TAG, "time zone changed, reloading timings.");
+				CountdownBloc.getInstance().addEvent(new CountdownBloc.LoadTimingsEvent(FastersApplication.this));
+			}
+		}, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+	}
+	
+	/**
+	 * Takes the countdown computed at startup, waiting for it if it is not ready yet. Only the
+	 * first call gets it.
+	 * @param timeoutMillis Maximum time to wait.
+	 * @return the view model, or null if not ready within the timeout or already taken.
+	 */
+	public CountdownViewModel takeFirstViewModel(long timeoutMillis) {
+		try {
+			firstViewModelTask.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		CountdownViewModel viewModel = firstViewModel;
+		firstViewModel = null;
+		return viewModel;
 	}
 	
 	@Override
-	public void onSettingsChnage(SharedPreferences prefs, String key) {
-		if (key.equals("theme")) {
+	public void onSettingsChange(SettingsDelta delta) {
+		if (delta.contains(getString(R.string.settings_key_theme))) {
 			updateTheme(null);
 		}
+		
+		// The timeline is refilled in place, so it is replaced to not mix days of the old settings.
+		if (delta.containsAny(calculationKeys)) {
+			CountdownBloc.getInstance().addEvent(new CountdownBloc.LoadTimingsEvent(this));
+		}
+		
+		// The reminders job stops rescheduling itself while no reminder is enabled, and alarms are
+		// armed days ahead with the times and city of the settings they were planned with.
+		if (delta.containsAny(reminderKeys) || delta.containsAny(locationKeys) || delta.containsAny(calculationKeys)) {
+			RemindersService.schedule(this, 15 * 1000);
+		}
 	}
 	
 	/**
@@ -65,7 +152,7 @@ public class FastersApplication extends Application implements SettingsChangeLis
 				case Evening:
 					setTheme(R.style.Theme_App_Evening);
 					break;
-					
+				
 				case Morning:
 					setTheme(R.style.Theme_App_Morning);
 					break;
@@ -1,276 +1,408 @@
 package com.basilalasadi.fasters.bloc;
 
 import android.content.Context;
+import android.util.Log;
 
 import com.basilalasadi.fasters.R;
+import com.basilalasadi.fasters.executors.AppExecutors;
+import com.basilalasadi.fasters.logic.TimingsCache;
+import com.basilalasadi.fasters.math.AstronomyMath;
+import com.basilalasadi.fasters.math.HijriCalendar;
 import com.basilalasadi.fasters.math.PrayerTimings;
 import com.basilalasadi.fasters.math.TimingsMethod;
 import com.basilalasadi.fasters.model.CountdownViewModel;
+import com.basilalasadi.fasters.model.PrayerTimeline;
 import com.basilalasadi.fasters.logic.settings.SettingsManager;
+import com.basilalasadi.fasters.logic.settings.SettingsSnapshot;
 import com.basilalasadi.fasters.util.TimeProvider;
 
+import org.threeten.bp.LocalDate;
 import org.threeten.bp.ZonedDateTime;
-import org.threeten.bp.chrono.HijrahDate;
-import org.threeten.bp.temporal.ChronoField;
+import org.threeten.bp.zone.ZoneRules;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
 
 
 /**
  * Business logic component for a countdown activity.
+ *
+ * Events are handled one at a time on a shared executor, so an idle bloc holds no thread. Events
+ * are coalesced: pending loads collapse into the latest one, a load supersedes pending refills, and
+ * a load that is superseded while computing is cancelled and its result dropped.
+ *
+ * States are published to a <em>StateStream</em>, so the activity, the reminders service and any
+ * other subscriber share one computation through the shared instance.
  */
 public class CountdownBloc {
+	public static final String TAG = "CountdownBloc";
+	
 	public static final int EVENT_LOAD_TIMINGS = 1;
-	private final Thread thread;
-	private final ArrayBlockingQueue<Event> eventQueue = new ArrayBlockingQueue<>(10);
-	private final StateStreamConsumer consumer;
+	public static final int EVENT_REFILL_TIMELINE = 2;
 	
-	public CountdownBloc(StateStreamConsumer consumer) {
-		this.consumer = consumer;
-		
-		Runnable handler = () -> {
-			try {
-				while (true) {
-					Event event = eventQueue.poll(60, TimeUnit.SECONDS);
-					
-					if (Thread.currentThread().isInterrupted()) {
-						break;
-					}
-					else if (event == null) {
-						continue;
-					}
-					
-					if (event.getEventType() == EVENT_LOAD_TIMINGS) {
-						loadTimings((LoadTimingsEvent) event);
-					}
-				}
-			}
-			catch (InterruptedException ignored) {
-			}
-		};
-		
-		this.thread = new Thread(handler);
-		this.thread.start();
+	private static CountdownBloc instance;
+	
+	private final Executor executor;
+	private final StateStream<CountdownViewModel> stateStream = new StateStream<>();
+	
+	private LoadTimingsEvent pendingLoad = null;
+	private RefillTimelineEvent pendingRefill = null;
+	private Event currentEvent = null;
+	private boolean running = false;
+	
+	/**
+	 * Returns the shared instance of CountdownBloc, or constructs it if not already constructed.
+	 * @return CountdownBloc instance.
+	 */
+	public static synchronized CountdownBloc getInstance() {
+		if (instance == null) {
+			instance = new CountdownBloc(AppExecutors.cpuExecutor);
+		}
+		return instance;
 	}
-
-	@Override
-	protected void finalize() throws Throwable {
-		this.thread.interrupt();
-		super.finalize();
+	
+	/**
+	 * @param executor Executor to handle the events on.
+	 */
+	public CountdownBloc(Executor executor) {
+		this.executor = executor;
 	}
-
-	public void addEvent(Event event) throws IllegalStateException {
-		this.eventQueue.add(event);
+	
+	/**
+	 * @return the stream of the states of the bloc.
+	 */
+	public StateStream<CountdownViewModel> getStateStream() {
+		return stateStream;
 	}
 	
-	private void loadTimings(LoadTimingsEvent event) {
-		consumer.onState(CountdownViewModel.dataLoading());
-		
-		SettingsManager settingsManager = SettingsManager.getInstance(event.context);
-		
-		SettingsManager.Coordinates coords = settingsManager.getCoordinates(event.context);
-		
-		if (coords == null) {
-			consumer.onState(CountdownViewModel.errorNoLocation());
-			return;
-		}
-		
-		SettingsManager.Address address = settingsManager.getAddress(event.context);
-		SettingsManager.CustomMethod customMethod = settingsManager.getCustomMethod(event.context);
-		
-		if (address == null || customMethod == null) {
-			consumer.onState(CountdownViewModel.errorInvalidSettings());
-			return;
-		}
-		
-		ZonedDateTime now = TimeProvider.now();
-		HijrahDate hijriDate = HijrahDate.from(now);
-		boolean isRamadan = hijriDate.get(ChronoField.MONTH_OF_YEAR) == 9;
-		
-		double daysSinceEpoch = PrayerTimings.toDaysSinceEpoch2000(now);
-		int timeZone = now.getOffset().getTotalSeconds() / 3600;
-		double longitude = coords.longitude;
-		double latitude = coords.latitude;
-		
-		boolean useFixedTimeOffset;
-		double fajrAngleDegrees;
-		double ishaAngleDegrees = Double.NaN;
-		int ishaFixedTimeOffset = Integer.MAX_VALUE;
-		boolean useShafaiMethod;
-		
-		
-		if (customMethod.useAutomatic()) {
-			TimingsMethod method = TimingsMethod.getDefaultForCountry(address.country);
-			
-			fajrAngleDegrees = method.getFajrAngleDegrees();
-			useFixedTimeOffset = method.usesFixedOffsetForIsha();
-			
-			if (useFixedTimeOffset) {
-				ishaFixedTimeOffset = (int) method.getIshaFixedOffset(isRamadan);
+	/**
+	 * Queues an event, coalescing it with the pending ones.
+	 * @param event Event.
+	 */
+	public void addEvent(Event event) {
+		synchronized (this) {
+			if (event.getEventType() == EVENT_LOAD_TIMINGS) {
+				pendingLoad = (LoadTimingsEvent) event;
+				
+				// The new load replaces every timeline, so refills are moot.
+				if (pendingRefill != null) {
+					pendingRefill.viewModel.timeline.cancelRefill();
+					pendingRefill = null;
+				}
+				if (currentEvent != null) {
+					currentEvent.cancelled = true;
+				}
 			}
-			else {
-				ishaAngleDegrees = method.getIshaAngleDegrees();
+			else if (event.getEventType() == EVENT_REFILL_TIMELINE) {
+				if (pendingLoad != null) {
+					((RefillTimelineEvent) event).viewModel.timeline.cancelRefill();
+					return;
+				}
+				if (pendingRefill != null && pendingRefill.viewModel != ((RefillTimelineEvent) event).viewModel) {
+					pendingRefill.viewModel.timeline.cancelRefill();
+				}
+				
+				pendingRefill = (RefillTimelineEvent) event;
+			}
+			
+			if (running) {
+				return;
 			}
 			
-			useShafaiMethod = false;
+			running = true;
 		}
-		else {
-			fajrAngleDegrees = customMethod.fajrAngle;
-			useFixedTimeOffset = customMethod.useFixedTimeOffset();
+		
+		executor.execute(this::drain);
+	}
+	
+	/**
+	 * Handles the pending events until there are none.
+	 */
+	private void drain() {
+		while (true) {
+			final Event event;
 			
-			if (useFixedTimeOffset) {
-				if (isRamadan && customMethod.useRamadanFixedTimeOffset()) {
-					ishaFixedTimeOffset = customMethod.ramadanFixedTimeOffsetForIsha;
+			synchronized (this) {
+				if (pendingLoad != null) {
+					event = pendingLoad;
+					pendingLoad = null;
+				}
+				else if (pendingRefill != null) {
+					event = pendingRefill;
+					pendingRefill = null;
 				}
 				else {
-					ishaFixedTimeOffset = customMethod.fixedTimeOffsetForIsha;
+					currentEvent = null;
+					running = false;
+					return;
 				}
-			}
-			else {
-				ishaAngleDegrees = customMethod.ishaAngle;
+				
+				currentEvent = event;
 			}
 			
-			useShafaiMethod = customMethod.useShafaiMethod;
+			try {
+				if (event.getEventType() == EVENT_LOAD_TIMINGS) {
+					loadTimings((LoadTimingsEvent) event);
+				}
+				else if (event.getEventType() == EVENT_REFILL_TIMELINE) {
+					refillTimeline((RefillTimelineEvent) event);
+				}
+			}
+			catch (RuntimeException e) {
+				Log.e(TAG, "Could not handle event " + event.getEventType() + ".", e);
+			}
 		}
+	}
+	
+	private void loadTimings(LoadTimingsEvent event) {
+		CountdownViewModel current = stateStream.getState();
 		
+		// Subscribers keep showing a valid state until the new one is ready.
+		if (current == null || current.isExpired()) {
+			stateStream.publish(CountdownViewModel.dataLoading());
+		}
 		
-		double[] timings;
+		CountdownViewModel viewModel = computeViewModel(event.context, event);
 		
-		if (useFixedTimeOffset) {
-			timings =
-					PrayerTimings.getTimings(fajrAngleDegrees, useShafaiMethod, ishaFixedTimeOffset,
-							daysSinceEpoch, timeZone, longitude, latitude);
+		if (viewModel != null) {
+			stateStream.publish(viewModel);
 		}
 		else {
-			timings = PrayerTimings.getTimings(fajrAngleDegrees, useShafaiMethod, ishaAngleDegrees,
-					daysSinceEpoch, timeZone, longitude, latitude);
+			Log.d(TAG, "load superseded.");
 		}
+	}
+	
+	private void refillTimeline(RefillTimelineEvent event) {
+		PrayerTimeline timeline = event.viewModel.timeline;
 		
-		double nextDayFajrTiming =
-				PrayerTimings.getFajr(fajrAngleDegrees, daysSinceEpoch + 1, timeZone,
-						coords.longitude, coords.latitude);
-		
-		double lastDayMagribTiming =
-				PrayerTimings.getMagrib(daysSinceEpoch - 1, timeZone, coords.longitude, coords.latitude);
-		
-		
-		double timeNow = now.getHour() + now.getMinute() / 60.0 + now.getSecond() / 3600.0;
-		boolean isEvening = (timeNow < timings[0] || timeNow > timings[3]);
-		
-		
-		int nextPrayerIndex = 5;
-		for (int i = 0; i < 5; i++) {
-			if (timeNow < timings[i]) {
-				nextPrayerIndex = i;
-				break;
+		try {
+			Calculation calculation = Calculation.create(event.context);
+			
+			if (calculation == null) {
+				timeline.cancelRefill();
+				return;
+			}
+			
+			fill(calculation, timeline, TimeProvider.now().getZone().getRules(), event);
+			
+			if (event.cancelled) {
+				timeline.cancelRefill();
 			}
 		}
-		
-		int nextPrayerId = nextPrayerIndex == 5 ? 0 : nextPrayerIndex;
-		
-		long countDownStartTime;
-		long countDownEndTime;
-		String nextPrayerName;
-		
-		if (timeNow < timings[0]) {
-			countDownStartTime = datetimeFromTiming(now, lastDayMagribTiming, -1).toEpochSecond();
-			countDownEndTime = datetimeFromTiming(now, timings[0]).toEpochSecond();
-		}
-		else if (timeNow < timings[3]) {
-			countDownStartTime = datetimeFromTiming(now, timings[0]).toEpochSecond();
-			countDownEndTime = datetimeFromTiming(now, timings[3]).toEpochSecond();
+		catch (RuntimeException e) {
+			// The tick timer requests the refill again.
+			Log.w(TAG, "Could not refill timeline.", e);
+			timeline.cancelRefill();
 		}
-		else {
-			countDownStartTime = datetimeFromTiming(now, timings[3]).toEpochSecond();
-			countDownEndTime = datetimeFromTiming(now, nextDayFajrTiming, 1).toEpochSecond();
+	}
+	
+	/**
+	 * Computes the countdown for the current time and settings, synchronously.
+	 * @param context The current context.
+	 * @return the view model, or an error view model if the settings are incomplete.
+	 */
+	public static CountdownViewModel computeViewModel(Context context) {
+		return computeViewModel(context, null);
+	}
+	
+	/**
+	 * @param cancellation Event whose cancellation stops the computation, or null.
+	 * @return the view model, or null if cancelled.
+	 */
+	private static CountdownViewModel computeViewModel(Context context, Event cancellation) {
+		if (SettingsManager.getInstance(context).getSnapshot(context).coordinates == null) {
+			return CountdownViewModel.errorNoLocation();
 		}
 		
-		int stringId = R.string.loading_lowercase;
-		switch (nextPrayerId) {
-			case 0:
-				stringId = R.string.fajr;
-				break;
-			case 1:
-				stringId = R.string.duhr;
-				break;
-			case 2:
-				stringId = R.string.asr;
-				break;
-			case 3:
-				stringId = R.string.magrib;
-				break;
-			case 4:
-				stringId = R.string.ishaa;
-				break;
+		Calculation calculation = Calculation.create(context);
+		
+		if (calculation == null) {
+			return CountdownViewModel.errorInvalidSettings();
 		}
 		
-		nextPrayerName = event.context.getString(stringId);
+		ZonedDateTime now = TimeProvider.now();
+		long epochDay = now.toLocalDate().toEpochDay();
 		
-		ZonedDateTime expiry;
+		// Magrib of yesterday starts the window that ends at fajr of today.
+		double[] timings = calculation.getDay(epochDay);
+		PrayerTimeline timeline = new PrayerTimeline(epochDay, PrayerTimings.toEpochMillis(epochDay - 1, timings[6]));
 		
-		if (nextPrayerIndex == 5) {
-			expiry = datetimeFromTiming(now, 0, 1);
-		}
-		else {
-			expiry = datetimeFromTiming(now, timings[nextPrayerIndex]);
-		}
+		fill(calculation, timeline, now.getZone().getRules(), cancellation);
 		
-		double[] prayerTimes = new double[6];
+		if (cancellation != null && cancellation.cancelled) {
+			return null;
+		}
 		
-		System.arraycopy(timings, 0, prayerTimes, 0, 5);
-		prayerTimes[5] = nextDayFajrTiming;
+		timeline.advance(now.toInstant().toEpochMilli());
 		
-		CountdownViewModel viewModel =
-				new CountdownViewModel(CountdownViewModel.FLAG_DATA_AVAILABLE, isEvening, countDownStartTime, countDownEndTime, address.city,
-						nextPrayerIndex, nextPrayerName, prayerTimes, nextPrayerId, timeZone, expiry);
+		String[] prayerNames = {
+				context.getString(R.string.fajr),
+				context.getString(R.string.duhr),
+				context.getString(R.string.asr),
+				context.getString(R.string.magrib),
+				context.getString(R.string.ishaa),
+		};
 		
-		consumer.onState(viewModel);
+		return new CountdownViewModel(CountdownViewModel.FLAG_DATA_AVAILABLE, calculation.city, prayerNames,
+				timeline, TimeZone.getTimeZone(now.getZone().getId()));
 	}
 	
-	public static ZonedDateTime datetimeFromTiming(ZonedDateTime now, double time) {
-		int daysOffset = 0;
+	/**
+	 * Appends days to the timeline until it is full or the computation is cancelled.
+	 */
+	private static void fill(Calculation calculation, PrayerTimeline timeline, ZoneRules zoneRules,
+			Event cancellation) {
 		
-		while (time < 0) {
-			time += 24;
-			daysOffset--;
+		while (timeline.canAppendDay() && (cancellation == null || !cancellation.cancelled)) {
+			timeline.appendDay(calculation.getDay(timeline.getNextEpochDay()), zoneRules);
 		}
-		while (time >= 24) {
-			time -= 24;
-			daysOffset++;
-		}
-		
-		int hour = (int) time;
-		int minute = (int) ((time - hour) * 60);
-		int second = (int) ((time - hour - minute / 60.0) * 3600);
-		
-		return now
-				.plusDays(daysOffset)
-				.withHour(hour)
-				.withMinute(minute)
-				.withSecond(second);
 	}
 	
-	public static ZonedDateTime datetimeFromTiming(ZonedDateTime now, double time, int daysOffset) {
-		return datetimeFromTiming(now, time).plusDays(daysOffset);
-	}
 	
 	/**
-	 * Consumer interface for CountdownBloc.
+	 * Location and calculation settings the timings of a day are computed from.
 	 */
-	public interface StateStreamConsumer {
+	private static final class Calculation {
+		final String city;
+		final double longitude;
+		final double latitude;
+		final double fajrAngleDegrees;
+		final double ishaAngleDegrees;
+		final boolean useShafaiMethod;
+		final TimingsMethod automaticMethod;
+		final SettingsManager.CustomMethod customMethod;
+		final int hijriDayOffset;
+		final TimingsCache cache;
+		
+		private Calculation(String city, double longitude, double latitude, double fajrAngleDegrees,
+				double ishaAngleDegrees, boolean useShafaiMethod, TimingsMethod automaticMethod,
+				SettingsManager.CustomMethod customMethod, int hijriDayOffset, TimingsCache cache) {
+			
+			this.city = city;
+			this.longitude = longitude;
+			this.latitude = latitude;
+			this.fajrAngleDegrees = fajrAngleDegrees;
+			this.ishaAngleDegrees = ishaAngleDegrees;
+			this.useShafaiMethod = useShafaiMethod;
+			this.automaticMethod = automaticMethod;
+			this.customMethod = customMethod;
+			this.hijriDayOffset = hijriDayOffset;
+			this.cache = cache;
+		}
+		
+		/**
+		 * Reads the current settings.
+		 * @param context The current context.
+		 * @return the calculation, or null if the settings are incomplete.
+		 */
+		static Calculation create(Context context) {
+			// One snapshot, so all values are of the same version of the settings.
+			SettingsSnapshot settings = SettingsManager.getInstance(context).getSnapshot(context);
+			
+			SettingsManager.Coordinates coords = settings.coordinates;
+			SettingsManager.Address address = settings.address;
+			SettingsManager.CustomMethod customMethod = settings.customMethod;
+			
+			if (coords == null || address == null || customMethod == null) {
+				return null;
+			}
+			
+			int hijriDayOffset = settings.hijriDayOffset;
+			TimingsCache cache = TimingsCache.getInstance(context);
+			
+			if (customMethod.useAutomatic()) {
+				TimingsMethod method = TimingsMethod.getDefaultForCountry(address.country);
+				double ishaAngleDegrees = method.usesFixedOffsetForIsha() ? Double.NaN : method.getIshaAngleDegrees();
+				
+				return new Calculation(address.city, coords.longitude, coords.latitude,
+						method.getFajrAngleDegrees(), ishaAngleDegrees, false, method, null, hijriDayOffset, cache);
+			}
+			else {
+				double ishaAngleDegrees = customMethod.useFixedTimeOffset() ? Double.NaN : customMethod.ishaAngle;
+				
+				return new Calculation(address.city, coords.longitude, coords.latitude, customMethod.fajrAngle,
+						ishaAngleDegrees, customMethod.useShafaiMethod, null, customMethod, hijriDayOffset, cache);
+			}
+		}
+		
 		/**
-		 * State handler.
-		 *
-		 * @param viewModel View model.
+		 * @param isRamadan Whether the day is in Ramadan.
+		 * @return isha offset from magrib in minutes, if a fixed offset is used.
 		 */
-		void onState(CountdownViewModel viewModel);
+		int getIshaFixedTimeOffset(boolean isRamadan) {
+			if (automaticMethod != null) {
+				return (int) automaticMethod.getIshaFixedOffset(isRamadan);
+			}
+			else if (isRamadan && customMethod.useRamadanFixedTimeOffset()) {
+				return customMethod.ramadanFixedTimeOffsetForIsha;
+			}
+			else {
+				return customMethod.fixedTimeOffsetForIsha;
+			}
+		}
+		
+		/**
+		 * Computes the timings of a day, or looks them up in the cache.
+		 * @param epochDay Local date, as days since 1970-01-01.
+		 * @return the values of <em>TimingsCache.VALUES</em>.
+		 */
+		double[] getDay(long epochDay) {
+			LocalDate date = LocalDate.ofEpochDay(epochDay);
+			boolean isRamadan = HijriCalendar.isRamadan(epochDay + hijriDayOffset);
+			boolean useFixedTimeOffset = Double.isNaN(ishaAngleDegrees);
+			int ishaFixedTimeOffset = useFixedTimeOffset ? getIshaFixedTimeOffset(isRamadan) : Integer.MAX_VALUE;
+			
+			TimingsCache.Key key = new TimingsCache.Key(longitude, latitude, fajrAngleDegrees, ishaAngleDegrees,
+					ishaFixedTimeOffset, useShafaiMethod, isRamadan, epochDay);
+			
+			double[] timings = cache.get(key);
+			
+			if (timings != null) {
+				return timings;
+			}
+			
+			// Timings are calculated in hours since 00:00 UTC of the local date and converted to instants,
+			// so they don't depend on the zone. They are evaluated at approximate local solar noon.
+			double daysSinceEpoch = AstronomyMath.daysSinceEpoch(date.getYear(), date.getMonthValue(),
+					date.getDayOfMonth(), 12, 0, 0) - longitude / 15 / 24;
+			
+			double[] dayTimings;
+			
+			if (useFixedTimeOffset) {
+				dayTimings =
+						PrayerTimings.getTimings(fajrAngleDegrees, useShafaiMethod, ishaFixedTimeOffset,
+								daysSinceEpoch, 0, longitude, latitude);
+			}
+			else {
+				dayTimings = PrayerTimings.getTimings(fajrAngleDegrees, useShafaiMethod, ishaAngleDegrees,
+						daysSinceEpoch, 0, longitude, latitude);
+			}
+			
+			timings = new double[TimingsCache.VALUES];
+			System.arraycopy(dayTimings, 0, timings, 0, 5);
+			timings[5] = PrayerTimings.getFajr(fajrAngleDegrees, daysSinceEpoch + 1, 0, longitude, latitude);
+			timings[6] = PrayerTimings.getMagrib(daysSinceEpoch - 1, 0, longitude, latitude);
+			cache.put(key, timings);
+			
+			return timings;
+		}
+	}
+	
+	/**
+	 * Subscriber interface for the states of CountdownBloc.
+	 */
+	public interface StateStreamConsumer extends StateStream.Subscriber<CountdownViewModel> {
 	}
 	
 	/**
 	 * Abstract event for which CountdownBloc responds to.
 	 */
 	private static abstract class Event {
+		/**
+		 * Set when a later event supersedes this one while it is handled.
+		 */
+		volatile boolean cancelled = false;
+		
 		/**
 		 * @return Unique identifier for type of event.
 		 */
@@ -291,4 +423,21 @@ public class CountdownBloc {
 			return EVENT_LOAD_TIMINGS;
 		}
 	}
-}
+	
+	/**
+	 * Event to append days to the timeline of a view model that runs low.
+	 */
+	public static class RefillTimelineEvent extends Event {
+		Context context;
+		CountdownViewModel viewModel;
+		
+		public RefillTimelineEvent(Context context, CountdownViewModel viewModel) {
+			this.context = context;
+			this.viewModel = viewModel;
+		}
+		
+		int getEventType() {
+			return EVENT_REFILL_TIMELINE;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.basilalasadi.fasters.bloc;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+
+/**
+ * Stream of states with any number of subscribers.
+ *
+ * Each subscriber is delivered to on its own executor, one state at a time and in order. Delivery
+ * is conflated: a subscriber that is still handling a state is then given only the newest one, and
+ * the states published in between are skipped. A new subscriber is given the current state first.
+ *
+ * @param <T> Type of the states.
+ */
+public final class StateStream<T> {
+	private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private volatile T state = null;
+	
+	/**
+	 * Sets the current state and delivers it to every subscriber.
+	 * @param state New state.
+	 */
+	public synchronized void publish(T state) {
+		this.state = state;
+		
+		for (Subscription subscription : subscriptions) {
+			subscription.offer(state);
+		}
+	}
+	
+	/**
+	 * @return the last published state, or null if none was published.
+	 */
+	public T getState() {
+		return state;
+	}
+	
+	/**
+	 * Adds a subscriber, and delivers the current state to it if there is one.
+	 * @param subscriber Subscriber.
+	 * @param executor Executor to deliver on, e.g. <em>AppExecutors.mainExecutor</em>.
+	 * @return the subscription, to cancel it.
+	 */
+	public synchronized Subscription subscribe(Subscriber<? super T> subscriber, Executor executor) {
+		Subscription subscription = new Subscription(subscriber, executor);
+		subscriptions.add(subscription);
+		
+		// Offered under the lock, so a concurrent publish can't be overtaken by the older state.
+		if (state != null) {
+			subscription.offer(state);
+		}
+		
+		return subscription;
+	}
+	
+	/**
+	 * @return number of subscribers.
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+	
+	
+	/**
+	 * Receiver of the states of a stream.
+	 * @param <T> Type of the states.
+	 */
+	public interface Subscriber<T> {
+		/**
+		 * State handler.
+		 *
+		 * @param state New state.
+		 */
+		void onState(T state);
+	}
+	
+	
+	/**
+	 * A subscriber and its pending state.
+	 */
+	public final class Subscription {
+		private final Subscriber<? super T> subscriber;
+		private final Executor executor;
+		
+		private T pending = null;
+		private boolean scheduled = false;
+		private volatile boolean cancelled = false;
+		
+		private Subscription(Subscriber<? super T> subscriber, Executor executor) {
+			this.subscriber = subscriber;
+			this.executor = executor;
+		}
+		
+		/**
+		 * Stops delivery. A state being delivered is not interrupted.
+		 */
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			
+			synchronized (this) {
+				pending = null;
+			}
+		}
+		
+		public boolean isCancelled() {
+			return cancelled;
+		}
+		
+		private void offer(T state) {
+			synchronized (this) {
+				if (cancelled) {
+					return;
+				}
+				
+				pending = state;
+				
+				if (scheduled) {
+					return;
+				}
+				
+				scheduled = true;
+			}
+			
+			executor.execute(this::drain);
+		}
+		
+		private void drain() {
+			while (true) {
+				T state;
+				
+				synchronized (this) {
+					state = pending;
+					pending = null;
+					
+					if (state == null || cancelled) {
+						scheduled = false;
+						return;
+					}
+				}
+				
+				subscriber.onState(state);
+			}
+		}
+	}
+}
@@ -7,7 +7,6 @@ import android.util.Log;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.ZipEntry;
@@ -68,16 +67,16 @@ public class AssetDatabase {
 	}
 	
 	/**
-	 * Unpacks the database from assets.
+	 * Unpacks the database from assets, and writes its manifest. The database file is replaced
+	 * atomically, so it is never left partially written.
 	 * @throws IOException if database is not found in the database, or asset archive does not
 	 *                     contain a database.
 	 */
 	protected void unpack() throws IOException {
-		File databasePath = context.getDatabasePath(name + ".db");
+		File databasePath = databasePath();
 		final AssetManager assets = context.getAssets();
 		
 		InputStream inputStream = null;
-		FileOutputStream outputStream = null;
 		
 		try {
 			if (isCompressed) {
@@ -113,39 +112,37 @@ public class AssetDatabase {
 			
 			Log.d("AssetDatabase", "database path " + databasePath);
 			
-			outputStream = new FileOutputStream(databasePath);
+			File parent = databasePath.getParentFile();
 			
-			byte[] buffer = new byte[1024];
-			
-			while (true) {
-				int numBytes = inputStream.read(buffer);
-				
-				if (numBytes == -1) {
-					break;
-				}
-				else {
-					outputStream.write(buffer, 0, numBytes);
-				}
+			if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+				throw new IOException("Could not create databases dir.");
 			}
+			
+			Unpacker.unpack(inputStream, databasePath);
 		}
 		finally {
 			if (inputStream != null) {
 				inputStream.close();
 			}
-			
-			if (outputStream != null) {
-				outputStream.close();
-			}
 		}
 	}
 	
 	/**
-	 * Opens the database. Unpacks the database from assets if is not already unpacked.
+	 * Checks whether the unpacked database is complete and intact.
+	 * @return true if the database file matches the manifest written when it was unpacked.
+	 */
+	public boolean databaseVerified() {
+		return Unpacker.verify(databasePath());
+	}
+	
+	/**
+	 * Opens the database. Unpacks the database from assets if is not already unpacked, or if the
+	 * unpacked copy does not match its manifest.
 	 * @return database object.
 	 * @throws IOException if opening database fails.
 	 */
 	public SQLiteDatabase openDatabase() throws IOException {
-		if (!databaseExists()) {
+		if (!databaseVerified()) {
 			unpack();
 		}
 		
@@ -154,6 +151,7 @@ public class AssetDatabase {
 	
 	public void deleteDatabase() {
 		context.deleteDatabase(name + ".db");
+		Unpacker.delete(databasePath());
 	}
 	
 	/**
@@ -1,15 +1,19 @@
 package com.basilalasadi.fasters.database;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -57,6 +61,38 @@ public class BinaryAsset {
 		}
 	}
 	
+	/**
+	 * Copies the asset to a file, decompressing it if needed, and writes the file's manifest.
+	 * @param destination Destination file. It is replaced atomically, or deleted if unpacking fails.
+	 * @return manifest of the written file.
+	 * @throws IOException if reading the asset or writing the file fails.
+	 * @see Unpacker
+	 */
+	public Unpacker.Manifest unpack(File destination) throws IOException {
+		try (InputStream in = open()) {
+			return Unpacker.unpack(in, destination);
+		}
+	}
+	
+	/**
+	 * Maps the asset into memory, read only. The asset must be stored uncompressed in the APK
+	 * (see <em>noCompress</em> in build.gradle).
+	 * @return buffer holding the whole asset.
+	 * @throws IOException if the asset is compressed or mapping fails.
+	 */
+	public MappedByteBuffer map() throws IOException {
+		if (isCompressed) {
+			throw new IOException("Compressed asset can't be mapped.");
+		}
+		
+		try (AssetFileDescriptor fd = context.getAssets().openFd(assetPath);
+				FileInputStream in = new FileInputStream(fd.getFileDescriptor())) {
+			
+			// The mapping stays valid after the channel is closed.
+			return in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+		}
+	}
+	
 	protected void findAsset() throws IOException {
 		AssetManager assets = context.getAssets();
 		
@@ -1,33 +1,66 @@
 package com.basilalasadi.fasters.database;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
 
 import androidx.preference.PreferenceManager;
 
 import com.basilalasadi.fasters.R;
 import com.basilalasadi.fasters.executors.AppExecutors;
-import com.basilalasadi.fasters.logic.settings.SettingsManager;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 
 
 /**
  * Handler singleton class for worldcities database.
+ *
+ * The database is opened once, by <em>initialize()</em> or on first query. Until then, callers
+ * can register with <em>whenReady()</em>, or wait on <em>getReadyFuture()</em>. Once open, queries
+ * do not lock each other: the city store and the geo index are immutable, and the SQLite fallback
+ * lends each query one of a few read-only connections.
  */
 public final class CitiesDatabase {
+	public static final String TAG = "CitiesDatabase";
+	
+	/**
+	 * Maximum number of read-only connections to the SQLite database, and so of SQLite queries
+	 * running at once.
+	 */
+	public static final int MAX_CONNECTIONS = 4;
+	
 	private static CitiesDatabase instance;
-	private SQLiteDatabase database;
-	private final Object mutex = new Object();
+	private final Context context;
+	
+	/**
+	 * Opens the database once. Store and SQLite fields are written by it, and read only after it is
+	 * done.
+	 */
+	private final FutureTask<CitiesDatabase> initialization;
+	private final ArrayList<PendingCallback> readyCallbacks = new ArrayList<>();
+	private CityStore store;
+	private String databasePath;
+	
+	private final ArrayBlockingQueue<SQLiteDatabase> idleConnections = new ArrayBlockingQueue<>(MAX_CONNECTIONS);
+	private final Semaphore connectionPermits = new Semaphore(MAX_CONNECTIONS);
+	
+	private final Object geoIndexLock = new Object();
+	private volatile GeoIndex geoIndex;
 	
 	/**
 	 * Returns singleton instance of CitiesDatabase, or construsts it if not already constructed.
-	 * Constructing the CitiesDatabase instance will begin asyncronous initialization of the
-	 * database.
+	 * The database is initialized by <em>initialize()</em>, or on first query.
 	 *
 	 * @param context The current context.
 	 * @return CitiesDatabase instrance.
@@ -44,52 +77,333 @@ public final class CitiesDatabase {
 	 * @param context The current context.
 	 */
 	private CitiesDatabase(Context context) {
-		AppExecutors.ioExecutor.submit(() -> {
-			try {
-				initializeDatabase(context);
+		this.context = context.getApplicationContext();
+		
+		this.initialization = new FutureTask<CitiesDatabase>(this::open) {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				return false;
 			}
-			catch (IOException e) {
-				e.printStackTrace();
+			
+			@Override
+			protected void done() {
+				dispatchReadyCallbacks();
 			}
-		});
+		};
 	}
 	
 	/**
-	 * Initializes the CitiesDatabase instance.
-	 * @param context The current context.
+	 * Initializes the CitiesDatabase instance, synchronously. Maps the city store asset, or unpacks
+	 * and opens the SQLite database if the store is not available. If another thread is
+	 * initializing, waits for it. Does nothing if already initialized.
 	 * @throws IOException if database asset is not found.
 	 */
-	private void initializeDatabase(Context context) throws IOException {
-		synchronized (mutex) {
-			SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-			
-			final String databaseName = context.getString(R.string.database_name);
-			final String versionKey = context.getString(R.string.key_database_version_template, databaseName);
-			
-			final int latestVersion = Integer.parseInt(context.getString(R.string.latest_database_worldcities_version));
-			int version = prefs.getInt(versionKey, 1);
+	public void initialize() throws IOException {
+		initialization.run();
+		
+		try {
+			getResult();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for cities database.");
+		}
+	}
+	
+	/**
+	 * @return true if the database is open, so queries won't wait.
+	 */
+	public boolean isReady() {
+		if (!initialization.isDone()) {
+			return false;
+		}
+		
+		try {
+			getResult();
+			return true;
+		}
+		catch (IOException | InterruptedException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns a future that completes when the database is open, or fails with the
+	 * <em>IOException</em> that prevented it. It can't be cancelled. Waiting on it blocks; on the
+	 * main thread use <em>whenReady()</em>.
+	 * @return the future of this database.
+	 */
+	public Future<CitiesDatabase> getReadyFuture() {
+		return initialization;
+	}
+	
+	/**
+	 * Calls back once the database is open, starting to open it on the io executor if needed. The
+	 * callback runs on <em>executor</em>, right away if the database is already open.
+	 * @param executor Executor to run the callback on.
+	 * @param callback The callback.
+	 */
+	public void whenReady(Executor executor, ReadyCallback callback) {
+		synchronized (readyCallbacks) {
+			if (!initialization.isDone()) {
+				readyCallbacks.add(new PendingCallback(executor, callback));
+				
+				// Returns right away if the database is being opened already.
+				AppExecutors.ioExecutor.execute(initialization);
+				return;
+			}
+		}
+		
+		executor.execute(() -> deliver(callback));
+	}
+	
+	private void dispatchReadyCallbacks() {
+		final PendingCallback[] callbacks;
+		
+		synchronized (readyCallbacks) {
+			callbacks = readyCallbacks.toArray(new PendingCallback[0]);
+			readyCallbacks.clear();
+		}
+		
+		for (PendingCallback pending : callbacks) {
+			pending.executor.execute(() -> deliver(pending.callback));
+		}
+	}
+	
+	private void deliver(ReadyCallback callback) {
+		try {
+			getResult();
+		}
+		catch (IOException e) {
+			callback.onFailure(e);
+			return;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		
+		callback.onReady(this);
+	}
+	
+	/**
+	 * Waits for the initialization.
+	 * @throws IOException if the database could not be opened.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	private void getResult() throws IOException, InterruptedException {
+		try {
+			initialization.get();
+		}
+		catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
 			
-			AssetDatabase assetDatabase = new AssetDatabase(context, databaseName);
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			else {
+				throw new IOException("Could not open cities database.", cause);
+			}
+		}
+	}
+	
+	/**
+	 * Work of <em>initialization</em>.
+	 * @return this database.
+	 * @throws IOException if database asset is not found, or the SQLite database can't be opened.
+	 */
+	private CitiesDatabase open() throws IOException {
+		try {
+			store = new CityStore(new BinaryAsset(context, CityStore.ASSET_NAME).map());
+		}
+		catch (IOException e) {
+			Log.w(TAG, "City store not available, falling back to SQLite.", e);
+		}
+		
+		if (store != null) {
+			deleteUnpackedDatabase(context);
+		}
+		else {
+			try {
+				openSQLiteDatabase(context);
+			}
+			catch (SQLiteException e) {
+				throw new IOException("Could not open SQLite database.", e);
+			}
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * Builds the index for nearest city lookups, synchronously. Initializes the database first if
+	 * needed. Does nothing if already built.
+	 * @throws IOException if database asset is not found.
+	 */
+	public void buildGeoIndex() throws IOException {
+		if (geoIndex != null) {
+			return;
+		}
+		
+		initialize();
+		
+		synchronized (geoIndexLock) {
+			if (geoIndex == null) {
+				geoIndex = store != null ? buildStoreGeoIndex() : buildSQLiteGeoIndex();
+			}
+		}
+	}
+	
+	/**
+	 * Indexes the locations of the city store. Its strings stay in the store until a lookup
+	 * returns them.
+	 * @return the index.
+	 */
+	private GeoIndex buildStoreGeoIndex() {
+		double[] longitude = new double[store.size()];
+		double[] latitude = new double[store.size()];
+		
+		for (int i = 0; i < longitude.length; i++) {
+			longitude[i] = store.getLongitude(i);
+			latitude[i] = store.getLatitude(i);
+		}
+		
+		return new GeoIndex(null, new CityGeoIndex(longitude, latitude));
+	}
+	
+	/**
+	 * Indexes the locations of the SQLite database, which has to keep the names of all cities to
+	 * return them.
+	 * @return the index.
+	 */
+	private GeoIndex buildSQLiteGeoIndex() {
+		CityTable cities = getCityTable(null);
+		return new GeoIndex(cities, new CityGeoIndex(cities.longitude, cities.latitude));
+	}
+	
+	/**
+	 * Gets a city found by the geo index.
+	 * @param geo The geo index.
+	 * @param i Index of the city in the store, or in the table of the index without a store.
+	 * @return the city.
+	 */
+	private CountryAdminCity getIndexedCity(GeoIndex geo, int i) {
+		if (geo.cities != null) {
+			return new CountryAdminCity(geo.cities.country[i], geo.cities.admin[i], geo.cities.city[i]);
+		}
+		
+		return new CountryAdminCity(store.getCountry(store.getCountryOfCity(i)), store.getAdmin(i), store.getCity(i));
+	}
+	
+	/**
+	 * Initializes the database if not already initialized.
+	 * @throws IllegalStateException if the database can't be opened.
+	 */
+	private void ensureInitialized() {
+		try {
+			initialize();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Could not open cities database.", e);
+		}
+	}
+	
+	/**
+	 * Builds the index for nearest city lookups if not already built.
+	 * @return the index.
+	 * @throws IllegalStateException if the database can't be opened.
+	 */
+	private GeoIndex ensureGeoIndex() {
+		try {
+			buildGeoIndex();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Could not open cities database.", e);
+		}
+		
+		return geoIndex;
+	}
+	
+	/**
+	 * Deletes the SQLite database unpacked by earlier versions.
+	 * @param context The current context.
+	 */
+	private static void deleteUnpackedDatabase(Context context) {
+		try {
+			AssetDatabase assetDatabase = new AssetDatabase(context, context.getString(R.string.database_name));
 			
-			if (version < latestVersion) {
+			if (assetDatabase.databaseExists()) {
 				assetDatabase.deleteDatabase();
 			}
-			
-			database = assetDatabase.openDatabase();
-			
-			if (database != null) {
-				prefs.edit().putInt(versionKey, latestVersion).apply();
+		}
+		catch (IOException ignored) {
+		}
+	}
+	
+	/**
+	 * Unpacks the SQLite database if needed and opens its first connection.
+	 * @param context The current context.
+	 * @throws IOException if database asset is not found.
+	 */
+	private void openSQLiteDatabase(Context context) throws IOException {
+		SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+		
+		final String databaseName = context.getString(R.string.database_name);
+		final String versionKey = context.getString(R.string.key_database_version_template, databaseName);
+		
+		final int latestVersion = Integer.parseInt(context.getString(R.string.latest_database_worldcities_version));
+		int version = prefs.getInt(versionKey, 1);
+		
+		AssetDatabase assetDatabase = new AssetDatabase(context, databaseName);
+		
+		if (version < latestVersion) {
+			assetDatabase.deleteDatabase();
+		}
+		
+		SQLiteDatabase database = assetDatabase.openDatabase();
+		
+		if (database == null) {
+			throw new IOException("Could not open SQLite database.");
+		}
+		
+		databasePath = database.getPath();
+		idleConnections.add(database);
+		prefs.edit().putInt(versionKey, latestVersion).apply();
+	}
+	
+	/**
+	 * Lends a read-only connection to the SQLite database, opening one if none is idle and fewer
+	 * than <em>MAX_CONNECTIONS</em> are open, or else waiting for one. Must be returned with
+	 * <em>releaseConnection()</em>.
+	 * @return the connection.
+	 */
+	private SQLiteDatabase acquireConnection() {
+		connectionPermits.acquireUninterruptibly();
+		
+		SQLiteDatabase database = idleConnections.poll();
+		
+		if (database == null) {
+			try {
+				database = SQLiteDatabase.openDatabase(databasePath, null, SQLiteDatabase.OPEN_READONLY);
+			}
+			catch (RuntimeException e) {
+				connectionPermits.release();
+				throw e;
 			}
 		}
+		
+		return database;
+	}
+	
+	private void releaseConnection(SQLiteDatabase database) {
+		idleConnections.add(database);
+		connectionPermits.release();
 	}
 	
 	@Override
-	protected synchronized void finalize() throws Throwable {
-		synchronized (mutex) {
-			if (database != null) {
-				database.close();
-				database = null;
-			}
+	protected void finalize() throws Throwable {
+		for (SQLiteDatabase database = idleConnections.poll(); database != null; database = idleConnections.poll()) {
+			database.close();
 		}
 		super.finalize();
 	}
@@ -99,21 +413,37 @@ public final class CitiesDatabase {
 	 * @return a string array of all countries.
 	 */
 	public String[] getCountries() {
-		synchronized (mutex) {
+		ensureInitialized();
+		
+		if (store != null) {
+			String[] countries = new String[store.getCountryCount()];
+			
+			for (int i = 0; i < countries.length; i++) {
+				countries[i] = store.getCountry(i);
+			}
+			
+			return countries;
+		}
+		
+		SQLiteDatabase database = acquireConnection();
+		
+		try {
 			Cursor cursor = database.query(true, "cities", new String[]{"country"}, null, null, null, null, "country", null);
-
+			
 			int colCountry = cursor.getColumnIndexOrThrow("country");
-
+			
 			ArrayList<String> countries = new ArrayList<>(250);
-
+			
 			while (cursor.moveToNext()) {
 				countries.add(cursor.getString(colCountry));
 			}
-
+			
 			cursor.close();
 			return countries.toArray(new String[0]);
 		}
-
+		finally {
+			releaseConnection(database);
+		}
 	}
 	
 	/**
@@ -122,24 +452,48 @@ public final class CitiesDatabase {
 	 * @return An array of all admin cities of selected country.
 	 */
 	public AdminCity[] getCountryAdminCities(String country) {
-		synchronized (mutex) {
+		ensureInitialized();
+		
+		if (store != null) {
+			int countryIndex = store.findCountry(country);
+			
+			if (countryIndex == -1) {
+				return new AdminCity[0];
+			}
+			
+			int start = store.getCountryStart(countryIndex);
+			AdminCity[] adminCities = new AdminCity[store.getCountryEnd(countryIndex) - start];
+			
+			for (int i = 0; i < adminCities.length; i++) {
+				adminCities[i] = new AdminCity(store.getAdmin(start + i), store.getCity(start + i));
+			}
+			
+			return adminCities;
+		}
+		
+		SQLiteDatabase database = acquireConnection();
+		
+		try {
 			Cursor cursor = database.query("cities", new String[]{"admin", "city"}, "country == ?", new String[]{country}, null, null, "admin, city", null);
-
+			
 			int colAdmin = cursor.getColumnIndexOrThrow("admin");
 			int colCity = cursor.getColumnIndexOrThrow("city");
-
+			
 			ArrayList<AdminCity> adminCities = new ArrayList<>();
-
+			
 			while (cursor.moveToNext()) {
 				String admin = cursor.getString(colAdmin);
 				String city = cursor.getString(colCity);
-
+				
 				adminCities.add(new AdminCity(admin, city));
 			}
-
+			
 			cursor.close();
 			return adminCities.toArray(new AdminCity[0]);
 		}
+		finally {
+			releaseConnection(database);
+		}
 	}
 	
 	/**
@@ -150,7 +504,16 @@ public final class CitiesDatabase {
 	 * @return CityLocation of the city.
 	 */
 	public CityLocation getAdminCityLocation(String country, String admin, String city) {
-		synchronized (mutex) {
+		ensureInitialized();
+		
+		if (store != null) {
+			int i = store.findCity(country, admin, city);
+			return i == -1 ? null : new CityLocation(store.getLongitude(i), store.getLatitude(i));
+		}
+		
+		SQLiteDatabase database = acquireConnection();
+		
+		try {
 			Cursor cursor = database.query(
 					"Cities",
 					new String[]{"longitude", "latitude"},
@@ -158,65 +521,195 @@ public final class CitiesDatabase {
 					new String[]{country, admin, city},
 					null, null, null,
 					"1");
-
+			
 			if (!cursor.moveToFirst()) {
 				cursor.close();
 				return null;
 			} else {
 				int colLongitude = cursor.getColumnIndexOrThrow("longitude");
 				int colLatitude = cursor.getColumnIndexOrThrow("latitude");
-
+				
 				double longitude = cursor.getDouble(colLongitude);
 				double latitude = cursor.getDouble(colLatitude);
-
+				
 				cursor.close();
 				return new CityLocation(longitude, latitude);
 			}
 		}
+		finally {
+			releaseConnection(database);
+		}
+	}
+	
+	/**
+	 * Fetches all cities, or all cities of selected country, ordered by country, admin and city.
+	 * @param country Country, or null for all countries.
+	 * @return CityTable of the selected cities.
+	 */
+	public CityTable getCityTable(String country) {
+		ensureInitialized();
+		
+		if (store != null) {
+			return getStoreCityTable(country);
+		}
+		
+		SQLiteDatabase database = acquireConnection();
+		
+		try {
+			Cursor cursor = database.query(
+					"cities",
+					new String[]{"country", "admin", "city", "longitude", "latitude"},
+					country == null ? null : "country == ?",
+					country == null ? null : new String[]{country},
+					null, null,
+					"country, admin, city");
+			
+			int colCountry = cursor.getColumnIndexOrThrow("country");
+			int colAdmin = cursor.getColumnIndexOrThrow("admin");
+			int colCity = cursor.getColumnIndexOrThrow("city");
+			int colLongitude = cursor.getColumnIndexOrThrow("longitude");
+			int colLatitude = cursor.getColumnIndexOrThrow("latitude");
+			
+			CityTable table = new CityTable(cursor.getCount());
+			
+			for (int i = 0; cursor.moveToNext(); i++) {
+				table.country[i] = cursor.getString(colCountry);
+				table.admin[i] = cursor.getString(colAdmin);
+				table.city[i] = cursor.getString(colCity);
+				table.longitude[i] = cursor.getDouble(colLongitude);
+				table.latitude[i] = cursor.getDouble(colLatitude);
+			}
+			
+			cursor.close();
+			return table;
+		}
+		finally {
+			releaseConnection(database);
+		}
 	}
 	
 	/**
-	 * Finds closest city to specified location.
+	 * Reads cities from the city store.
+	 * @param country Country, or null for all countries.
+	 * @return CityTable of the selected cities.
+	 */
+	private CityTable getStoreCityTable(String country) {
+		int firstCountry = 0;
+		int lastCountry = store.getCountryCount() - 1;
+		
+		if (country != null) {
+			firstCountry = lastCountry = store.findCountry(country);
+			
+			if (firstCountry == -1) {
+				return new CityTable(0);
+			}
+		}
+		
+		int start = store.getCountryStart(firstCountry);
+		CityTable table = new CityTable(store.getCountryEnd(lastCountry) - start);
+		
+		for (int c = firstCountry; c <= lastCountry; c++) {
+			String countryName = store.getCountry(c);
+			
+			for (int i = store.getCountryStart(c); i < store.getCountryEnd(c); i++) {
+				table.country[i - start] = countryName;
+				table.admin[i - start] = store.getAdmin(i);
+				table.city[i - start] = store.getCity(i);
+				table.longitude[i - start] = store.getLongitude(i);
+				table.latitude[i - start] = store.getLatitude(i);
+			}
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * Finds closest city to specified location, by great-circle distance.
 	 * @param longitude location longitude.
 	 * @param latitude Location latitude.
-	 * @return closest CountryAdminCity to specified location.
+	 * @return closest CountryAdminCity to specified location, or null if there are no cities.
 	 */
 	public CountryAdminCity findClosestCountryAdminCity(double longitude, double latitude) {
-		synchronized (mutex) {
-			final double tolerance = 2;
-
-			@SuppressLint("DefaultLocale")
-			final String orderBy = String.format(
-					"(longitude - %1$f) * (longitude - %1$f) + (latitude - %2$f) * (latitude - %2$f)",
-					longitude, latitude);
-
-			Cursor cursor = database.query("cities",
-					new String[]{"country", "admin", "city"},
-					"longitude BETWEEN ? AND ? AND latitude BETWEEN ? AND ?",
-					new String[]{
-							String.valueOf(longitude - tolerance),
-							String.valueOf(longitude + tolerance),
-							String.valueOf(latitude - tolerance),
-							String.valueOf(latitude + tolerance)
-					},
-					null,
-					null,
-					orderBy,
-					"1");
-
-			if (!cursor.moveToFirst()) {
-				cursor.close();
-				return null;
-			} else {
-				int colCountry = cursor.getColumnIndexOrThrow("country");
-				int colAdmin = cursor.getColumnIndexOrThrow("admin");
-				int colCity = cursor.getColumnIndexOrThrow("city");
-
-				CountryAdminCity result = new CountryAdminCity(cursor.getString(colCountry), cursor.getString(colAdmin), cursor.getString(colCity));
-
-				cursor.close();
-				return result;
-			}
+		GeoIndex geo = ensureGeoIndex();
+		
+		int i = geo.index.findNearest(longitude, latitude);
+		
+		if (i == -1) {
+			return null;
+		}
+		else {
+			return getIndexedCity(geo, i);
+		}
+	}
+	
+	/**
+	 * Finds the closest cities to specified location, by great-circle distance.
+	 * @param longitude location longitude.
+	 * @param latitude Location latitude.
+	 * @param count Maximum number of cities.
+	 * @return closest cities to specified location, closest first.
+	 */
+	public CountryAdminCity[] findClosestCountryAdminCities(double longitude, double latitude, int count) {
+		GeoIndex geo = ensureGeoIndex();
+		
+		int[] indices = new int[count];
+		int found = geo.index.findNearest(longitude, latitude, count, indices, null);
+		
+		CountryAdminCity[] result = new CountryAdminCity[found];
+		
+		for (int j = 0; j < found; j++) {
+			result[j] = getIndexedCity(geo, indices[j]);
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Callback of <em>whenReady()</em>.
+	 */
+	public interface ReadyCallback {
+		/**
+		 * Called once the database is open.
+		 * @param database The database.
+		 */
+		void onReady(CitiesDatabase database);
+		
+		/**
+		 * Called instead of <em>onReady()</em> if the database could not be opened.
+		 * @param e The error.
+		 */
+		default void onFailure(IOException e) {
+			Log.e(TAG, "Could not open cities database.", e);
+		}
+	}
+	
+	
+	private static final class PendingCallback {
+		final Executor executor;
+		final ReadyCallback callback;
+		
+		PendingCallback(Executor executor, ReadyCallback callback) {
+			this.executor = executor;
+			this.callback = callback;
+		}
+	}
+	
+	
+	/**
+	 * Index for nearest city lookups. Found indices are indices in the city store, or in
+	 * <em>cities</em> without a store.
+	 */
+	private static final class GeoIndex {
+		/**
+		 * The indexed cities, only without a city store.
+		 */
+		final CityTable cities;
+		final CityGeoIndex index;
+		
+		GeoIndex(CityTable cities, CityGeoIndex index) {
+			this.cities = cities;
+			this.index = index;
 		}
 	}
 	
@@ -240,6 +733,37 @@ public final class CitiesDatabase {
 	}
 	
 	
+	/**
+	 * Container class for many cities, stored column by column.
+	 */
+	public static final class CityTable {
+		public final String[] country;
+		public final String[] admin;
+		public final String[] city;
+		public final double[] longitude;
+		public final double[] latitude;
+		
+		/**
+		 * Container class for many cities, stored column by column.
+		 * @param size Number of cities.
+		 */
+		public CityTable(int size) {
+			this.country = new String[size];
+			this.admin = new String[size];
+			this.city = new String[size];
+			this.longitude = new double[size];
+			this.latitude = new double[size];
+		}
+		
+		/**
+		 * @return Number of cities.
+		 */
+		public int size() {
+			return city.length;
+		}
+	}
+	
+	
 	/**
 	 * Container class for a city and its administrative division.
 	 */
@@ -0,0 +1,361 @@
+package com.basilalasadi.fasters.database;
+
+/**
+ * In-memory spatial index of city locations, for nearest city lookups.
+ *
+ * Locations are stored as points on the unit sphere in an implicit, balanced k-d tree held in
+ * primitive arrays. Straight-line (chord) distance between points on the sphere grows with
+ * great-circle distance, so nearest neighbours by chord are exactly the nearest by haversine
+ * distance, with no special cases at the poles or across the antimeridian. Searches have no
+ * radius limit.
+ */
+public final class CityGeoIndex {
+	/**
+	 * Mean radius of the earth in kilometers.
+	 */
+	public static final double EARTH_RADIUS_KM = 6371.0088;
+	
+	private final int size;
+	
+	/**
+	 * Index of the city at each tree node. Node of range [lo, hi) is at (lo + hi) / 2.
+	 */
+	private final int[] cities;
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	
+	/**
+	 * Split axis of each tree node: 0 for x, 1 for y and 2 for z.
+	 */
+	private final byte[] axes;
+	
+	/**
+	 * Builds the index.
+	 * @param longitude Longitude of each city in degrees.
+	 * @param latitude Latitude of each city in degrees.
+	 * @throws IllegalArgumentException if the arrays have different lengths.
+	 */
+	public CityGeoIndex(double[] longitude, double[] latitude) {
+		if (longitude.length != latitude.length) {
+			throw new IllegalArgumentException("Longitude and latitude arrays have different lengths.");
+		}
+		
+		this.size = longitude.length;
+		this.cities = new int[size];
+		this.x = new double[size];
+		this.y = new double[size];
+		this.z = new double[size];
+		this.axes = new byte[size];
+		
+		for (int i = 0; i < size; i++) {
+			final double lon = Math.toRadians(longitude[i]);
+			final double lat = Math.toRadians(latitude[i]);
+			final double cosLat = Math.cos(lat);
+			
+			cities[i] = i;
+			x[i] = cosLat * Math.cos(lon);
+			y[i] = cosLat * Math.sin(lon);
+			z[i] = Math.sin(lat);
+		}
+		
+		build(0, size);
+	}
+	
+	/**
+	 * @return Number of cities in the index.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Finds the closest city to a location.
+	 * @param longitude Location longitude.
+	 * @param latitude Location latitude.
+	 * @return index of the closest city, or -1 if the index is empty.
+	 */
+	public int findNearest(double longitude, double latitude) {
+		int[] result = new int[1];
+		return findNearest(longitude, latitude, 1, result, null) == 0 ? -1 : result[0];
+	}
+	
+	/**
+	 * Finds the <em>k</em> closest cities to a location, closest first.
+	 * @param longitude Location longitude.
+	 * @param latitude Location latitude.
+	 * @param k Number of cities to find.
+	 * @param indices Output for the indices of the found cities. Must hold at least k elements.
+	 * @param distancesKm Output for the great-circle distances of the found cities in kilometers,
+	 *                    or null.
+	 * @return number of cities found, which is less than k only if the index has fewer cities.
+	 */
+	public int findNearest(double longitude, double latitude, int k, int[] indices, double[] distancesKm) {
+		final double lon = Math.toRadians(longitude);
+		final double lat = Math.toRadians(latitude);
+		final double cosLat = Math.cos(lat);
+		
+		final Search search = new Search(Math.min(k, size));
+		search.x = cosLat * Math.cos(lon);
+		search.y = cosLat * Math.sin(lon);
+		search.z = Math.sin(lat);
+		
+		if (search.capacity > 0) {
+			search(0, size, search);
+		}
+		
+		// Heap sort the max-heap of results into ascending order.
+		for (int end = search.count - 1; end > 0; end--) {
+			search.swap(0, end);
+			search.siftDown(0, end);
+		}
+		
+		for (int i = 0; i < search.count; i++) {
+			indices[i] = cities[search.nodes[i]];
+			
+			if (distancesKm != null) {
+				distancesKm[i] = chordToKm(search.distances[i]);
+			}
+		}
+		
+		return search.count;
+	}
+	
+	/**
+	 * Great-circle distance between two locations by the haversine formula.
+	 * @return distance in kilometers.
+	 */
+	public static double distanceKm(double longitude1, double latitude1, double longitude2, double latitude2) {
+		final double sinHalfLat = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+		final double sinHalfLon = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+		
+		final double h = sinHalfLat * sinHalfLat +
+				Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinHalfLon * sinHalfLon;
+		
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+	}
+	
+	/**
+	 * @param squaredChord squared chord length between two points on the unit sphere.
+	 * @return great-circle distance in kilometers.
+	 */
+	private static double chordToKm(double squaredChord) {
+		return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(squaredChord) / 2));
+	}
+	
+	/**
+	 * Builds the subtree of range [lo, hi), splitting on the axis with the largest spread.
+	 */
+	private void build(int lo, int hi) {
+		if (hi - lo <= 1) {
+			return;
+		}
+		
+		final double[][] coords = { x, y, z };
+		byte axis = 0;
+		double maxSpread = -1;
+		
+		for (byte a = 0; a < 3; a++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			
+			for (int i = lo; i < hi; i++) {
+				min = Math.min(min, coords[a][i]);
+				max = Math.max(max, coords[a][i]);
+			}
+			
+			if (max - min > maxSpread) {
+				maxSpread = max - min;
+				axis = a;
+			}
+		}
+		
+		final int mid = (lo + hi) >>> 1;
+		select(coords[axis], lo, hi - 1, mid);
+		axes[mid] = axis;
+		
+		build(lo, mid);
+		build(mid + 1, hi);
+	}
+	
+	/**
+	 * Partially sorts range [lo, hi] by <em>keys</em> so that the node at <em>k</em> is the one
+	 * that would be there if fully sorted, with no greater key before it and no smaller after it.
+	 */
+	private void select(double[] keys, int lo, int hi, int k) {
+		while (lo < hi) {
+			final double pivot = keys[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swapNodes(i++, j--);
+				}
+			}
+			
+			if (k <= j) {
+				hi = j;
+			}
+			else if (k >= i) {
+				lo = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+	
+	private void swapNodes(int i, int j) {
+		final int city = cities[i];
+		cities[i] = cities[j];
+		cities[j] = city;
+		
+		double t = x[i];
+		x[i] = x[j];
+		x[j] = t;
+		
+		t = y[i];
+		y[i] = y[j];
+		y[j] = t;
+		
+		t = z[i];
+		z[i] = z[j];
+		z[j] = t;
+	}
+	
+	/**
+	 * Searches the subtree of range [lo, hi), nearer side first.
+	 */
+	private void search(int lo, int hi, Search search) {
+		if (lo >= hi) {
+			return;
+		}
+		
+		final int mid = (lo + hi) >>> 1;
+		
+		final double dx = x[mid] - search.x;
+		final double dy = y[mid] - search.y;
+		final double dz = z[mid] - search.z;
+		search.offer(mid, dx * dx + dy * dy + dz * dz);
+		
+		final double delta;
+		
+		switch (axes[mid]) {
+			case 0:
+				delta = search.x - x[mid];
+				break;
+			
+			case 1:
+				delta = search.y - y[mid];
+				break;
+			
+			default:
+				delta = search.z - z[mid];
+		}
+		
+		if (delta < 0) {
+			search(lo, mid, search);
+			
+			if (delta * delta < search.bound()) {
+				search(mid + 1, hi, search);
+			}
+		}
+		else {
+			search(mid + 1, hi, search);
+			
+			if (delta * delta < search.bound()) {
+				search(lo, mid, search);
+			}
+		}
+	}
+	
+	
+	/**
+	 * State of a k-nearest search: the query point and a max-heap of the closest nodes so far,
+	 * keyed by squared chord distance.
+	 */
+	private static final class Search {
+		final int capacity;
+		final int[] nodes;
+		final double[] distances;
+		int count = 0;
+		
+		double x;
+		double y;
+		double z;
+		
+		Search(int capacity) {
+			this.capacity = capacity;
+			this.nodes = new int[capacity];
+			this.distances = new double[capacity];
+		}
+		
+		/**
+		 * @return squared chord distance a node must be closer than to be a result.
+		 */
+		double bound() {
+			return count < capacity ? Double.POSITIVE_INFINITY : distances[0];
+		}
+		
+		void offer(int node, double distance) {
+			if (count < capacity) {
+				int i = count++;
+				nodes[i] = node;
+				distances[i] = distance;
+				
+				while (i > 0) {
+					final int parent = (i - 1) >>> 1;
+					
+					if (distances[parent] >= distances[i]) {
+						break;
+					}
+					
+					swap(i, parent);
+					i = parent;
+				}
+			}
+			else if (distance < distances[0]) {
+				nodes[0] = node;
+				distances[0] = distance;
+				siftDown(0, count);
+			}
+		}
+		
+		void siftDown(int i, int end) {
+			while (true) {
+				final int left = 2 * i + 1;
+				
+				if (left >= end) {
+					return;
+				}
+				
+				final int right = left + 1;
+				final int largest = right < end && distances[right] > distances[left] ? right : left;
+				
+				if (distances[i] >= distances[largest]) {
+					return;
+				}
+				
+				swap(i, largest);
+				i = largest;
+			}
+		}
+		
+		void swap(int i, int j) {
+			final int node = nodes[i];
+			nodes[i] = nodes[j];
+			nodes[j] = node;
+			
+			final double distance = distances[i];
+			distances[i] = distances[j];
+			distances[j] = distance;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package com.basilalasadi.fasters.database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Read-only columnar store of the worldcities table, generated at build time from the SQLite
+ * database by the <em>generateCityStore</em> task. It is read in place from a (memory mapped)
+ * buffer; strings are only decoded when returned.
+ *
+ * Format (big endian):
+ * <pre>
+ *   int     magic ("FCTS")
+ *   int     version
+ *   int     number of cities
+ *   int     number of countries
+ *   int     number of strings
+ *   int     size of the string pool in bytes
+ *   double[cities]         longitude of each city
+ *   double[cities]         latitude of each city
+ *   int[cities]            admin of each city, as a string index
+ *   int[cities]            name of each city, as a string index
+ *   int[countries]         name of each country, as a string index
+ *   int[countries + 1]     first city of each country, followed by the number of cities
+ *   int[strings + 1]       offset of each string in the pool, followed by the pool size
+ *   byte[pool size]        UTF-8 strings
+ * </pre>
+ * Cities are sorted by country, admin and city, and countries by name, in UTF-8 byte order (the
+ * order of SQLite's binary collation).
+ */
+public final class CityStore {
+	public static final String ASSET_NAME = "cities";
+	public static final int MAGIC = 0x46435453;
+	public static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 24;
+	
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int countryCount;
+	
+	private final int longitudeOffset;
+	private final int latitudeOffset;
+	private final int adminOffset;
+	private final int cityOffset;
+	private final int countryNameOffset;
+	private final int countryStartOffset;
+	private final int stringOffsetsOffset;
+	private final int poolOffset;
+	
+	/**
+	 * @param buffer Buffer holding the store, from its start to its end. Only absolute reads are
+	 *               used, so the buffer may be shared between threads.
+	 * @throws IOException if the buffer does not hold a valid store.
+	 */
+	public CityStore(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		
+		if (this.buffer.limit() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a city store.");
+		}
+		if (this.buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported city store version " + this.buffer.getInt(4) + ".");
+		}
+		
+		this.size = this.buffer.getInt(8);
+		this.countryCount = this.buffer.getInt(12);
+		
+		final int stringCount = this.buffer.getInt(16);
+		final int poolSize = this.buffer.getInt(20);
+		
+		this.longitudeOffset = HEADER_SIZE;
+		this.latitudeOffset = longitudeOffset + size * 8;
+		this.adminOffset = latitudeOffset + size * 8;
+		this.cityOffset = adminOffset + size * 4;
+		this.countryNameOffset = cityOffset + size * 4;
+		this.countryStartOffset = countryNameOffset + countryCount * 4;
+		this.stringOffsetsOffset = countryStartOffset + (countryCount + 1) * 4;
+		this.poolOffset = stringOffsetsOffset + (stringCount + 1) * 4;
+		
+		if (this.buffer.limit() != poolOffset + poolSize) {
+			throw new IOException("City store is truncated.");
+		}
+	}
+	
+	/**
+	 * @return Number of cities.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return Number of countries.
+	 */
+	public int getCountryCount() {
+		return countryCount;
+	}
+	
+	/**
+	 * @param country Country index.
+	 * @return name of the country.
+	 */
+	public String getCountry(int country) {
+		return getString(buffer.getInt(countryNameOffset + country * 4));
+	}
+	
+	/**
+	 * @param country Country index.
+	 * @return index of the first city of the country.
+	 */
+	public int getCountryStart(int country) {
+		return buffer.getInt(countryStartOffset + country * 4);
+	}
+	
+	/**
+	 * @param country Country index.
+	 * @return index after the last city of the country.
+	 */
+	public int getCountryEnd(int country) {
+		return buffer.getInt(countryStartOffset + (country + 1) * 4);
+	}
+	
+	/**
+	 * Finds the country of a city by binary search over the first cities of the countries.
+	 * @param city City index.
+	 * @return country index.
+	 */
+	public int getCountryOfCity(int city) {
+		int lo = 0;
+		int hi = countryCount - 1;
+		
+		// Last country starting at or before the city. Empty countries start where the next one
+		// does, so the last of them is the one the city is in.
+		while (lo < hi) {
+			final int mid = (lo + hi + 1) >>> 1;
+			
+			if (getCountryStart(mid) <= city) {
+				lo = mid;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		
+		return lo;
+	}
+	
+	/**
+	 * @param city City index.
+	 * @return admin of the city.
+	 */
+	public String getAdmin(int city) {
+		return getString(buffer.getInt(adminOffset + city * 4));
+	}
+	
+	/**
+	 * @param city City index.
+	 * @return name of the city.
+	 */
+	public String getCity(int city) {
+		return getString(buffer.getInt(cityOffset + city * 4));
+	}
+	
+	/**
+	 * @param city City index.
+	 * @return longitude of the city.
+	 */
+	public double getLongitude(int city) {
+		return buffer.getDouble(longitudeOffset + city * 8);
+	}
+	
+	/**
+	 * @param city City index.
+	 * @return latitude of the city.
+	 */
+	public double getLatitude(int city) {
+		return buffer.getDouble(latitudeOffset + city * 8);
+	}
+	
+	/**
+	 * Finds a country by binary search.
+	 * @param country Name of the country.
+	 * @return country index, or -1 if not found.
+	 */
+	public int findCountry(String country) {
+		final byte[] key = country.getBytes(StandardCharsets.UTF_8);
+		
+		int lo = 0;
+		int hi = countryCount - 1;
+		
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final int cmp = compareString(buffer.getInt(countryNameOffset + mid * 4), key);
+			
+			if (cmp < 0) {
+				lo = mid + 1;
+			}
+			else if (cmp > 0) {
+				hi = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Finds a city by binary search.
+	 * @param country Country of the city.
+	 * @param admin Admin of the city.
+	 * @param city Name of the city.
+	 * @return city index, or -1 if not found.
+	 */
+	public int findCity(String country, String admin, String city) {
+		final int countryIndex = findCountry(country);
+		
+		if (countryIndex == -1) {
+			return -1;
+		}
+		
+		final byte[] adminKey = admin.getBytes(StandardCharsets.UTF_8);
+		final byte[] cityKey = city.getBytes(StandardCharsets.UTF_8);
+		
+		int lo = getCountryStart(countryIndex);
+		int hi = getCountryEnd(countryIndex) - 1;
+		
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			int cmp = compareString(buffer.getInt(adminOffset + mid * 4), adminKey);
+			
+			if (cmp == 0) {
+				cmp = compareString(buffer.getInt(cityOffset + mid * 4), cityKey);
+			}
+			
+			if (cmp < 0) {
+				lo = mid + 1;
+			}
+			else if (cmp > 0) {
+				hi = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Decodes a string from the pool.
+	 */
+	private String getString(int index) {
+		final int start = buffer.getInt(stringOffsetsOffset + index * 4);
+		final int end = buffer.getInt(stringOffsetsOffset + (index + 1) * 4);
+		
+		final byte[] bytes = new byte[end - start];
+		
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(poolOffset + start + i);
+		}
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Compares a string in the pool to <em>key</em> in place, byte by byte.
+	 * @return negative, zero or positive if the string is less than, equal to or greater than key.
+	 */
+	private int compareString(int index, byte[] key) {
+		final int start = poolOffset + buffer.getInt(stringOffsetsOffset + index * 4);
+		final int length = poolOffset + buffer.getInt(stringOffsetsOffset + (index + 1) * 4) - start;
+		final int n = Math.min(length, key.length);
+		
+		for (int i = 0; i < n; i++) {
+			final int cmp = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+			
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		
+		return length - key.length;
+	}
+}
@@ -0,0 +1,150 @@
+package com.basilalasadi.fasters.database;
+
+import com.basilalasadi.fasters.math.PrayerTimings;
+
+import org.threeten.bp.LocalDate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Read-only timetable of one city over a range of days (typically a year), such as an official
+ * timetable published by an authority. It is read in place from a (memory mapped) buffer, see
+ * <em>BinaryAsset.map()</em>, and written by <em>TimetableFileWriter</em>.
+ *
+ * Timings are seconds since 00:00 local time, or NO_TIME if the event does not occur. Each
+ * event's timing is stored as the difference from the previous day's, zig-zag encoded as an
+ * unsigned LEB128 varint, so most days take 5 to 10 bytes. Days are grouped into blocks whose
+ * first day is stored as is, and an index of the blocks at the end of the file lets any day be
+ * read by decoding at most one block.
+ *
+ * Format (big endian):
+ * <pre>
+ *   int     magic ("FTTD")
+ *   int     version
+ *   long    epoch day of the first date
+ *   int     number of days
+ *   int     number of days per block
+ *   blocks:
+ *     varint[days in block * 5]  fajr, duhr, asr, magrib and isha of each day, as differences
+ *                                from the previous day in the block
+ *   int[blocks]   offset of each block from the start of the file
+ * </pre>
+ */
+public final class TimetableFile {
+	public static final int MAGIC = 0x46545444;
+	public static final int VERSION = 1;
+	
+	/**
+	 * Timing of an event that does not occur on a day.
+	 */
+	public static final int NO_TIME = Integer.MIN_VALUE;
+	
+	static final int HEADER_SIZE = 24;
+	
+	private final ByteBuffer buffer;
+	private final long firstEpochDay;
+	private final int days;
+	private final int daysPerBlock;
+	private final int indexOffset;
+	
+	/**
+	 * @param buffer Buffer holding the file, from its start to its end. Only absolute reads are
+	 *               used, so the buffer may be shared between threads.
+	 * @throws IOException if the buffer does not hold a valid timetable.
+	 */
+	public TimetableFile(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		
+		if (this.buffer.limit() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a timetable file.");
+		}
+		if (this.buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported timetable file version " + this.buffer.getInt(4) + ".");
+		}
+		
+		this.firstEpochDay = this.buffer.getLong(8);
+		this.days = this.buffer.getInt(16);
+		this.daysPerBlock = this.buffer.getInt(20);
+		
+		if (days < 0 || daysPerBlock <= 0) {
+			throw new IOException("Invalid timetable file header.");
+		}
+		
+		this.indexOffset = this.buffer.limit() - getBlockCount(days, daysPerBlock) * 4;
+		
+		if (indexOffset < HEADER_SIZE) {
+			throw new IOException("Timetable file is truncated.");
+		}
+	}
+	
+	/**
+	 * @return first date.
+	 */
+	public LocalDate getFirstDate() {
+		return LocalDate.ofEpochDay(firstEpochDay);
+	}
+	
+	/**
+	 * @return Number of days.
+	 */
+	public int getDays() {
+		return days;
+	}
+	
+	/**
+	 * @param date Date.
+	 * @return index of the date's day, or -1 if the timetable does not cover the date.
+	 */
+	public int indexOf(LocalDate date) {
+		final long day = date.toEpochDay() - firstEpochDay;
+		return day >= 0 && day < days ? (int) day : -1;
+	}
+	
+	/**
+	 * Reads the timings of a day. Nothing is allocated.
+	 * @param day Day index, from 0 to <code>getDays() - 1</code>.
+	 * @param out Array of at least 5 elements that receives fajr, duhr, asr, magrib and isha in
+	 *            seconds since 00:00, or NO_TIME.
+	 * @throws IllegalStateException if the block of the day is corrupt.
+	 */
+	public void getTimings(int day, int[] out) {
+		if (day < 0 || day >= days) {
+			throw new IndexOutOfBoundsException("Day " + day + " is out of range.");
+		}
+		
+		final int block = day / daysPerBlock;
+		int position = buffer.getInt(indexOffset + block * 4);
+		
+		for (int event = 0; event < PrayerTimings.TIMINGS_COUNT; event++) {
+			out[event] = 0;
+		}
+		
+		for (int i = block * daysPerBlock; i <= day; i++) {
+			for (int event = 0; event < PrayerTimings.TIMINGS_COUNT; event++) {
+				int value = 0;
+				int shift = 0;
+				int b;
+				
+				do {
+					if (position >= indexOffset || shift > 28) {
+						throw new IllegalStateException("Corrupt timetable block " + block + ".");
+					}
+					
+					b = buffer.get(position++);
+					value |= (b & 0x7f) << shift;
+					shift += 7;
+				} while ((b & 0x80) != 0);
+				
+				// Differences wrap around, so transitions from and to NO_TIME are reversible.
+				out[event] += (value >>> 1) ^ -(value & 1);
+			}
+		}
+	}
+	
+	static int getBlockCount(int days, int daysPerBlock) {
+		return (days + daysPerBlock - 1) / daysPerBlock;
+	}
+}
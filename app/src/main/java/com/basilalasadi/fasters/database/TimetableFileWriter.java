@@ -0,0 +1,126 @@
+package com.basilalasadi.fasters.database;
+
+import org.threeten.bp.LocalDate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.basilalasadi.fasters.math.PrayerTimings.TIMINGS_COUNT;
+
+
+/**
+ * Streaming writer of a <em>TimetableFile</em>. Days are written one at a time, in order, and the
+ * block index is appended by <em>finish()</em>, so the file is written in one pass.
+ */
+public final class TimetableFileWriter {
+	/**
+	 * Default number of days per block. At most this many days are decoded to read one.
+	 */
+	public static final int DEFAULT_DAYS_PER_BLOCK = 16;
+	
+	private final DataOutputStream out;
+	private final int days;
+	private final int daysPerBlock;
+	private final int[] blockOffsets;
+	private final int[] previous = new int[TIMINGS_COUNT];
+	private int day = 0;
+	private boolean finished = false;
+	
+	/**
+	 * @param out Output stream. It is not closed.
+	 * @param firstDate First date.
+	 * @param days Number of days.
+	 * @throws IOException if writing the header fails.
+	 */
+	public TimetableFileWriter(OutputStream out, LocalDate firstDate, int days) throws IOException {
+		this(out, firstDate, days, DEFAULT_DAYS_PER_BLOCK);
+	}
+	
+	/**
+	 * @param out Output stream. It is not closed.
+	 * @param firstDate First date.
+	 * @param days Number of days.
+	 * @param daysPerBlock Number of days per block.
+	 * @throws IOException if writing the header fails.
+	 */
+	public TimetableFileWriter(OutputStream out, LocalDate firstDate, int days, int daysPerBlock) throws IOException {
+		if (days < 0 || daysPerBlock <= 0) {
+			throw new IllegalArgumentException("Invalid number of days.");
+		}
+		
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.days = days;
+		this.daysPerBlock = daysPerBlock;
+		this.blockOffsets = new int[TimetableFile.getBlockCount(days, daysPerBlock)];
+		
+		this.out.writeInt(TimetableFile.MAGIC);
+		this.out.writeInt(TimetableFile.VERSION);
+		this.out.writeLong(firstDate.toEpochDay());
+		this.out.writeInt(days);
+		this.out.writeInt(daysPerBlock);
+	}
+	
+	/**
+	 * Writes the timings of the next day.
+	 * @param timings Fajr, duhr, asr, magrib and isha in seconds since 00:00, or
+	 *                <em>TimetableFile.NO_TIME</em>.
+	 * @throws IOException if writing fails.
+	 * @throws IllegalStateException if all days have already been written.
+	 */
+	public void writeDay(int[] timings) throws IOException {
+		if (finished || day == days) {
+			throw new IllegalStateException("All days have been written.");
+		}
+		
+		if (day % daysPerBlock == 0) {
+			blockOffsets[day / daysPerBlock] = out.size();
+			
+			for (int event = 0; event < TIMINGS_COUNT; event++) {
+				previous[event] = 0;
+			}
+		}
+		
+		for (int event = 0; event < TIMINGS_COUNT; event++) {
+			final int difference = timings[event] - previous[event];
+			writeVarint((difference << 1) ^ (difference >> 31));
+			previous[event] = timings[event];
+		}
+		
+		day++;
+	}
+	
+	/**
+	 * Writes the block index and flushes the output.
+	 * @throws IOException if writing fails.
+	 * @throws IllegalStateException if not all days have been written.
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		if (day != days) {
+			throw new IllegalStateException("Only " + day + " of " + days + " days have been written.");
+		}
+		
+		for (int offset : blockOffsets) {
+			out.writeInt(offset);
+		}
+		
+		out.flush();
+		finished = true;
+	}
+	
+	/**
+	 * Writes an unsigned LEB128 varint.
+	 */
+	private void writeVarint(int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		
+		out.write(value);
+	}
+}
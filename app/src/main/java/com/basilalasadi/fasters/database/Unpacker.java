@@ -0,0 +1,210 @@
+package com.basilalasadi.fasters.database;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+
+
+/**
+ * Copies streams to files so that the destination is either complete or absent, and checks files
+ * against a manifest of their size and CRC-32.
+ *
+ * A file is written to a temporary sibling first, synced, and renamed over the destination. Its
+ * manifest is written the same way afterwards, so a file without a matching manifest is one whose
+ * copy did not finish.
+ */
+public final class Unpacker {
+	/**
+	 * Size of the copy buffer in bytes.
+	 */
+	public static final int BUFFER_SIZE = 256 * 1024;
+	
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String MANIFEST_SUFFIX = ".manifest";
+	
+	private Unpacker() {}
+	
+	/**
+	 * Copies a stream to a file and writes its manifest.
+	 * @param in Stream to copy. It is not closed.
+	 * @param destination Destination file. It is replaced if it exists.
+	 * @return manifest of the written file.
+	 * @throws IOException if copying, renaming or writing the manifest fails. The destination and
+	 * its manifest are deleted, including a destination that existed before.
+	 */
+	public static Manifest unpack(InputStream in, File destination) throws IOException {
+		deleteManifest(destination);
+		
+		try {
+			final Manifest manifest = copy(in, destination);
+			manifest.write(destination);
+			return manifest;
+		}
+		catch (IOException e) {
+			delete(destination);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Copies a stream to a temporary file, and renames it over the destination.
+	 * @return manifest of the copied file.
+	 */
+	private static Manifest copy(InputStream in, File destination) throws IOException {
+		final File temp = new File(destination.getPath() + TEMP_SUFFIX);
+		final CRC32 crc = new CRC32();
+		long size = 0;
+		
+		// CRC32.update(ByteBuffer) needs API 26, so the buffer is backed by an array.
+		final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		final ReadableByteChannel source = Channels.newChannel(in);
+		
+		try (FileOutputStream out = new FileOutputStream(temp)) {
+			final FileChannel channel = out.getChannel();
+			
+			while (source.read(buffer) != -1) {
+				buffer.flip();
+				crc.update(buffer.array(), 0, buffer.limit());
+				size += buffer.limit();
+				
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				
+				buffer.clear();
+			}
+			
+			channel.force(false);
+		}
+		catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		
+		rename(temp, destination);
+		
+		return new Manifest(size, crc.getValue());
+	}
+	
+	/**
+	 * Checks a file against its manifest.
+	 * @param file File to check.
+	 * @return true if the file and its manifest exist, and the file's size and CRC-32 match it.
+	 */
+	public static boolean verify(File file) {
+		try {
+			final Manifest manifest = Manifest.read(file);
+			
+			return manifest != null && file.length() == manifest.size && checksum(file) == manifest.crc;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * @param file File.
+	 * @return CRC-32 of the file.
+	 * @throws IOException if reading fails.
+	 */
+	public static long checksum(File file) throws IOException {
+		final CRC32 crc = new CRC32();
+		final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		
+		try (FileInputStream in = new FileInputStream(file)) {
+			final FileChannel channel = in.getChannel();
+			
+			while (channel.read(buffer) != -1) {
+				crc.update(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+		}
+		
+		return crc.getValue();
+	}
+	
+	/**
+	 * Deletes a file and its manifest.
+	 * @param file File.
+	 * @return true if the file no longer exists.
+	 */
+	public static boolean delete(File file) {
+		deleteManifest(file);
+		return !file.exists() || file.delete();
+	}
+	
+	private static void deleteManifest(File file) {
+		new File(file.getPath() + MANIFEST_SUFFIX).delete();
+	}
+	
+	private static void rename(File from, File to) throws IOException {
+		if (!from.renameTo(to)) {
+			from.delete();
+			throw new IOException("Could not rename " + from + " to " + to + ".");
+		}
+	}
+	
+	
+	/**
+	 * Size and CRC-32 of a file, stored next to it.
+	 */
+	public static final class Manifest {
+		public final long size;
+		public final long crc;
+		
+		public Manifest(long size, long crc) {
+			this.size = size;
+			this.crc = crc;
+		}
+		
+		/**
+		 * Reads the manifest of a file.
+		 * @param file File the manifest describes.
+		 * @return the manifest, or null if it does not exist.
+		 * @throws IOException if reading fails.
+		 */
+		public static Manifest read(File file) throws IOException {
+			final File manifestFile = new File(file.getPath() + MANIFEST_SUFFIX);
+			
+			if (!manifestFile.isFile()) {
+				return null;
+			}
+			
+			try (DataInputStream in = new DataInputStream(new FileInputStream(manifestFile))) {
+				return new Manifest(in.readLong(), in.readLong());
+			}
+		}
+		
+		/**
+		 * Writes the manifest of a file, atomically.
+		 * @param file File the manifest describes.
+		 * @throws IOException if writing fails.
+		 */
+		public void write(File file) throws IOException {
+			final File manifestFile = new File(file.getPath() + MANIFEST_SUFFIX);
+			final File temp = new File(manifestFile.getPath() + TEMP_SUFFIX);
+			
+			try (FileOutputStream fout = new FileOutputStream(temp); DataOutputStream out = new DataOutputStream(fout)) {
+				out.writeLong(size);
+				out.writeLong(crc);
+				out.flush();
+				fout.getFD().sync();
+			}
+			catch (IOException e) {
+				temp.delete();
+				throw e;
+			}
+			
+			rename(temp, manifestFile);
+		}
+	}
+}
@@ -1,9 +1,22 @@
 package com.basilalasadi.fasters.executors;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 public abstract class AppExecutors {
 	public static final ExecutorService ioExecutor = Executors.newCachedThreadPool();
 	public static final ExecutorService cpuExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	public static final ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	
+	private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+	
+	/**
+	 * Runs tasks on the main looper.
+	 */
+	public static final Executor mainExecutor = mainHandler::post;
 }
@@ -0,0 +1,166 @@
+package com.basilalasadi.fasters.executors;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Graph of startup tasks with declared dependencies. Once started, each task is submitted as soon
+ * as all of its dependencies have finished, so independent tasks run concurrently. A task whose
+ * dependency failed is skipped. The time of each task is logged.
+ */
+public final class StartupGraph {
+	public static final String TAG = "StartupGraph";
+	
+	private final Executor executor;
+	private final List<Task> tasks = new ArrayList<>();
+	private long startTime = -1;
+	
+	/**
+	 * @param executor Executor to run the tasks on.
+	 */
+	public StartupGraph(Executor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Adds a task to the graph. Tasks can only be added before the graph is started.
+	 * @param name Name of the task, for logging.
+	 * @param action Work of the task.
+	 * @param dependencies Tasks that must finish before this one starts.
+	 * @return the task.
+	 * @throws IllegalStateException if the graph has already started.
+	 */
+	public synchronized Task add(String name, Action action, Task... dependencies) {
+		if (startTime != -1) {
+			throw new IllegalStateException("Graph has already started.");
+		}
+		
+		Task task = new Task(name, action, dependencies.length);
+		
+		for (Task dependency : dependencies) {
+			dependency.dependents.add(task);
+		}
+		
+		tasks.add(task);
+		return task;
+	}
+	
+	/**
+	 * Submits every task without dependencies.
+	 * @throws IllegalStateException if the graph has already started.
+	 */
+	public synchronized void start() {
+		if (startTime != -1) {
+			throw new IllegalStateException("Graph has already started.");
+		}
+		
+		startTime = SystemClock.elapsedRealtime();
+		
+		for (Task task : tasks) {
+			if (task.pendingDependencies.get() == 0) {
+				submit(task);
+			}
+		}
+	}
+	
+	private void submit(Task task) {
+		executor.execute(() -> run(task));
+	}
+	
+	private void run(Task task) {
+		final long start = SystemClock.elapsedRealtime();
+		
+		try {
+			if (task.skipped) {
+				Log.w(TAG, task.name + " skipped: a dependency failed.");
+			}
+			else {
+				task.action.run();
+				
+				final long end = SystemClock.elapsedRealtime();
+				Log.d(TAG, task.name + " took " + (end - start) + " ms, finished at +" + (end - startTime) + " ms.");
+			}
+		}
+		catch (Throwable e) {
+			Log.e(TAG, task.name + " failed.", e);
+			task.failure = e;
+		}
+		
+		final boolean failed = task.skipped || task.failure != null;
+		task.done.countDown();
+		
+		for (Task dependent : task.dependents) {
+			if (failed) {
+				dependent.skipped = true;
+			}
+			if (dependent.pendingDependencies.decrementAndGet() == 0) {
+				submit(dependent);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Work of a startup task.
+	 */
+	public interface Action {
+		void run() throws Exception;
+	}
+	
+	
+	/**
+	 * A task in the graph.
+	 */
+	public static final class Task {
+		public final String name;
+		
+		private final Action action;
+		private final AtomicInteger pendingDependencies;
+		private final List<Task> dependents = new ArrayList<>();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile boolean skipped = false;
+		private volatile Throwable failure = null;
+		
+		private Task(String name, Action action, int dependencies) {
+			this.name = name;
+			this.action = action;
+			this.pendingDependencies = new AtomicInteger(dependencies);
+		}
+		
+		/**
+		 * Waits for the task to finish.
+		 * @return true if the task finished successfully.
+		 * @throws InterruptedException if interrupted while waiting.
+		 */
+		public boolean await() throws InterruptedException {
+			done.await();
+			return isSuccessful();
+		}
+		
+		/**
+		 * Waits for the task to finish.
+		 * @param timeout Maximum time to wait.
+		 * @param unit Unit of timeout.
+		 * @return true if the task finished successfully within the timeout.
+		 * @throws InterruptedException if interrupted while waiting.
+		 */
+		public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+			return done.await(timeout, unit) && isSuccessful();
+		}
+		
+		/**
+		 * @return true if the task has finished successfully.
+		 */
+		public boolean isSuccessful() {
+			return done.getCount() == 0 && !skipped && failure == null;
+		}
+	}
+}
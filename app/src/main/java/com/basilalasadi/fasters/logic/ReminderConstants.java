@@ -5,4 +5,6 @@ public final class ReminderConstants {
 	public static final int REMINDER_WATER = 1;
 	public static final int REMINDER_PREPARE_BREAKFAST = 2;
 	public static final int REMINDER_BREAKFAST_CLOSE = 3;
+	
+	public static final int REMINDER_COUNT = 4;
 }
@@ -0,0 +1,295 @@
+package com.basilalasadi.fasters.logic;
+
+import com.basilalasadi.fasters.math.PrayerTimings;
+import com.basilalasadi.fasters.model.PrayerTimeline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.basilalasadi.fasters.logic.ReminderConstants.*;
+
+
+/**
+ * Plans every enabled reminder of the next few days from a prayer timeline, so they can be armed in
+ * one pass and the device only wakes up to notify.
+ *
+ * Each reminder has a request code derived from the date of its event and its index, so a planned
+ * reminder keeps its request code across runs and replans only change the alarms that differ. It
+ * has no Android dependency, so it runs the same in the reminders service and in a headless
+ * simulation.
+ */
+public final class ReminderPlanner {
+	/**
+	 * Reminders are planned this far ahead.
+	 */
+	public static final long PLAN_MILLIS = 3 * 86400 * 1000L;
+	
+	/**
+	 * The plan is renewed this often, well within <em>PLAN_MILLIS</em> so a deferred job still runs
+	 * before the planned reminders run out.
+	 */
+	public static final long REPLAN_INTERVAL_MILLIS = 86400 * 1000L;
+	
+	/**
+	 * Time to plan again when reminders are enabled but none could be planned, e.g. with no fajr or
+	 * magrib in the timeline.
+	 */
+	public static final long RETRY_MILLIS = 3600 * 1000L;
+	
+	/**
+	 * <em>Plan.nextUpdate</em> when no reminder is enabled: nothing is planned again until a
+	 * reminder setting changes.
+	 */
+	public static final long NO_UPDATE = Long.MAX_VALUE;
+	
+	/**
+	 * First request code of the reminder alarms. Codes below it are left to other pending intents.
+	 */
+	public static final int REQUEST_CODE_BASE = 100;
+	
+	/**
+	 * Request codes repeat after this many days, which is more than a plan spans.
+	 */
+	public static final int REQUEST_CODE_DAYS = 16;
+	
+	/**
+	 * Event each reminder is about, by reminder index.
+	 */
+	private static final int[] EVENTS = {
+			PrayerTimings.FAJR, PrayerTimings.FAJR, PrayerTimings.MAGRIB, PrayerTimings.MAGRIB
+	};
+	
+	/**
+	 * Time from each reminder to its event, by reminder index.
+	 */
+	private static final long[] LEADS_MILLIS = {
+			3600 * 1000, 15 * 60 * 1000, 2 * 3600 * 1000, 15 * 60 * 1000
+	};
+	
+	private ReminderPlanner() {}
+	
+	/**
+	 * Plans the reminders after <em>now</em> and within <em>PLAN_MILLIS</em>, in order of time.
+	 * @param timeline Timeline, advanced to <em>now</em>.
+	 * @param now Current time in epoch millis.
+	 * @param enabledReminders Bit <em>1 &lt;&lt; reminderIndex</em> is set for each enabled
+	 *                         reminder, as given by <em>SettingsManager.getEnabledReminders()</em>.
+	 * @return the plan, with <em>nextUpdate</em> set to <em>NO_UPDATE</em> if no reminder is
+	 * enabled.
+	 */
+	public static Plan plan(PrayerTimeline timeline, long now, int enabledReminders) {
+		final ArrayList<Reminder> reminders = new ArrayList<>();
+		
+		if (enabledReminders == 0) {
+			return new Plan(reminders, NO_UPDATE);
+		}
+		final long horizon = now + PLAN_MILLIS;
+		
+		synchronized (timeline) {
+			final int end = timeline.getEndIndex();
+			
+			for (int index = timeline.getNextIndex(); index < end; index++) {
+				final int event = index % PrayerTimeline.EVENTS_PER_DAY;
+				final long eventTime = timeline.getTime(index);
+				
+				if (eventTime == PrayerTimings.NO_TIME_MILLIS || event != PrayerTimings.FAJR && event != PrayerTimings.MAGRIB) {
+					continue;
+				}
+				
+				for (int reminderIndex = 0; reminderIndex < REMINDER_COUNT; reminderIndex++) {
+					final long time = eventTime - LEADS_MILLIS[reminderIndex];
+					
+					if (EVENTS[reminderIndex] != event || (enabledReminders & 1 << reminderIndex) == 0
+							|| time <= now || time >= horizon) {
+						continue;
+					}
+					
+					reminders.add(new Reminder(getRequestCode(timeline.getEpochDay(index), reminderIndex),
+							reminderIndex, time, index, eventTime));
+				}
+			}
+		}
+		
+		// Reminders of one event are added by decreasing lead, and events are in order.
+		final long nextUpdate = reminders.isEmpty()
+				? now + RETRY_MILLIS
+				: Math.min(now + REPLAN_INTERVAL_MILLIS, reminders.get(reminders.size() - 1).time);
+		
+		return new Plan(reminders, nextUpdate);
+	}
+	
+	/**
+	 * @param epochDay Local date of the event, as days since 1970-01-01.
+	 * @param reminderIndex Reminder index in <em>ReminderConstants</em>.
+	 * @return request code of the pending intent of the reminder.
+	 */
+	public static int getRequestCode(long epochDay, int reminderIndex) {
+		return REQUEST_CODE_BASE + (int) Math.floorMod(epochDay, (long) REQUEST_CODE_DAYS) * REMINDER_COUNT + reminderIndex;
+	}
+	
+	/**
+	 * @param reminderIndex Reminder index in <em>ReminderConstants</em>.
+	 * @return the event the reminder is about (<em>PrayerTimings.FAJR</em> or <em>MAGRIB</em>).
+	 */
+	public static int getEvent(int reminderIndex) {
+		return EVENTS[reminderIndex];
+	}
+	
+	/**
+	 * Compares the armed reminders with a plan.
+	 * @param armed Reminders armed by the last run.
+	 * @param planned Reminders of the new plan.
+	 * @param now Current time in epoch millis; armed reminders up to it have fired.
+	 * @return the alarms to cancel and to arm.
+	 */
+	public static Diff diff(Collection<Reminder> armed, List<Reminder> planned, long now) {
+		final Map<Integer, Reminder> armedByCode = new HashMap<>();
+		
+		for (Reminder reminder : armed) {
+			if (reminder.time > now) {
+				armedByCode.put(reminder.requestCode, reminder);
+			}
+		}
+		
+		final ArrayList<Reminder> toArm = new ArrayList<>();
+		
+		for (Reminder reminder : planned) {
+			final Reminder current = armedByCode.remove(reminder.requestCode);
+			
+			if (current == null || !current.sameAlarm(reminder)) {
+				toArm.add(reminder);
+			}
+		}
+		
+		// Armed reminders that are no longer planned. The ones whose request code is reused were
+		// replaced above, and arming replaces an alarm with the same request code.
+		return new Diff(new ArrayList<>(armedByCode.values()), toArm);
+	}
+	
+	
+	/**
+	 * Planned reminders and the time to plan again.
+	 */
+	public static final class Plan {
+		/**
+		 * Reminders in order of time.
+		 */
+		public final List<Reminder> reminders;
+		
+		/**
+		 * Time to plan again, in epoch millis, or <em>NO_UPDATE</em>.
+		 */
+		public final long nextUpdate;
+		
+		public Plan(List<Reminder> reminders, long nextUpdate) {
+			this.reminders = reminders;
+			this.nextUpdate = nextUpdate;
+		}
+	}
+	
+	
+	/**
+	 * Alarms to cancel and to arm to go from the armed reminders to a plan.
+	 */
+	public static final class Diff {
+		public final List<Reminder> toCancel;
+		public final List<Reminder> toArm;
+		
+		public Diff(List<Reminder> toCancel, List<Reminder> toArm) {
+			this.toCancel = toCancel;
+			this.toArm = toArm;
+		}
+		
+		public boolean isEmpty() {
+			return toCancel.isEmpty() && toArm.isEmpty();
+		}
+	}
+	
+	
+	/**
+	 * A reminder alarm.
+	 */
+	public static final class Reminder {
+		/**
+		 * Request code of the pending intent, see <em>getRequestCode()</em>.
+		 */
+		public final int requestCode;
+		
+		/**
+		 * Reminder index in <em>ReminderConstants</em>.
+		 */
+		public final int reminderIndex;
+		
+		/**
+		 * Time to fire the reminder at, in epoch millis.
+		 */
+		public final long time;
+		
+		/**
+		 * Index of the event in the timeline, to format its time, or -1 if the reminder was decoded.
+		 */
+		public final int eventIndex;
+		
+		/**
+		 * Time of the event the reminder is about, in epoch millis.
+		 */
+		public final long eventTime;
+		
+		public Reminder(int requestCode, int reminderIndex, long time, int eventIndex, long eventTime) {
+			this.requestCode = requestCode;
+			this.reminderIndex = reminderIndex;
+			this.time = time;
+			this.eventIndex = eventIndex;
+			this.eventTime = eventTime;
+		}
+		
+		/**
+		 * @return true if both reminders are the same alarm, with the same extra.
+		 */
+		public boolean sameAlarm(Reminder other) {
+			return requestCode == other.requestCode && reminderIndex == other.reminderIndex && time == other.time;
+		}
+		
+		/**
+		 * @return the reminder as a string, to be persisted and read back with <em>decode()</em>.
+		 */
+		public String encode() {
+			return requestCode + ":" + reminderIndex + ":" + time;
+		}
+		
+		/**
+		 * @param encoded String from <em>encode()</em>.
+		 * @return the reminder, or null if the string is malformed.
+		 */
+		public static Reminder decode(String encoded) {
+			final String[] parts = encoded.split(":");
+			
+			if (parts.length != 3) {
+				return null;
+			}
+			
+			try {
+				final int reminderIndex = Integer.parseInt(parts[1]);
+				final long time = Long.parseLong(parts[2]);
+				
+				if (reminderIndex < 0 || reminderIndex >= REMINDER_COUNT) {
+					return null;
+				}
+				
+				return new Reminder(Integer.parseInt(parts[0]), reminderIndex, time, -1,
+						time + LEADS_MILLIS[reminderIndex]);
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return "Reminder(" + encode() + ")";
+		}
+	}
+}
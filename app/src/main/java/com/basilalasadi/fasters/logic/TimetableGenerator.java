@@ -0,0 +1,223 @@
+package com.basilalasadi.fasters.logic;
+
+import com.basilalasadi.fasters.database.CitiesDatabase;
+import com.basilalasadi.fasters.executors.AppExecutors;
+import com.basilalasadi.fasters.math.AstronomyMath;
+import com.basilalasadi.fasters.math.HijriCalendar;
+import com.basilalasadi.fasters.math.PrayerTimings;
+import com.basilalasadi.fasters.math.SolarEphemeris;
+import com.basilalasadi.fasters.math.TimingsMethod;
+
+import org.threeten.bp.LocalDate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.basilalasadi.fasters.math.PrayerTimings.*;
+
+
+/**
+ * <p>
+ * Generates the prayer timetables of many cities over a range of dates. Cities are split into
+ * chunks that are computed in parallel on a work-stealing pool, and the results are streamed to
+ * the output in city order while later chunks are still being computed.
+ * </p><p>
+ * Output format (big endian, as read by <em>BinaryReader</em>):
+ * <pre>
+ *   int     magic ("FTTB")
+ *   int     version
+ *   long    epoch day of the first date
+ *   int     number of days
+ *   int     number of cities
+ *   cities:
+ *     UTF     country
+ *     UTF     admin
+ *     UTF     city
+ *     double  longitude
+ *     double  latitude
+ *     int[days * 5]  fajr, duhr, asr, magrib and isha of each day, in seconds since 00:00 UTC,
+ *                    or NO_TIME if the event does not occur.
+ * </pre>
+ * Timings are in UTC since the cities table has no time zones. The sun's position is looked up in
+ * the default <em>SolarEphemeris</em>.
+ * </p>
+ */
+public final class TimetableGenerator {
+	public static final int MAGIC = 0x46545442;
+	public static final int VERSION = 1;
+	public static final int NO_TIME = Integer.MIN_VALUE;
+	
+	private static final int CITIES_PER_CHUNK = 64;
+	
+	private final TimingsMethod method;
+	private final boolean useShafaiMethod;
+	private final ForkJoinPool pool;
+	private final SolarEphemeris ephemeris = SolarEphemeris.getDefault();
+	
+	/**
+	 * Generator that runs on <em>AppExecutors.forkJoinPool</em>.
+	 * @param method Calculation method, or null to use the default method of each city's country.
+	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
+	 */
+	public TimetableGenerator(TimingsMethod method, boolean useShafaiMethod) {
+		this(method, useShafaiMethod, AppExecutors.forkJoinPool);
+	}
+	
+	/**
+	 * @param method Calculation method, or null to use the default method of each city's country.
+	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
+	 * @param pool Pool to compute the chunks on.
+	 */
+	public TimetableGenerator(TimingsMethod method, boolean useShafaiMethod, ForkJoinPool pool) {
+		this.method = method;
+		this.useShafaiMethod = useShafaiMethod;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Generates the timetables of all cities, or all cities of selected country.
+	 * @param database Cities database.
+	 * @param country Country, or null for all countries.
+	 * @param startDate First date.
+	 * @param days Number of days.
+	 * @param out Output stream. It is not closed.
+	 * @throws IOException if writing to the output fails.
+	 */
+	public void generate(CitiesDatabase database, String country, LocalDate startDate, int days, OutputStream out)
+			throws IOException {
+		
+		generate(database.getCityTable(country), startDate, days, out);
+	}
+	
+	/**
+	 * Generates the timetables of the cities in <em>cities</em>.
+	 * @param cities Cities.
+	 * @param startDate First date.
+	 * @param days Number of days.
+	 * @param out Output stream. It is not closed.
+	 * @throws IOException if writing to the output fails.
+	 */
+	public void generate(CitiesDatabase.CityTable cities, LocalDate startDate, int days, OutputStream out)
+			throws IOException {
+		
+		final boolean[] ramadanDays = getRamadanDays(startDate, days);
+		final double startDaysSinceEpoch = AstronomyMath.daysSinceEpoch(
+				startDate.getYear(), startDate.getMonthValue(), startDate.getDayOfMonth(), 0, 0, 0);
+		
+		DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+		
+		dout.writeInt(MAGIC);
+		dout.writeInt(VERSION);
+		dout.writeLong(startDate.toEpochDay());
+		dout.writeInt(days);
+		dout.writeInt(cities.size());
+		
+		final int maxPendingChunks = pool.getParallelism() * 4;
+		final ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>(maxPendingChunks);
+		
+		try {
+			for (int start = 0; start < cities.size(); start += CITIES_PER_CHUNK) {
+				final int chunkStart = start;
+				final int chunkEnd = Math.min(start + CITIES_PER_CHUNK, cities.size());
+				
+				if (pending.size() == maxPendingChunks) {
+					dout.write(pending.removeFirst().join());
+				}
+				
+				pending.addLast(pool.submit(() ->
+						computeChunk(cities, chunkStart, chunkEnd, startDaysSinceEpoch, days, ramadanDays)));
+			}
+			
+			while (!pending.isEmpty()) {
+				dout.write(pending.removeFirst().join());
+			}
+		}
+		finally {
+			for (ForkJoinTask<byte[]> task : pending) {
+				task.cancel(false);
+			}
+		}
+		
+		dout.flush();
+	}
+	
+	/**
+	 * Computes and serializes the timetables of cities in the range [start, end).
+	 * @return serialized timetables.
+	 */
+	private byte[] computeChunk(CitiesDatabase.CityTable cities, int start, int end, double startDaysSinceEpoch,
+			int days, boolean[] ramadanDays) throws IOException {
+		
+		final double[] timings = new double[TIMINGS_COUNT * days];
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				(end - start) * (TIMINGS_COUNT * days * 4 + 128));
+		final DataOutputStream dout = new DataOutputStream(bytes);
+		
+		for (int i = start; i < end; i++) {
+			final double longitude = cities.longitude[i];
+			final double latitude = cities.latitude[i];
+			final TimingsMethod cityMethod =
+					method != null ? method : TimingsMethod.getDefaultForCountry(cities.country[i]);
+			
+			// Evaluate at approximate local solar noon of each day.
+			final double daysSinceEpoch = startDaysSinceEpoch + (12 - longitude / 15) / 24;
+			
+			PrayerTimings.getTimings(cityMethod, daysSinceEpoch, days, 0, longitude, latitude,
+					false, useShafaiMethod, ephemeris, timings);
+			
+			if (cityMethod.usesFixedOffsetForIsha()) {
+				final double ramadanOffsetHours =
+						(cityMethod.getIshaFixedOffset(true) - cityMethod.getIshaFixedOffset(false)) / 60;
+				
+				for (int day = 0; day < days; day++) {
+					if (ramadanDays[day]) {
+						timings[ISHA * days + day] += ramadanOffsetHours;
+					}
+				}
+			}
+			
+			dout.writeUTF(cities.country[i]);
+			dout.writeUTF(cities.admin[i]);
+			dout.writeUTF(cities.city[i]);
+			dout.writeDouble(longitude);
+			dout.writeDouble(latitude);
+			
+			for (int day = 0; day < days; day++) {
+				for (int event = 0; event < TIMINGS_COUNT; event++) {
+					dout.writeInt(toSeconds(timings[event * days + day]));
+				}
+			}
+		}
+		
+		dout.flush();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * @return for each day in the range, whether it is in Ramadan.
+	 */
+	private static boolean[] getRamadanDays(LocalDate startDate, int days) {
+		boolean[] ramadanDays = new boolean[days];
+		final long startDay = startDate.toEpochDay();
+		
+		for (int day = 0; day < days; day++) {
+			ramadanDays[day] = HijriCalendar.isRamadan(startDay + day);
+		}
+		
+		return ramadanDays;
+	}
+	
+	/**
+	 * @param hours timing in hours.
+	 * @return timing in whole seconds, or NO_TIME if timing is NaN.
+	 */
+	private static int toSeconds(double hours) {
+		return Double.isNaN(hours) ? NO_TIME : (int) Math.round(hours * 3600);
+	}
+}
@@ -0,0 +1,356 @@
+package com.basilalasadi.fasters.logic;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.basilalasadi.fasters.R;
+import com.basilalasadi.fasters.executors.AppExecutors;
+import com.basilalasadi.fasters.logic.settings.SettingsChangeListener;
+import com.basilalasadi.fasters.logic.settings.SettingsDelta;
+import com.basilalasadi.fasters.logic.settings.SettingsManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * <p>
+ * Singleton cache of computed day timings, so that repeated loads of the same day are lookups.
+ * The most recently used entries are kept in memory and mirrored to a small file in the cache
+ * dir, so they survive process death. The file is written on the io executor, once for changes
+ * made together.
+ * </p><p>
+ * Entries are keyed by everything the timings depend on, so they never go stale; the cache is
+ * still cleared when a location or calculation setting changes, since the old entries won't be
+ * used again.
+ * </p>
+ */
+public final class TimingsCache implements SettingsChangeListener {
+	public static final String TAG = "TimingsCache";
+	
+	/**
+	 * Number of values of an entry: fajr, duhr, asr, magrib and isha of the day, fajr of the next
+	 * day and magrib of the previous day, in hours since 00:00 UTC of their own date.
+	 */
+	public static final int VALUES = 7;
+	
+	public static final int MAX_ENTRIES = 32;
+	
+	private static final String FILE_NAME = "timings.cache";
+	private static final int MAGIC = 0x46544d43;
+	private static final int VERSION = 2;
+	
+	private static TimingsCache instance;
+	
+	private final File file;
+	private final Set<String> calculationKeys = new HashSet<>();
+	private final LinkedHashMap<Key, double[]> entries = new LinkedHashMap<Key, double[]>(MAX_ENTRIES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	private boolean loaded = false;
+	private boolean savePosted = false;
+	
+	/**
+	 * Held while the file is written, so saves run one at a time, each with the latest entries.
+	 */
+	private final Object saveLock = new Object();
+	
+	/**
+	 * Returns singleton instance of TimingsCache, or constructs it if not already constructed.
+	 * @param context The current context.
+	 * @return TimingsCache instance.
+	 */
+	public static synchronized TimingsCache getInstance(Context context) {
+		if (instance == null) {
+			instance = new TimingsCache(context);
+			SettingsManager.getInstance(context).addSettingsChangeListener(instance);
+		}
+		return instance;
+	}
+	
+	private TimingsCache(Context context) {
+		this.file = new File(context.getCacheDir(), FILE_NAME);
+		
+		final int[] keys = {
+				R.string.settings_key_longitude,
+				R.string.settings_key_latitude,
+				R.string.settings_key_calculation_method,
+				R.string.settings_key_fajr_sun_angle,
+				R.string.settings_key_shafai_method,
+				R.string.settings_key_isha_calculation_method,
+				R.string.settings_key_isha_sun_angle,
+				R.string.settings_key_isha_time_offset,
+				R.string.settings_key_use_ramadan_offset,
+				R.string.settings_key_ramadan_isha_time_offset,
+				R.string.settings_key_hijri_day_offset,
+		};
+		
+		for (int key : keys) {
+			calculationKeys.add(context.getString(key));
+		}
+	}
+	
+	/**
+	 * @return the keys of the settings the timings are computed from.
+	 */
+	public Set<String> getCalculationKeys() {
+		return Collections.unmodifiableSet(calculationKeys);
+	}
+	
+	/**
+	 * Looks up the timings of a day.
+	 * @param key Key of the day.
+	 * @return a copy of the cached values (see <em>VALUES</em>), or null if not cached.
+	 */
+	public synchronized double[] get(Key key) {
+		ensureLoaded();
+		
+		double[] values = entries.get(key);
+		return values == null ? null : values.clone();
+	}
+	
+	/**
+	 * Caches the timings of a day. The cache file is written later, on the io executor.
+	 * @param key Key of the day.
+	 * @param values Values to cache (see <em>VALUES</em>).
+	 */
+	public synchronized void put(Key key, double[] values) {
+		if (values.length != VALUES) {
+			throw new IllegalArgumentException("Expected " + VALUES + " values.");
+		}
+		
+		ensureLoaded();
+		
+		entries.put(key, values.clone());
+		postSave();
+	}
+	
+	/**
+	 * Removes all entries from memory, and later from disk.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		loaded = true;
+		postSave();
+	}
+	
+	/**
+	 * Posts a save, unless one is posted already and has not started yet.
+	 */
+	private void postSave() {
+		if (!savePosted) {
+			savePosted = true;
+			AppExecutors.ioExecutor.execute(this::save);
+		}
+	}
+	
+	@Override
+	public void onSettingsChange(SettingsDelta delta) {
+		if (delta.containsAny(calculationKeys)) {
+			Log.d(TAG, "calculation settings changed (" + delta + "), clearing cache.");
+			clear();
+		}
+	}
+	
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		
+		loaded = true;
+		
+		if (!file.isFile()) {
+			return;
+		}
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return;
+			}
+			
+			final int count = in.readInt();
+			
+			for (int i = 0; i < count; i++) {
+				final Key key = Key.read(in);
+				final double[] values = new double[VALUES];
+				
+				for (int j = 0; j < VALUES; j++) {
+					values[j] = in.readDouble();
+				}
+				
+				entries.put(key, values);
+			}
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Could not read cache file.", e);
+			entries.clear();
+		}
+	}
+	
+	/**
+	 * Writes all entries, least recently used first, to a temporary file, and renames it over the
+	 * cache file, or deletes the cache file if there are no entries. The entries are copied under
+	 * the cache lock and written outside it, so lookups don't wait for the file.
+	 */
+	private void save() {
+		synchronized (saveLock) {
+			final Key[] keys;
+			final double[][] values;
+			
+			synchronized (this) {
+				savePosted = false;
+				keys = entries.keySet().toArray(new Key[0]);
+				values = entries.values().toArray(new double[0][]);
+			}
+			
+			if (keys.length == 0) {
+				if (file.exists() && !file.delete()) {
+					Log.w(TAG, "Could not delete cache file.");
+				}
+				return;
+			}
+			
+			final File temp = new File(file.getPath() + ".tmp");
+			
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(keys.length);
+				
+				for (int i = 0; i < keys.length; i++) {
+					keys[i].write(out);
+					
+					for (double value : values[i]) {
+						out.writeDouble(value);
+					}
+				}
+			}
+			catch (IOException e) {
+				Log.w(TAG, "Could not write cache file.", e);
+				temp.delete();
+				return;
+			}
+			
+			if (!temp.renameTo(file)) {
+				Log.w(TAG, "Could not replace cache file.");
+				temp.delete();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Everything the timings of a day depend on.
+	 */
+	public static final class Key {
+		/**
+		 * Coordinates are rounded to this many units per degree (about 11 m), which changes the
+		 * timings by well under a second.
+		 */
+		private static final double COORDINATE_SCALE = 1e4;
+		
+		private final long longitude;
+		private final long latitude;
+		private final double fajrAngle;
+		private final double ishaAngle;
+		private final int ishaOffset;
+		private final boolean useShafaiMethod;
+		private final boolean isRamadan;
+		private final long epochDay;
+		
+		/**
+		 * @param longitude Location longitude.
+		 * @param latitude Location latitude.
+		 * @param fajrAngle Fajr sun angle in degrees.
+		 * @param ishaAngle Isha sun angle in degrees, or NaN if a fixed offset is used.
+		 * @param ishaOffset Isha offset from magrib in minutes, if a fixed offset is used.
+		 * @param useShafaiMethod Whether the shafai method is used for asr.
+		 * @param isRamadan Whether the day is in Ramadan.
+		 * @param epochDay Local date, as days since 1970-01-01.
+		 */
+		public Key(double longitude, double latitude, double fajrAngle, double ishaAngle, int ishaOffset,
+				boolean useShafaiMethod, boolean isRamadan, long epochDay) {
+			
+			this(Math.round(longitude * COORDINATE_SCALE), Math.round(latitude * COORDINATE_SCALE), fajrAngle,
+					ishaAngle, Double.isNaN(ishaAngle) ? ishaOffset : 0,
+					useShafaiMethod, isRamadan, epochDay);
+		}
+		
+		private Key(long longitude, long latitude, double fajrAngle, double ishaAngle, int ishaOffset,
+				boolean useShafaiMethod, boolean isRamadan, long epochDay) {
+			
+			this.longitude = longitude;
+			this.latitude = latitude;
+			this.fajrAngle = fajrAngle;
+			this.ishaAngle = ishaAngle;
+			this.ishaOffset = ishaOffset;
+			this.useShafaiMethod = useShafaiMethod;
+			this.isRamadan = isRamadan;
+			this.epochDay = epochDay;
+		}
+		
+		static Key read(DataInputStream in) throws IOException {
+			return new Key(in.readLong(), in.readLong(), in.readDouble(), in.readDouble(), in.readInt(),
+					in.readBoolean(), in.readBoolean(), in.readLong());
+		}
+		
+		void write(DataOutputStream out) throws IOException {
+			out.writeLong(longitude);
+			out.writeLong(latitude);
+			out.writeDouble(fajrAngle);
+			out.writeDouble(ishaAngle);
+			out.writeInt(ishaOffset);
+			out.writeBoolean(useShafaiMethod);
+			out.writeBoolean(isRamadan);
+			out.writeLong(epochDay);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			
+			Key key = (Key) o;
+			
+			return longitude == key.longitude &&
+					latitude == key.latitude &&
+					Double.compare(fajrAngle, key.fajrAngle) == 0 &&
+					Double.compare(ishaAngle, key.ishaAngle) == 0 &&
+					ishaOffset == key.ishaOffset &&
+					useShafaiMethod == key.useShafaiMethod &&
+					isRamadan == key.isRamadan &&
+					epochDay == key.epochDay;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = Long.hashCode(longitude);
+			result = 31 * result + Long.hashCode(latitude);
+			result = 31 * result + Double.hashCode(fajrAngle);
+			result = 31 * result + Double.hashCode(ishaAngle);
+			result = 31 * result + ishaOffset;
+			result = 31 * result + (useShafaiMethod ? 1 : 0);
+			result = 31 * result + (isRamadan ? 1 : 0);
+			result = 31 * result + Long.hashCode(epochDay);
+			return result;
+		}
+	}
+}
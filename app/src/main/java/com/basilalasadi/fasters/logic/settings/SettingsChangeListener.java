@@ -1,8 +1,10 @@
 package com.basilalasadi.fasters.logic.settings;
 
-import android.content.SharedPreferences;
-
 
 public interface SettingsChangeListener {
-	void onSettingsChnage(SharedPreferences prefs, String key);
+	/**
+	 * Called on the main thread, once for settings changed together.
+	 * @param delta The changed settings.
+	 */
+	void onSettingsChange(SettingsDelta delta);
 }
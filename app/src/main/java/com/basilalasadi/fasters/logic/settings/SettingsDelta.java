@@ -0,0 +1,80 @@
+package com.basilalasadi.fasters.logic.settings;
+
+import android.content.SharedPreferences;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+
+/**
+ * Settings changed together, e.g. by one edit or by edits applied in the same turn of the main
+ * looper. <em>SettingsManager</em> delivers one delta for all of them, so a listener that reloads on
+ * a change reloads once.
+ */
+public final class SettingsDelta {
+	/**
+	 * Shared preferences the settings were changed in.
+	 */
+	public final SharedPreferences prefs;
+	
+	/**
+	 * Settings after the changes.
+	 */
+	public final SettingsSnapshot snapshot;
+	
+	private final Set<String> keys;
+	private final boolean cleared;
+	
+	SettingsDelta(SharedPreferences prefs, SettingsSnapshot snapshot, Set<String> keys, boolean cleared) {
+		this.prefs = prefs;
+		this.snapshot = snapshot;
+		this.keys = Collections.unmodifiableSet(keys);
+		this.cleared = cleared;
+	}
+	
+	/**
+	 * @return keys of the changed settings, each once however many times it changed.
+	 */
+	public Set<String> getKeys() {
+		return keys;
+	}
+	
+	/**
+	 * @return true if all preferences were cleared, in which case any setting may have changed.
+	 */
+	public boolean isCleared() {
+		return cleared;
+	}
+	
+	/**
+	 * @param key Setting key.
+	 * @return true if the setting may have changed.
+	 */
+	public boolean contains(String key) {
+		return cleared || keys.contains(key);
+	}
+	
+	/**
+	 * @param keys Setting keys.
+	 * @return true if any of the settings may have changed.
+	 */
+	public boolean containsAny(Collection<String> keys) {
+		if (cleared) {
+			return true;
+		}
+		
+		for (String key : keys) {
+			if (this.keys.contains(key)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public String toString() {
+		return "SettingsDelta(" + (cleared ? "cleared, " : "") + keys + ")";
+	}
+}
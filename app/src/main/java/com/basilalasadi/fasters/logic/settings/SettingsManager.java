@@ -8,14 +8,15 @@ import androidx.preference.PreferenceManager;
 
 import com.basilalasadi.fasters.R;
 import com.basilalasadi.fasters.database.CitiesDatabase;
-import com.basilalasadi.fasters.util.WeakSet;
+import com.basilalasadi.fasters.executors.AppExecutors;
+import com.basilalasadi.fasters.util.WeakListenerRegistry;
 import com.basilalasadi.fasters.view.AppTheme;
 
 import static com.basilalasadi.fasters.logic.ReminderConstants.*;
 
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
-import java.util.Set;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -27,10 +28,27 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	public static final String CITY_ADMIN_SEPARATOR  = ", ";
 	
 	private static SettingsManager instance;
-	private final Set<SettingsChangeListener> listeners = new WeakSet<>();
-	private final Set<LocationSetListener> locationSetListeners = new WeakSet<>();
-	private final HashMap<String, WeakSet<ValueListeners.ValueListener>> valueListeners = new HashMap<>();
+	private final WeakListenerRegistry<SettingsChangeListener> listeners = new WeakListenerRegistry<>();
+	private final WeakListenerRegistry<LocationSetListener> locationSetListeners = new WeakListenerRegistry<>();
+	private final ConcurrentHashMap<String, WeakListenerRegistry<ValueListeners.ValueListener>> valueListeners = new ConcurrentHashMap<>();
 	private WeakReference<SharedPreferences> lastPreference = new WeakReference<>(null);
+	private final Context appContext;
+	
+	/**
+	 * Current settings, rebuilt when a setting changes, or null until first read. It is only
+	 * rebuilt under the lock of <em>pendingKeys</em>, reading the preferences inside it, so a
+	 * snapshot of older values never replaces one of newer values.
+	 */
+	private volatile SettingsSnapshot snapshot = null;
+	
+	/**
+	 * Keys changed since the last dispatch, guarded by itself. Its lock also guards rebuilding
+	 * <em>snapshot</em>.
+	 */
+	private final HashSet<String> pendingKeys = new HashSet<>();
+	private SharedPreferences pendingPrefs = null;
+	private boolean pendingCleared = false;
+	private boolean dispatchPosted = false;
 	
 	
 	public static SettingsManager getInstance(Context context) {
@@ -42,6 +60,7 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	}
 	
 	private SettingsManager(Context context) {
+		this.appContext = context.getApplicationContext();
 		getPrefs(context);
 	}
 	
@@ -54,26 +73,71 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 		}
 	}
 	
+	/**
+	 * Records a changed key. Changes are dispatched together in the next turn of the main looper,
+	 * so an edit of several keys, or several edits applied at once, notify each listener once.
+	 */
 	@Override
 	public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
 		Log.d("SettingsManager", "preference change for key " + key);
 		
-		for (SettingsChangeListener listener : listeners) {
-			if (listener != null) {
-				Log.d("SettingsManager", "notifying listener: " + listener.getClass().getSimpleName());
-				listener.onSettingsChnage(prefs, key);
+		synchronized (pendingKeys) {
+			pendingPrefs = prefs;
+			
+			// The key is null when all preferences are cleared.
+			if (key == null) {
+				pendingCleared = true;
 			}
 			else {
-				Log.d("SettingsManager", "null listener found.");
+				pendingKeys.add(key);
+			}
+			
+			if (dispatchPosted) {
+				return;
 			}
+			
+			dispatchPosted = true;
 		}
 		
-		WeakSet<ValueListeners.ValueListener> set = this.valueListeners.get(key);
+		AppExecutors.mainExecutor.execute(this::dispatchPendingChanges);
+	}
+	
+	/**
+	 * Rebuilds the snapshot and notifies the listeners of the changes recorded since the last
+	 * dispatch.
+	 */
+	private void dispatchPendingChanges() {
+		final SettingsDelta delta;
 		
-		if (set != null) {
-			for (ValueListeners.ValueListener listener : set) {
-				if (listener != null) {
-					listener.onChange(prefs, key);
+		synchronized (pendingKeys) {
+			dispatchPosted = false;
+			
+			if (pendingPrefs == null) {
+				return;
+			}
+			
+			// Rebuilt before the listeners are notified, so they read the new values.
+			snapshot = SettingsSnapshot.read(appContext, pendingPrefs);
+			delta = new SettingsDelta(pendingPrefs, snapshot, new HashSet<>(pendingKeys), pendingCleared);
+			
+			pendingKeys.clear();
+			pendingPrefs = null;
+			pendingCleared = false;
+		}
+		
+		Log.d("SettingsManager", "dispatching " + delta);
+		
+		for (SettingsChangeListener listener : listeners) {
+			Log.d("SettingsManager", "notifying listener: " + listener.getClass().getSimpleName());
+			listener.onSettingsChange(delta);
+		}
+		
+		for (String key : delta.isCleared() ? valueListeners.keySet() : delta.getKeys()) {
+			WeakListenerRegistry<ValueListeners.ValueListener> registry = valueListeners.get(key);
+			
+			if (registry != null) {
+				for (ValueListeners.ValueListener listener : registry) {
+					listener.onChange(delta.prefs, key);
 				}
 			}
 		}
@@ -119,14 +183,18 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	 * @param listener implementation of one of the interfaces provided in <em>ValueListeners</em>.
 	 */
 	public void addSettingsValueListener(String key, ValueListeners.ValueListener listener) {
-		WeakSet<ValueListeners.ValueListener> set = valueListeners.get(key);
+		WeakListenerRegistry<ValueListeners.ValueListener> registry = valueListeners.get(key);
 		
-		if (set == null) {
-			set = new WeakSet<>();
-			valueListeners.put(key, set);
+		if (registry == null) {
+			WeakListenerRegistry<ValueListeners.ValueListener> newRegistry = new WeakListenerRegistry<>();
+			registry = valueListeners.putIfAbsent(key, newRegistry);
+			
+			if (registry == null) {
+				registry = newRegistry;
+			}
 		}
 		
-		set.add(listener);
+		registry.add(listener);
 	}
 	
 	/**
@@ -135,10 +203,10 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	 * @param listener the listener to remove
 	 */
 	public void removeSettingsValueListener(String key, ValueListeners.ValueListener listener) {
-		WeakSet<ValueListeners.ValueListener> set = valueListeners.get(key);
+		WeakListenerRegistry<ValueListeners.ValueListener> registry = valueListeners.get(key);
 		
-		if (set != null) {
-			set.remove(listener);
+		if (registry != null) {
+			registry.remove(listener);
 		}
 	}
 	
@@ -147,10 +215,8 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	 */
 	private void notifyLocationSetListeners() {
 		for (LocationSetListener listener : locationSetListeners) {
-			if (listener != null) {
-				Log.d("SettingsManager", "notifying location set listener: " + listener.getClass().getSimpleName());
-				listener.onLocationSet();
-			}
+			Log.d("SettingsManager", "notifying location set listener: " + listener.getClass().getSimpleName());
+			listener.onLocationSet();
 		}
 	}
 	
@@ -177,7 +243,8 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 		editor.putString(context.getString(R.string.settings_key_fajr_sun_angle), "15")
 		      .putString(context.getString(R.string.settings_key_isha_sun_angle), "19")
 		      .putString(context.getString(R.string.settings_key_isha_time_offset), "90")
-		      .putString(context.getString(R.string.settings_key_ramadan_isha_time_offset), "120");
+		      .putString(context.getString(R.string.settings_key_ramadan_isha_time_offset), "120")
+		      .putString(context.getString(R.string.settings_key_hijri_day_offset), "0");
 		
 		editor.putBoolean(context.getString(R.string.settings_key_shafai_method), false)
 		      .putBoolean(context.getString(R.string.settings_key_use_ramadan_offset), false)
@@ -190,6 +257,7 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 		editor.putBoolean(context.getString(R.string.settings_key_initialized), true);
 		
 		editor.apply();
+		refreshSnapshot(prefs);
 	}
 	
 	/**
@@ -207,69 +275,77 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	}
 	
 	/**
-	 * Gets theme setting.
-	 * @param context current context.
-	 * @return AppTheme corresponding to setting, or null if set to automatic.
+	 * Gets the current settings. It is a field read, except for the first call.
+	 * @param context The current context.
+	 * @return the snapshot of the settings.
 	 */
-	public synchronized AppTheme getTheme(Context context) {
-		SharedPreferences prefs = getPrefs(context);
+	public SettingsSnapshot getSnapshot(Context context) {
+		SettingsSnapshot current = snapshot;
 		
-		String setting = prefs.getString(context.getString(R.string.settings_key_theme), null);
-		
-		if (setting.equals(context.getString(R.string.theme_value_dawn))) {
-			return AppTheme.Morning;
-		}
-		else if (setting.equals(context.getString(R.string.theme_value_dusk))) {
-			return AppTheme.Evening;
+		if (current == null) {
+			final SharedPreferences prefs = getPrefs(context);
+			
+			synchronized (pendingKeys) {
+				if (snapshot == null) {
+					snapshot = SettingsSnapshot.read(appContext, prefs);
+				}
+				current = snapshot;
+			}
 		}
-		else {
-			return null;
+		
+		return current;
+	}
+	
+	/**
+	 * Rebuilds the snapshot after an edit made here, since the change listener is called later
+	 * when the edit is made off the main thread.
+	 */
+	private void refreshSnapshot(SharedPreferences prefs) {
+		synchronized (pendingKeys) {
+			snapshot = SettingsSnapshot.read(appContext, prefs);
 		}
 	}
 	
+	/**
+	 * Gets theme setting.
+	 * @param context current context.
+	 * @return AppTheme corresponding to setting, or null if set to automatic.
+	 */
+	public AppTheme getTheme(Context context) {
+		return getSnapshot(context).theme;
+	}
+	
+	/**
+	 * Gets the day offset of the Hijri date, to follow a local moon sighting.
+	 * @param context The current context.
+	 * @return days to add to the Hijri date, from -HijriCalendar.MAX_DAY_OFFSET to
+	 * HijriCalendar.MAX_DAY_OFFSET.
+	 */
+	public int getHijriDayOffset(Context context) {
+		return getSnapshot(context).hijriDayOffset;
+	}
+	
 	/**
 	 * Gets location set in the settings.
 	 * @param context The current context.
 	 * @return address of the city.
 	 */
-	public synchronized Address getAddress(Context context) {
-		SharedPreferences prefs = getPrefs(context);
-		
-		String country = prefs.getString(context.getString(R.string.settings_key_country), null);
-		String cityAdmin = prefs.getString(context.getString(R.string.settings_key_city), null);
-		
-		if (country == null || cityAdmin == null) {
-			return null;
-		}
-		
-		String[] cityAdminPair = cityAdmin.split(CITY_ADMIN_SEPARATOR);
-		
-		if (cityAdminPair.length != 2) {
-			return null;
-		}
-		
-		String city = cityAdminPair[0];
-		String admin = cityAdminPair[1];
-		
-		return new Address(country, admin, city);
+	public Address getAddress(Context context) {
+		return getSnapshot(context).address;
 	}
 	
 	
 	/**
-	 * Sets the address of the city.
+	 * Puts the address of the city in an edit.
 	 * @param context The current context.
+	 * @param editor The edit.
 	 * @param address The address of the city.
 	 */
-	private synchronized void setAddress(Context context, Address address) {
-		SharedPreferences prefs = getPrefs(context);
-		SharedPreferences.Editor editor = prefs.edit();
-		
+	private void putAddress(Context context, SharedPreferences.Editor editor, Address address) {
 		String cityAdmin = address.city + CITY_ADMIN_SEPARATOR + address.admin;
 		
 		editor.putString(context.getString(R.string.settings_key_country), address.country);
 		editor.putString(context.getString(R.string.settings_key_city), cityAdmin);
-		
-		editor.apply();
 	}
 	
 	/**
@@ -277,32 +353,36 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	 * @param context The current context.
 	 * @return the coordinates.
 	 */
-	public synchronized Coordinates getCoordinates(Context context) {
-		SharedPreferences prefs = getPrefs(context);
-		
-		long longitudeBits = prefs.getLong(context.getString(R.string.settings_key_longitude), -1);
-		long latitudeBits = prefs.getLong(context.getString(R.string.settings_key_latitude), -1);
-		
-		if (longitudeBits == -1 || latitudeBits == -1) {
-			return null;
-		}
-		
-		return new Coordinates(doubleFromLong(longitudeBits), doubleFromLong(latitudeBits));
+	public Coordinates getCoordinates(Context context) {
+		return getSnapshot(context).coordinates;
 	}
 	
 	/**
-	 * Sets location coordinates.
+	 * Puts location coordinates in an edit.
 	 * @param context The current context.
+	 * @param editor The edit.
 	 * @param coordinates Location coordinates.
 	 */
-	private synchronized void setCoordinates(Context context, Coordinates coordinates) {
+	private void putCoordinates(Context context, SharedPreferences.Editor editor, Coordinates coordinates) {
+		editor.putLong(context.getString(R.string.settings_key_longitude), doubleToLong(coordinates.longitude));
+		editor.putLong(context.getString(R.string.settings_key_latitude), doubleToLong(coordinates.latitude));
+	}
+	
+	/**
+	 * Sets the address and coordinates in one edit, so listeners get one change.
+	 * @param context The current context.
+	 * @param address The address of the city.
+	 * @param coordinates Location coordinates.
+	 */
+	private void writeLocation(Context context, Address address, Coordinates coordinates) {
 		SharedPreferences prefs = getPrefs(context);
 		SharedPreferences.Editor editor = prefs.edit();
 		
-		editor.putLong(context.getString(R.string.settings_key_longitude), doubleToLong(coordinates.longitude));
-		editor.putLong(context.getString(R.string.settings_key_latitude), doubleToLong(coordinates.latitude));
+		putAddress(context, editor, address);
+		putCoordinates(context, editor, coordinates);
 		
 		editor.apply();
+		refreshSnapshot(prefs);
 	}
 	
 	/**
@@ -322,8 +402,7 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 			return false;
 		}
 		
-		setAddress(context, address);
-		setCoordinates(context, new Coordinates(location));
+		writeLocation(context, address, new Coordinates(location));
 		
 		notifyLocationSetListeners();
 		
@@ -345,8 +424,7 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 			return false;
 		}
 		
-		setAddress(context, new Address(addr.country, addr.admin, addr.city));
-		setCoordinates(context, coordinates);
+		writeLocation(context, new Address(addr.country, addr.admin, addr.city), coordinates);
 		
 		notifyLocationSetListeners();
 		
@@ -354,12 +432,16 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	}
 	
 	public synchronized void clearLocation(Context context) {
-		getPrefs(context).edit()
+		SharedPreferences prefs = getPrefs(context);
+		
+		prefs.edit()
 				.remove(context.getString(R.string.settings_key_country))
 				.remove(context.getString(R.string.settings_key_city))
 				.remove(context.getString(R.string.settings_key_longitude))
 				.remove(context.getString(R.string.settings_key_latitude))
 				.apply();
+		
+		refreshSnapshot(prefs);
 	}
 	
 	/**
@@ -367,56 +449,8 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 	 * @param context The current context.
 	 * @return the custom method.
 	 */
-	public synchronized CustomMethod getCustomMethod(Context context) {
-		SharedPreferences prefs = getPrefs(context);
-		
-		if (prefs.getString(context.getString(R.string.settings_key_calculation_method), "automatic").equals("automatic")) {
-			return new CustomMethod();
-		}
-		
-		String fajrAngleString = prefs.getString(context.getString(R.string.settings_key_fajr_sun_angle), null);
-		
-		if (fajrAngleString == null) {
-			return null;
-		}
-		
-		double fajrAngle = Double.parseDouble(fajrAngleString);
-		boolean useShafaiMethod = prefs.getBoolean(context.getString(R.string.settings_key_shafai_method), false);
-		boolean useFixedOffset = prefs.getString(context.getString(R.string.settings_key_isha_calculation_method), "sun_angle").equals("fixed_offset");
-		
-		if (useFixedOffset) {
-			String timeOffsetString = prefs.getString(context.getString(R.string.settings_key_isha_time_offset), null);
-			
-			if (timeOffsetString == null) {
-				return null;
-			}
-			
-			int timeOffset = Integer.parseInt(timeOffsetString);
-			
-			if (prefs.getBoolean(context.getString(R.string.settings_key_use_ramadan_offset), false)) {
-				String ramadanTimeOffsetString = prefs.getString(context.getString(R.string.settings_key_ramadan_isha_time_offset), null);
-				
-				if (ramadanTimeOffsetString == null) {
-					return null;
-				}
-				
-				int ramadanTimeOffset = Integer.parseInt(ramadanTimeOffsetString);
-				return new CustomMethod(fajrAngle, timeOffset, ramadanTimeOffset, useShafaiMethod);
-			}
-			else {
-				return new CustomMethod(fajrAngle, timeOffset, useShafaiMethod);
-			}
-		}
-		else {
-			String ishaAngleString = prefs.getString(context.getString(R.string.settings_key_fajr_sun_angle), null);
-			
-			if (ishaAngleString == null) {
-				return null;
-			}
-			
-			double ishaAngle = Double.parseDouble(ishaAngleString);
-			return new CustomMethod(fajrAngle, ishaAngle, useShafaiMethod);
-		}
+	public CustomMethod getCustomMethod(Context context) {
+		return getSnapshot(context).customMethod;
 	}
 	
 	/**
@@ -451,15 +485,6 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 		}
 	}
 	
-	/**
-	 * Gets double value from bits.
-	 * @param bits double bits stored as long.
-	 * @return double value.
-	 */
-	private double doubleFromLong(long bits) {
-		return Double.longBitsToDouble(bits);
-	}
-	
 	/**
 	 * Gets bits of double value, stored as long.
 	 * @param val double value.
@@ -517,47 +542,26 @@ public final class SettingsManager implements SharedPreferences.OnSharedPreferen
 		}
 	}
 	
+	/**
+	 * Gets the reminders the user enabled.
+	 * @param context The current context.
+	 * @return flags with bit <em>1 &lt;&lt; reminderIndex</em> set for each enabled reminder, or 0 if
+	 * notifications are disabled.
+	 */
 	public int getEnabledReminders(Context context) {
-		SharedPreferences prefs = getPrefs(context);
-		
-		if (prefs.getBoolean(context.getString(R.string.settings_key_all_notifications), false)) {
-			return 0;
-		}
-		
-		int flags = 0;
-		
-		if (prefs.getBoolean(context.getString(R.string.settings_key_prefast_meal_reminder), false)) {
-			flags |= 1 << REMINDER_PREFAST_MEAL;
-		}
-		if (prefs.getBoolean(context.getString(R.string.settings_key_water_reminder), false)) {
-			flags |= 1 << REMINDER_WATER;
-		}
-		if (prefs.getBoolean(context.getString(R.string.settings_key_prepare_breakfast_reminder), false)) {
-			flags |= 1 << REMINDER_PREPARE_BREAKFAST;
-		}
-		if (prefs.getBoolean(context.getString(R.string.settings_key_breakfast_near_reminder), false)) {
-			flags |= 1 << REMINDER_BREAKFAST_CLOSE;
-		}
-		
-		return flags;
+		return getSnapshot(context).enabledReminders;
 	}
 	
 	public boolean areNotificationsEnabled(Context context) {
-		return getPrefs(context).getBoolean(context.getString(R.string.settings_key_all_notifications), true);
+		return getSnapshot(context).notificationsEnabled;
 	}
 	
 	public boolean isReminderEnabled(Context context, int reminderIndex) {
-		int keyId;
-		switch (reminderIndex) {
-			case REMINDER_PREFAST_MEAL: keyId = R.string.settings_key_prefast_meal_reminder; break;
-			case REMINDER_WATER: keyId = R.string.settings_key_water_reminder; break;
-			case REMINDER_PREPARE_BREAKFAST: keyId = R.string.settings_key_prepare_breakfast_reminder; break;
-			case REMINDER_BREAKFAST_CLOSE: keyId = R.string.settings_key_breakfast_near_reminder; break;
-			default:
-				throw new IllegalArgumentException("Invalid reminder index.");
+		if (reminderIndex < 0 || reminderIndex >= REMINDER_COUNT) {
+			throw new IllegalArgumentException("Invalid reminder index.");
 		}
 		
-		return getPrefs(context).getBoolean(context.getString(keyId), false);
+		return getSnapshot(context).isReminderEnabled(reminderIndex);
 	}
 	
 	/**
@@ -0,0 +1,222 @@
+package com.basilalasadi.fasters.logic.settings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.basilalasadi.fasters.R;
+import com.basilalasadi.fasters.math.HijriCalendar;
+import com.basilalasadi.fasters.view.AppTheme;
+
+import static com.basilalasadi.fasters.logic.ReminderConstants.*;
+
+
+/**
+ * Immutable, typed copy of the settings, parsed once. <em>SettingsManager</em> publishes a new one
+ * whenever a setting changes, so readers get a consistent set of values from a field read, without
+ * locking, key lookups or parsing.
+ */
+public final class SettingsSnapshot {
+	public static final String TAG = "SettingsSnapshot";
+	
+	/**
+	 * Address of the city, or null if the location is not set.
+	 */
+	public final SettingsManager.Address address;
+	
+	/**
+	 * Coordinates of the location, or null if the location is not set.
+	 */
+	public final SettingsManager.Coordinates coordinates;
+	
+	/**
+	 * Calculation method, or null if the custom method is incomplete or invalid.
+	 */
+	public final SettingsManager.CustomMethod customMethod;
+	
+	/**
+	 * Theme, or null if set to automatic.
+	 */
+	public final AppTheme theme;
+	
+	/**
+	 * Days to add to the Hijri date, from -HijriCalendar.MAX_DAY_OFFSET to
+	 * HijriCalendar.MAX_DAY_OFFSET.
+	 */
+	public final int hijriDayOffset;
+	
+	public final boolean notificationsEnabled;
+	
+	/**
+	 * Flags with bit <em>1 &lt;&lt; reminderIndex</em> set for each enabled reminder, or 0 if
+	 * notifications are disabled.
+	 */
+	public final int enabledReminders;
+	
+	private SettingsSnapshot(SettingsManager.Address address, SettingsManager.Coordinates coordinates,
+			SettingsManager.CustomMethod customMethod, AppTheme theme, int hijriDayOffset,
+			boolean notificationsEnabled, int enabledReminders) {
+		
+		this.address = address;
+		this.coordinates = coordinates;
+		this.customMethod = customMethod;
+		this.theme = theme;
+		this.hijriDayOffset = hijriDayOffset;
+		this.notificationsEnabled = notificationsEnabled;
+		this.enabledReminders = enabledReminders;
+	}
+	
+	/**
+	 * Reads and parses all settings.
+	 * @param context The current context.
+	 * @param prefs Shared preferences to read.
+	 * @return the snapshot.
+	 */
+	static SettingsSnapshot read(Context context, SharedPreferences prefs) {
+		boolean notificationsEnabled = prefs.getBoolean(context.getString(R.string.settings_key_all_notifications), true);
+		
+		return new SettingsSnapshot(readAddress(context, prefs), readCoordinates(context, prefs),
+				readCustomMethod(context, prefs), readTheme(context, prefs), readHijriDayOffset(context, prefs),
+				notificationsEnabled, notificationsEnabled ? readEnabledReminders(context, prefs) : 0);
+	}
+	
+	/**
+	 * @param reminderIndex One of reminder indexes in ReminderConstants class.
+	 * @return true if notifications and the reminder are enabled.
+	 */
+	public boolean isReminderEnabled(int reminderIndex) {
+		return reminderIndex >= 0 && reminderIndex < REMINDER_COUNT && (enabledReminders & 1 << reminderIndex) != 0;
+	}
+	
+	private static SettingsManager.Address readAddress(Context context, SharedPreferences prefs) {
+		String country = prefs.getString(context.getString(R.string.settings_key_country), null);
+		String cityAdmin = prefs.getString(context.getString(R.string.settings_key_city), null);
+		
+		if (country == null || cityAdmin == null) {
+			return null;
+		}
+		
+		String[] cityAdminPair = cityAdmin.split(SettingsManager.CITY_ADMIN_SEPARATOR);
+		
+		if (cityAdminPair.length != 2) {
+			return null;
+		}
+		
+		return new SettingsManager.Address(country, cityAdminPair[1], cityAdminPair[0]);
+	}
+	
+	private static SettingsManager.Coordinates readCoordinates(Context context, SharedPreferences prefs) {
+		long longitudeBits = prefs.getLong(context.getString(R.string.settings_key_longitude), -1);
+		long latitudeBits = prefs.getLong(context.getString(R.string.settings_key_latitude), -1);
+		
+		if (longitudeBits == -1 || latitudeBits == -1) {
+			return null;
+		}
+		
+		return new SettingsManager.Coordinates(Double.longBitsToDouble(longitudeBits), Double.longBitsToDouble(latitudeBits));
+	}
+	
+	private static SettingsManager.CustomMethod readCustomMethod(Context context, SharedPreferences prefs) {
+		String automatic = context.getString(R.string.calculation_method_value_automatic);
+		
+		if (prefs.getString(context.getString(R.string.settings_key_calculation_method), automatic).equals(automatic)) {
+			return new SettingsManager.CustomMethod();
+		}
+		
+		try {
+			String fajrAngleString = prefs.getString(context.getString(R.string.settings_key_fajr_sun_angle), null);
+			
+			if (fajrAngleString == null) {
+				return null;
+			}
+			
+			double fajrAngle = Double.parseDouble(fajrAngleString);
+			boolean useShafaiMethod = prefs.getBoolean(context.getString(R.string.settings_key_shafai_method), false);
+			boolean useFixedOffset = context.getString(R.string.isha_calculation_method_value_time_offset).equals(
+					prefs.getString(context.getString(R.string.settings_key_isha_calculation_method), null));
+			
+			if (useFixedOffset) {
+				String timeOffsetString = prefs.getString(context.getString(R.string.settings_key_isha_time_offset), null);
+				
+				if (timeOffsetString == null) {
+					return null;
+				}
+				
+				int timeOffset = Integer.parseInt(timeOffsetString);
+				
+				if (prefs.getBoolean(context.getString(R.string.settings_key_use_ramadan_offset), false)) {
+					String ramadanTimeOffsetString = prefs.getString(context.getString(R.string.settings_key_ramadan_isha_time_offset), null);
+					
+					if (ramadanTimeOffsetString == null) {
+						return null;
+					}
+					
+					int ramadanTimeOffset = Integer.parseInt(ramadanTimeOffsetString);
+					return new SettingsManager.CustomMethod(fajrAngle, timeOffset, ramadanTimeOffset, useShafaiMethod);
+				}
+				else {
+					return new SettingsManager.CustomMethod(fajrAngle, timeOffset, useShafaiMethod);
+				}
+			}
+			else {
+				String ishaAngleString = prefs.getString(context.getString(R.string.settings_key_isha_sun_angle), null);
+				
+				if (ishaAngleString == null) {
+					return null;
+				}
+				
+				double ishaAngle = Double.parseDouble(ishaAngleString);
+				return new SettingsManager.CustomMethod(fajrAngle, ishaAngle, useShafaiMethod);
+			}
+		}
+		catch (NumberFormatException e) {
+			Log.w(TAG, "Invalid custom method setting.", e);
+			return null;
+		}
+	}
+	
+	private static AppTheme readTheme(Context context, SharedPreferences prefs) {
+		String setting = prefs.getString(context.getString(R.string.settings_key_theme), null);
+		
+		if (context.getString(R.string.theme_value_dawn).equals(setting)) {
+			return AppTheme.Morning;
+		}
+		else if (context.getString(R.string.theme_value_dusk).equals(setting)) {
+			return AppTheme.Evening;
+		}
+		else {
+			return null;
+		}
+	}
+	
+	private static int readHijriDayOffset(Context context, SharedPreferences prefs) {
+		String setting = prefs.getString(context.getString(R.string.settings_key_hijri_day_offset), "0");
+		
+		try {
+			int offset = Integer.parseInt(setting);
+			return Math.max(-HijriCalendar.MAX_DAY_OFFSET, Math.min(HijriCalendar.MAX_DAY_OFFSET, offset));
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+	
+	private static int readEnabledReminders(Context context, SharedPreferences prefs) {
+		int flags = 0;
+		
+		if (prefs.getBoolean(context.getString(R.string.settings_key_prefast_meal_reminder), false)) {
+			flags |= 1 << REMINDER_PREFAST_MEAL;
+		}
+		if (prefs.getBoolean(context.getString(R.string.settings_key_water_reminder), false)) {
+			flags |= 1 << REMINDER_WATER;
+		}
+		if (prefs.getBoolean(context.getString(R.string.settings_key_prepare_breakfast_reminder), false)) {
+			flags |= 1 << REMINDER_PREPARE_BREAKFAST;
+		}
+		if (prefs.getBoolean(context.getString(R.string.settings_key_breakfast_near_reminder), false)) {
+			flags |= 1 << REMINDER_BREAKFAST_CLOSE;
+		}
+		
+		return flags;
+	}
+}
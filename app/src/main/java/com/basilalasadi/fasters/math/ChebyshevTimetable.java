@@ -0,0 +1,336 @@
+package com.basilalasadi.fasters.math;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static java.lang.Math.*;
+
+
+/**
+ * <p>
+ * Compact timetable of a city and method over a range of days (typically a year). The timing of
+ * each event is approximated by piecewise Chebyshev polynomials fitted to <em>PrayerTimings</em>,
+ * so any day's timings are evaluated in a few multiply-adds from a coefficient blob of a few
+ * hundred bytes, instead of a table of every day.
+ * </p><p>
+ * With a fixed isha offset, isha is not fitted but derived from magrib, so the Ramadan offset can
+ * be chosen per day. The largest error against <em>PrayerTimings</em> over all days is measured
+ * when fitting and stored with the coefficients; use <em>forErrorBound()</em> to get the smallest
+ * timetable within a bound. Where an event does not occur on some days (high latitudes), the
+ * affected pieces evaluate to NaN, and their error is infinite if the event occurs on other days
+ * of the piece.
+ * </p><p>
+ * Blob format (big endian):
+ * <pre>
+ *   int     magic ("FCHT")
+ *   int     version
+ *   double  first day, as days since epoch
+ *   int     number of days
+ *   int     number of pieces
+ *   int     number of coefficients per piece and event
+ *   double  isha offset from magrib in minutes, or NaN if isha is fitted
+ *   double  isha offset from magrib during ramadan in minutes, or NaN
+ *   double  maximum error in seconds
+ *   float[pieces][events][coefficients]  coefficients; events are fajr, duhr, asr, magrib and,
+ *                                        if fitted, isha
+ * </pre>
+ * </p>
+ * @see PrayerTimings
+ */
+public final class ChebyshevTimetable {
+	public static final int MAGIC = 0x46434854;
+	public static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 52;
+	
+	/**
+	 * <p>Candidate numbers of pieces per year and coefficients per piece, from smallest to largest blob.</p>
+	 */
+	private static final int[][] CANDIDATES = { { 4, 8 }, { 4, 12 }, { 6, 12 }, { 12, 10 }, { 12, 14 }, { 24, 12 } };
+	
+	private final double firstDay;
+	private final int days;
+	private final int pieces;
+	private final int coefficientsCount;
+	private final double ishaOffsetHours;
+	private final double ramadanIshaOffsetHours;
+	private final int events;
+	private final float[] coefficients;
+	private double maxErrorSeconds;
+	
+	private ChebyshevTimetable(double firstDay, int days, int pieces, int coefficientsCount, double ishaOffsetHours,
+			double ramadanIshaOffsetHours, float[] coefficients) {
+		
+		this.firstDay = firstDay;
+		this.days = days;
+		this.pieces = pieces;
+		this.coefficientsCount = coefficientsCount;
+		this.ishaOffsetHours = ishaOffsetHours;
+		this.ramadanIshaOffsetHours = ramadanIshaOffsetHours;
+		this.events = Double.isNaN(ishaOffsetHours) ? PrayerTimings.TIMINGS_COUNT : PrayerTimings.TIMINGS_COUNT - 1;
+		this.coefficients = coefficients != null ? coefficients : new float[pieces * events * coefficientsCount];
+	}
+	
+	/**
+	 * <p>Fits a timetable of <em>days</em> consecutive days, starting at <em>daysSinceEpoch</em>.</p>
+	 * @param method method enum.
+	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
+	 * @param daysSinceEpoch days (and fraction of day) since 2000-01-01 00:00 UTC of the first day.
+	 * @param days number of days.
+	 * @param timeZone time zone offset from UTC.
+	 * @param longitude longitude in degrees.
+	 * @param latitude latitude in degrees.
+	 * @param pieces number of pieces the days are split into.
+	 * @param coefficientsCount number of coefficients (polynomial degree + 1) per piece and event.
+	 * @return the timetable.
+	 */
+	public static ChebyshevTimetable fit(TimingsMethod method, boolean useShafaiMethod, double daysSinceEpoch,
+			int days, int timeZone, double longitude, double latitude, int pieces, int coefficientsCount) {
+		
+		if (days <= 0 || pieces <= 0 || pieces > days || coefficientsCount <= 0) {
+			throw new IllegalArgumentException("Invalid number of days, pieces or coefficients.");
+		}
+		
+		final double ishaOffsetHours;
+		final double ramadanIshaOffsetHours;
+		
+		if (method.usesFixedOffsetForIsha()) {
+			ishaOffsetHours = (int) method.getIshaFixedOffset(false) / 60d;
+			ramadanIshaOffsetHours = (int) method.getIshaFixedOffset(true) / 60d;
+		}
+		else {
+			ishaOffsetHours = Double.NaN;
+			ramadanIshaOffsetHours = Double.NaN;
+		}
+		
+		final ChebyshevTimetable timetable = new ChebyshevTimetable(daysSinceEpoch, days, pieces, coefficientsCount,
+				ishaOffsetHours, ramadanIshaOffsetHours, null);
+		
+		final int n = coefficientsCount;
+		final double pieceLength = (double) days / pieces;
+		final double[] samples = new double[PrayerTimings.TIMINGS_COUNT * n];
+		
+		for (int piece = 0; piece < pieces; piece++) {
+			// Sample at the Chebyshev nodes of the piece.
+			for (int k = 0; k < n; k++) {
+				final double x = cos(PI * (k + 0.5) / n);
+				final double t = daysSinceEpoch + (piece + (x + 1) / 2) * pieceLength;
+				final double[] timings = PrayerTimings.getTimings(method, t, timeZone, longitude, latitude, false,
+						useShafaiMethod);
+				
+				for (int event = 0; event < PrayerTimings.TIMINGS_COUNT; event++) {
+					samples[event * n + k] = timings[event];
+				}
+			}
+			
+			for (int event = 0; event < timetable.events; event++) {
+				final int offset = (piece * timetable.events + event) * n;
+				
+				for (int j = 0; j < n; j++) {
+					double sum = 0;
+					
+					for (int k = 0; k < n; k++) {
+						sum += samples[event * n + k] * cos(PI * j * (k + 0.5) / n);
+					}
+					
+					// The first coefficient is halved, so that evaluation is a plain sum.
+					timetable.coefficients[offset + j] = (float) (sum * (j == 0 ? 1d : 2d) / n);
+				}
+			}
+		}
+		
+		timetable.measureError(method, useShafaiMethod, timeZone, longitude, latitude);
+		
+		return timetable;
+	}
+	
+	/**
+	 * <p>Fits the smallest timetable whose error is within <em>maxErrorSeconds</em>.</p>
+	 * @param method method enum.
+	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
+	 * @param daysSinceEpoch days (and fraction of day) since 2000-01-01 00:00 UTC of the first day.
+	 * @param days number of days.
+	 * @param timeZone time zone offset from UTC.
+	 * @param longitude longitude in degrees.
+	 * @param latitude latitude in degrees.
+	 * @param maxErrorSeconds maximum error in seconds.
+	 * @return the timetable.
+	 * @throws IllegalArgumentException if no candidate satisfies the bound.
+	 */
+	public static ChebyshevTimetable forErrorBound(TimingsMethod method, boolean useShafaiMethod,
+			double daysSinceEpoch, int days, int timeZone, double longitude, double latitude, double maxErrorSeconds) {
+		
+		for (int[] candidate : CANDIDATES) {
+			// Candidates are given per year.
+			final int pieces = max(1, min(days, (int) ceil(candidate[0] * days / 366d)));
+			
+			ChebyshevTimetable timetable = fit(method, useShafaiMethod, daysSinceEpoch, days, timeZone, longitude,
+					latitude, pieces, candidate[1]);
+			
+			if (timetable.getMaxErrorSeconds() <= maxErrorSeconds) {
+				return timetable;
+			}
+		}
+		
+		throw new IllegalArgumentException("Error bound is too small.");
+	}
+	
+	/**
+	 * <p>Reads a timetable from its blob.</p>
+	 * @param bytes blob, as written by <em>toByteArray()</em>.
+	 * @return the timetable.
+	 * @throws IOException if the blob is not a valid timetable.
+	 */
+	public static ChebyshevTimetable fromByteArray(byte[] bytes) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+		
+		if (bytes.length < HEADER_SIZE || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a Chebyshev timetable.");
+		}
+		
+		final int version = buffer.getInt();
+		
+		if (version != VERSION) {
+			throw new IOException("Unsupported Chebyshev timetable version " + version + ".");
+		}
+		
+		final double firstDay = buffer.getDouble();
+		final int days = buffer.getInt();
+		final int pieces = buffer.getInt();
+		final int coefficientsCount = buffer.getInt();
+		final double ishaOffsetMinutes = buffer.getDouble();
+		final double ramadanIshaOffsetMinutes = buffer.getDouble();
+		final double maxErrorSeconds = buffer.getDouble();
+		
+		if (days <= 0 || pieces <= 0 || pieces > days || coefficientsCount <= 0) {
+			throw new IOException("Invalid Chebyshev timetable header.");
+		}
+		
+		final ChebyshevTimetable timetable = new ChebyshevTimetable(firstDay, days, pieces, coefficientsCount,
+				ishaOffsetMinutes / 60, ramadanIshaOffsetMinutes / 60, null);
+		
+		if (buffer.remaining() != timetable.coefficients.length * 4) {
+			throw new IOException("Chebyshev timetable is truncated.");
+		}
+		
+		buffer.asFloatBuffer().get(timetable.coefficients);
+		timetable.maxErrorSeconds = maxErrorSeconds;
+		
+		return timetable;
+	}
+	
+	/**
+	 * @return the blob of the timetable.
+	 */
+	public byte[] toByteArray() {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + coefficients.length * 4).order(ByteOrder.BIG_ENDIAN);
+		
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putDouble(firstDay);
+		buffer.putInt(days);
+		buffer.putInt(pieces);
+		buffer.putInt(coefficientsCount);
+		buffer.putDouble(ishaOffsetHours * 60);
+		buffer.putDouble(ramadanIshaOffsetHours * 60);
+		buffer.putDouble(maxErrorSeconds);
+		buffer.asFloatBuffer().put(coefficients);
+		
+		return buffer.array();
+	}
+	
+	/**
+	 * @return first day, as days since 2000-01-01 00:00 UTC.
+	 */
+	public double getFirstDay() {
+		return firstDay;
+	}
+	
+	/**
+	 * @return number of days.
+	 */
+	public int getDays() {
+		return days;
+	}
+	
+	/**
+	 * @return largest difference from <em>PrayerTimings</em> over all days, in seconds.
+	 */
+	public double getMaxErrorSeconds() {
+		return maxErrorSeconds;
+	}
+	
+	/**
+	 * <p>Evaluates the timings of a day. Nothing is allocated.</p>
+	 * @param day day index, from 0 to <code>getDays() - 1</code>.
+	 * @param isRamadan whether it is ramadan on the day (only used with a fixed isha offset).
+	 * @param out array of at least 5 elements that receives fajr, duhr, asr, magrib and isha in hours since 00:00.
+	 */
+	public void getTimings(int day, boolean isRamadan, double[] out) {
+		if (day < 0 || day >= days) {
+			throw new IndexOutOfBoundsException("Day " + day + " is out of range.");
+		}
+		
+		final int piece = min((int) ((long) day * pieces / days), pieces - 1);
+		final double pieceLength = (double) days / pieces;
+		final double x = 2 * (day - piece * pieceLength) / pieceLength - 1;
+		
+		for (int event = 0; event < events; event++) {
+			out[event] = evaluate((piece * events + event) * coefficientsCount, x);
+		}
+		
+		if (events < PrayerTimings.TIMINGS_COUNT) {
+			out[PrayerTimings.ISHA] = out[PrayerTimings.MAGRIB] + (isRamadan ? ramadanIshaOffsetHours : ishaOffsetHours);
+		}
+	}
+	
+	/**
+	 * <p>Clenshaw evaluation of the series starting at <em>offset</em> at <em>x</em> in [-1, 1].</p>
+	 */
+	private double evaluate(int offset, double x) {
+		final double x2 = 2 * x;
+		double b1 = 0;
+		double b2 = 0;
+		
+		for (int j = coefficientsCount - 1; j > 0; j--) {
+			final double b0 = x2 * b1 - b2 + coefficients[offset + j];
+			b2 = b1;
+			b1 = b0;
+		}
+		
+		return x * b1 - b2 + coefficients[offset];
+	}
+	
+	/**
+	 * <p>Measures the largest error over all days against the batch <em>PrayerTimings</em>.</p>
+	 */
+	private void measureError(TimingsMethod method, boolean useShafaiMethod, int timeZone, double longitude,
+			double latitude) {
+		
+		final double[] expected = new double[PrayerTimings.TIMINGS_COUNT * days];
+		final double[] actual = new double[PrayerTimings.TIMINGS_COUNT];
+		
+		PrayerTimings.getTimings(method, firstDay, days, timeZone, longitude, latitude, false, useShafaiMethod, null,
+				expected);
+		
+		double error = 0;
+		
+		for (int day = 0; day < days; day++) {
+			getTimings(day, false, actual);
+			
+			for (int event = 0; event < PrayerTimings.TIMINGS_COUNT; event++) {
+				final double e = expected[event * days + day];
+				
+				if (Double.isNaN(e)) {
+					continue;
+				}
+				
+				final double difference = abs(actual[event] - e);
+				error = max(error, Double.isNaN(difference) ? Double.POSITIVE_INFINITY : difference);
+			}
+		}
+		
+		maxErrorSeconds = error * 3600;
+	}
+}
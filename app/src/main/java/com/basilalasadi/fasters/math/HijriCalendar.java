@@ -0,0 +1,188 @@
+package com.basilalasadi.fasters.math;
+
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.chrono.HijrahDate;
+import org.threeten.bp.temporal.ChronoField;
+
+
+/**
+ * <p>
+ * Table of Hijri months from 1389 AH to 1524 AH (1969-03-20 to 2101-03-02), for converting an
+ * epoch day to a Hijri date without going through <em>HijrahDate</em>. A lookup is an index into a
+ * table of 16-day blocks and one comparison, since a month is longer than a block and so at most
+ * one month starts within one.
+ * </p><p>
+ * Month lengths match threeten's <em>HijrahChronology</em>, which is tabular. To follow a local
+ * sighting, callers add the user's day offset to the epoch day, e.g.
+ * <code>isRamadan(epochDay + dayOffset)</code>. Days outside the table fall back to
+ * <em>HijrahDate</em>.
+ * </p>
+ */
+public final class HijriCalendar {
+	public static final int FIRST_YEAR = 1389;
+	public static final int LAST_YEAR = 1524;
+	
+	/**
+	 * <p>Largest day offset the user can set either way.</p>
+	 */
+	public static final int MAX_DAY_OFFSET = 2;
+	
+	public static final int RAMADAN = 9;
+	
+	/**
+	 * <p>Epoch day of 1 Muharram <em>FIRST_YEAR</em>.</p>
+	 */
+	private static final long FIRST_DAY = -287;
+	
+	private static final int BLOCK_SHIFT = 4;
+	
+	/**
+	 * <p>
+	 * Month lengths of each year from <em>FIRST_YEAR</em>: bit <em>i</em> is set if month
+	 * <em>i + 1</em> has 30 days, and clear if it has 29.
+	 * </p>
+	 */
+	private static final short[] MONTH_LENGTHS = {
+			0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55,
+			0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555, 0x555,
+			0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555,
+			0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55,
+			0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555, 0x555,
+			0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555,
+			0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55,
+			0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555, 0x555,
+			0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555,
+			0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55,
+			0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555, 0x555,
+			0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55, 0x555,
+			0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55, 0x555, 0xd55,
+			0x555, 0x555, 0xd55, 0x555, 0x555, 0xd55,
+	};
+	
+	/**
+	 * <p>First day of each month, as days since <em>FIRST_DAY</em>, and the end of the table.</p>
+	 */
+	private static final int[] MONTH_STARTS;
+	
+	/**
+	 * <p>Index of the month each 16-day block starts in.</p>
+	 */
+	private static final short[] BLOCK_MONTHS;
+	
+	static {
+		final int months = MONTH_LENGTHS.length * 12;
+		MONTH_STARTS = new int[months + 1];
+		
+		for (int i = 0; i < months; i++) {
+			final boolean isLong = (MONTH_LENGTHS[i / 12] & 1 << i % 12) != 0;
+			MONTH_STARTS[i + 1] = MONTH_STARTS[i] + (isLong ? 30 : 29);
+		}
+		
+		BLOCK_MONTHS = new short[(MONTH_STARTS[months] >> BLOCK_SHIFT) + 1];
+		
+		for (int block = 0, month = 0; block < BLOCK_MONTHS.length; block++) {
+			while (month < months - 1 && MONTH_STARTS[month + 1] <= block << BLOCK_SHIFT) {
+				month++;
+			}
+			
+			BLOCK_MONTHS[block] = (short) month;
+		}
+	}
+	
+	private HijriCalendar() {}
+	
+	/**
+	 * @param epochDay Days since 1970-01-01.
+	 * @return true if the day is in the table.
+	 */
+	public static boolean isSupported(long epochDay) {
+		return epochDay >= FIRST_DAY && epochDay < FIRST_DAY + MONTH_STARTS[MONTH_STARTS.length - 1];
+	}
+	
+	/**
+	 * @param epochDay Days since 1970-01-01.
+	 * @return Hijri year.
+	 */
+	public static int getYear(long epochDay) {
+		if (!isSupported(epochDay)) {
+			return HijrahDate.from(LocalDate.ofEpochDay(epochDay)).get(ChronoField.YEAR);
+		}
+		
+		return FIRST_YEAR + monthIndex(epochDay) / 12;
+	}
+	
+	/**
+	 * @param epochDay Days since 1970-01-01.
+	 * @return Hijri month, from 1 to 12.
+	 */
+	public static int getMonth(long epochDay) {
+		if (!isSupported(epochDay)) {
+			return HijrahDate.from(LocalDate.ofEpochDay(epochDay)).get(ChronoField.MONTH_OF_YEAR);
+		}
+		
+		return monthIndex(epochDay) % 12 + 1;
+	}
+	
+	/**
+	 * @param epochDay Days since 1970-01-01.
+	 * @return Hijri day of month, from 1 to 30.
+	 */
+	public static int getDayOfMonth(long epochDay) {
+		if (!isSupported(epochDay)) {
+			return HijrahDate.from(LocalDate.ofEpochDay(epochDay)).get(ChronoField.DAY_OF_MONTH);
+		}
+		
+		return (int) (epochDay - FIRST_DAY) - MONTH_STARTS[monthIndex(epochDay)] + 1;
+	}
+	
+	/**
+	 * @param epochDay Days since 1970-01-01.
+	 * @return true if the day is in Ramadan.
+	 */
+	public static boolean isRamadan(long epochDay) {
+		return getMonth(epochDay) == RAMADAN;
+	}
+	
+	/**
+	 * <p>Finds the days of a Gregorian year that are in Ramadan.</p>
+	 * @param year Gregorian year.
+	 * @param dayOffset The user's day offset, added to the Hijri date.
+	 * @return ranges of epoch days, as pairs of first day and end (exclusive); two ranges if Ramadan
+	 * falls in both ends of the year.
+	 * @throws IllegalArgumentException if the year is not in the table.
+	 */
+	public static long[] getRamadanRanges(int year, int dayOffset) {
+		final long from = LocalDate.of(year, 1, 1).toEpochDay() + dayOffset;
+		final long to = LocalDate.of(year + 1, 1, 1).toEpochDay() + dayOffset;
+		
+		if (!isSupported(from) || !isSupported(to - 1)) {
+			throw new IllegalArgumentException("Year " + year + " is not in the table.");
+		}
+		
+		long[] ranges = new long[4];
+		int count = 0;
+		
+		for (int month = monthIndex(from); month <= monthIndex(to - 1); month++) {
+			if (month % 12 + 1 != RAMADAN) {
+				continue;
+			}
+			
+			ranges[count++] = Math.max(from, FIRST_DAY + MONTH_STARTS[month]) - dayOffset;
+			ranges[count++] = Math.min(to, FIRST_DAY + MONTH_STARTS[month + 1]) - dayOffset;
+		}
+		
+		final long[] result = new long[count];
+		System.arraycopy(ranges, 0, result, 0, count);
+		return result;
+	}
+	
+	/**
+	 * @return index of the month of a supported day, from the first month of the table.
+	 */
+	private static int monthIndex(long epochDay) {
+		final int day = (int) (epochDay - FIRST_DAY);
+		final int month = BLOCK_MONTHS[day >> BLOCK_SHIFT];
+		
+		return day >= MONTH_STARTS[month + 1] ? month + 1 : month;
+	}
+}
@@ -2,6 +2,7 @@ package com.basilalasadi.fasters.math;
 
 import org.threeten.bp.ZonedDateTime;
 import static com.basilalasadi.fasters.math.AstronomyMath.*;
+import static java.lang.Math.*;
 
 import com.basilalasadi.fasters.util.TimeProvider;
 
@@ -12,6 +13,24 @@ import com.basilalasadi.fasters.util.TimeProvider;
  */
 @SuppressWarnings({"SpellCheckingInspection", "unused"})
 public abstract class PrayerTimings {
+	public static final int FAJR = 0;
+	public static final int DUHR = 1;
+	public static final int ASR = 2;
+	public static final int MAGRIB = 3;
+	public static final int ISHA = 4;
+	
+	/**
+	 * <p>Number of timings in a day.</p>
+	 */
+	public static final int TIMINGS_COUNT = 5;
+	
+	/**
+	 * <p>Timing of an event that does not occur, as epoch millis.</p>
+	 */
+	public static final long NO_TIME_MILLIS = Long.MIN_VALUE;
+	
+	private static final double MAGRIB_ANGLE_DEGREES = 0.833;
+	
 	/**
 	 * <p>Get fajr time.</p>
 	 * @param angleDegrees sun angle at fajr.
@@ -152,18 +171,15 @@ public abstract class PrayerTimings {
 	 * @param timeZone time zone offset from UTC.
 	 * @param longitude longitude in degrees.
 	 * @param latitude latitude in degrees.
-	 * @return timings array in minutes since 00:00.
+	 * @return timings array in hours since 00:00.
 	 */
 	public static double[] getTimings(double fajrAngleDegrees, boolean useShafaiMethod, double ishaAngleDegrees,
 			double daysSinceEpoch, int timeZone, double longitude, double latitude) {
 		
-		double noon = localSolarNoon(daysSinceEpoch, timeZone, longitude);
-		double fajr = noon - noonOffsetFromSunAngle(fajrAngleDegrees, daysSinceEpoch, latitude);
-		double asr = noon + noonOffsetFromShadowLength(useShafaiMethod ? 2 : 1, daysSinceEpoch, latitude);
-		double magrib = noon + noonOffsetFromSunAngle(0.833, daysSinceEpoch, latitude);
-		double isha = noon + noonOffsetFromSunAngle(ishaAngleDegrees, daysSinceEpoch, latitude);
-		
-		return new double[]{ fajr, noon, asr, magrib, isha };
+		double[] timings = new double[TIMINGS_COUNT];
+		getTimings(fajrAngleDegrees, useShafaiMethod, ishaAngleDegrees, daysSinceEpoch, 1, timeZone, longitude, latitude,
+				null, timings);
+		return timings;
 	}
 	
 	/**
@@ -175,18 +191,15 @@ public abstract class PrayerTimings {
 	 * @param timeZone time zone offset from UTC.
 	 * @param longitude longitude in degrees.
 	 * @param latitude latitude in degrees.
-	 * @return timings array in minutes since 00:00.
+	 * @return timings array in hours since 00:00.
 	 */
 	public static double[] getTimings(double fajrAngleDegrees, boolean useShafaiMethod, int ishaTimeOffsetMinutes,
 			double daysSinceEpoch, int timeZone, double longitude, double latitude) {
 		
-		double noon = localSolarNoon(daysSinceEpoch, timeZone, longitude);
-		double fajr = noon - noonOffsetFromSunAngle(fajrAngleDegrees, daysSinceEpoch, latitude);
-		double asr = noon + noonOffsetFromShadowLength(useShafaiMethod ? 2 : 1, daysSinceEpoch, latitude);
-		double magrib = noon + noonOffsetFromSunAngle(0.833, daysSinceEpoch, latitude);
-		double isha = magrib + ishaTimeOffsetMinutes / 60d;
-		
-		return new double[]{ fajr, noon, asr, magrib, isha };
+		double[] timings = new double[TIMINGS_COUNT];
+		getTimings(fajrAngleDegrees, useShafaiMethod, ishaTimeOffsetMinutes, daysSinceEpoch, 1, timeZone, longitude,
+				latitude, null, timings);
+		return timings;
 	}
 	
 	/**
@@ -198,21 +211,192 @@ public abstract class PrayerTimings {
 	 * @param latitude latitude in degrees.
 	 * @param isRamadan whether it is ramadan at specified <em>daysSinceEpoch</em>.
 	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
-	 * @return timings array in minutes since 00:00.
+	 * @return timings array in hours since 00:00.
 	 */
 	public static double[] getTimings(TimingsMethod method, double daysSinceEpoch, int timeZone,
 			double longitude, double latitude, boolean isRamadan, boolean useShafaiMethod) {
 		
+		double[] timings = new double[TIMINGS_COUNT];
+		getTimings(method, daysSinceEpoch, 1, timeZone, longitude, latitude, isRamadan, useShafaiMethod, null, timings);
+		return timings;
+	}
+	
+	/**
+	 * <p>Get all timings for <em>days</em> consecutive days, starting at <em>daysSinceEpoch</em>.</p>
+	 * <p>
+	 * Timings are written column by column; the timing of event <em>e</em> (one of <em>FAJR</em>,
+	 * <em>DUHR</em>, <em>ASR</em>, <em>MAGRIB</em> and <em>ISHA</em>) on day <em>d</em> is stored at
+	 * <code>out[e * days + d]</code>. Nothing is allocated.
+	 * </p>
+	 * @param fajrAngleDegrees sun angle at fajr.
+	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
+	 * @param ishaAngleDegrees sun angle at isha.
+	 * @param daysSinceEpoch days (and fraction of day) since 2000-01-01 00:00 UTC of the first day.
+	 * @param days number of days.
+	 * @param timeZone time zone offset from UTC.
+	 * @param longitude longitude in degrees.
+	 * @param latitude latitude in degrees.
+	 * @param ephemeris precomputed ephemeris to look up the sun's position in, or null to calculate it.
+	 * @param out array of at least <code>5 * days</code> elements that receives the timings in hours since 00:00.
+	 */
+	public static void getTimings(double fajrAngleDegrees, boolean useShafaiMethod, double ishaAngleDegrees,
+			double daysSinceEpoch, int days, int timeZone, double longitude, double latitude, SolarEphemeris ephemeris,
+			double[] out) {
+		
+		fillTimings(fajrAngleDegrees, useShafaiMethod, ishaAngleDegrees, 0, daysSinceEpoch, days, timeZone,
+				longitude, latitude, ephemeris, out);
+	}
+	
+	/**
+	 * <p>Get all timings for <em>days</em> consecutive days, starting at <em>daysSinceEpoch</em>.</p>
+	 * <p>
+	 * Timings are written column by column; the timing of event <em>e</em> (one of <em>FAJR</em>,
+	 * <em>DUHR</em>, <em>ASR</em>, <em>MAGRIB</em> and <em>ISHA</em>) on day <em>d</em> is stored at
+	 * <code>out[e * days + d]</code>. Nothing is allocated.
+	 * </p>
+	 * @param fajrAngleDegrees sun angle at fajr.
+	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
+	 * @param ishaTimeOffsetMinutes fixed time offset from magrib in minutes.
+	 * @param daysSinceEpoch days (and fraction of day) since 2000-01-01 00:00 UTC of the first day.
+	 * @param days number of days.
+	 * @param timeZone time zone offset from UTC.
+	 * @param longitude longitude in degrees.
+	 * @param latitude latitude in degrees.
+	 * @param ephemeris precomputed ephemeris to look up the sun's position in, or null to calculate it.
+	 * @param out array of at least <code>5 * days</code> elements that receives the timings in hours since 00:00.
+	 */
+	public static void getTimings(double fajrAngleDegrees, boolean useShafaiMethod, int ishaTimeOffsetMinutes,
+			double daysSinceEpoch, int days, int timeZone, double longitude, double latitude, SolarEphemeris ephemeris,
+			double[] out) {
+		
+		fillTimings(fajrAngleDegrees, useShafaiMethod, Double.NaN, ishaTimeOffsetMinutes / 60d, daysSinceEpoch, days,
+				timeZone, longitude, latitude, ephemeris, out);
+	}
+	
+	/**
+	 * <p>Get all timings for <em>days</em> consecutive days, starting at <em>daysSinceEpoch</em>, using method
+	 * (enum).</p>
+	 * <p>
+	 * Timings are written column by column; the timing of event <em>e</em> (one of <em>FAJR</em>,
+	 * <em>DUHR</em>, <em>ASR</em>, <em>MAGRIB</em> and <em>ISHA</em>) on day <em>d</em> is stored at
+	 * <code>out[e * days + d]</code>. Nothing is allocated.
+	 * </p>
+	 * @param method method enum.
+	 * @param daysSinceEpoch days (and fraction of day) since 2000-01-01 00:00 UTC of the first day.
+	 * @param days number of days.
+	 * @param timeZone time zone offset from UTC.
+	 * @param longitude longitude in degrees.
+	 * @param latitude latitude in degrees.
+	 * @param isRamadan whether it is ramadan for all of the days.
+	 * @param useShafaiMethod use shafai method instead (shadow ratio of 2 instead of 1).
+	 * @param ephemeris precomputed ephemeris to look up the sun's position in, or null to calculate it.
+	 * @param out array of at least <code>5 * days</code> elements that receives the timings in hours since 00:00.
+	 */
+	public static void getTimings(TimingsMethod method, double daysSinceEpoch, int days, int timeZone,
+			double longitude, double latitude, boolean isRamadan, boolean useShafaiMethod, SolarEphemeris ephemeris,
+			double[] out) {
+		
 		double fajrAngle = method.getFajrAngleDegrees();
 		
 		if (method.usesFixedOffsetForIsha()) {
 			int ishaOffset = (int) method.getIshaFixedOffset(isRamadan);
-			return getTimings(fajrAngle, useShafaiMethod, ishaOffset, daysSinceEpoch, timeZone, longitude, latitude);
+			getTimings(fajrAngle, useShafaiMethod, ishaOffset, daysSinceEpoch, days, timeZone, longitude, latitude,
+					ephemeris, out);
 		}
 		else {
 			double ishaAngle = method.getIshaAngleDegrees();
-			return getTimings(fajrAngle, useShafaiMethod, ishaAngle, daysSinceEpoch, timeZone, longitude, latitude);
+			getTimings(fajrAngle, useShafaiMethod, ishaAngle, daysSinceEpoch, days, timeZone, longitude, latitude,
+					ephemeris, out);
+		}
+	}
+	
+	/**
+	 * <p>
+	 * Shared implementation of the batch timings. Latitude terms are computed once, and the solar
+	 * declination, equation of time and noon are computed once per day and shared between the
+	 * five events.
+	 * </p>
+	 * @param ishaAngleDegrees sun angle at isha, or NaN to use <em>ishaOffsetHours</em>.
+	 * @param ishaOffsetHours fixed offset of isha from magrib in hours.
+	 * @param ephemeris precomputed ephemeris, or null to calculate the sun's position.
+	 */
+	private static void fillTimings(double fajrAngleDegrees, boolean useShafaiMethod, double ishaAngleDegrees,
+			double ishaOffsetHours, double daysSinceEpoch, int days, int timeZone, double longitude, double latitude,
+			SolarEphemeris ephemeris, double[] out) {
+		
+		if (days < 0 || out.length < TIMINGS_COUNT * days) {
+			throw new IllegalArgumentException("Output array is too short.");
 		}
+		
+		final double L = latitude * PI / 180;
+		final double sinL = sin(L);
+		final double cosL = cos(L);
+		
+		final double sinFajrAngle = sin(fajrAngleDegrees * PI / 180);
+		final double sinMagribAngle = sin(MAGRIB_ANGLE_DEGREES * PI / 180);
+		final boolean useIshaAngle = !Double.isNaN(ishaAngleDegrees);
+		final double sinIshaAngle = useIshaAngle ? sin(ishaAngleDegrees * PI / 180) : 0;
+		final double shadowLength = useShafaiMethod ? 2 : 1;
+		
+		final double noonWithoutEquationOfTime = 12 + timeZone - longitude / 15;
+		
+		final int fajrColumn = FAJR * days;
+		final int duhrColumn = DUHR * days;
+		final int asrColumn = ASR * days;
+		final int magribColumn = MAGRIB * days;
+		final int ishaColumn = ISHA * days;
+		
+		for (int day = 0; day < days; day++) {
+			final double t = daysSinceEpoch + day;
+			
+			final double D = ephemeris != null ? ephemeris.solarDeclination(t) : solarDeclination(t);
+			final double sinLsinD = sinL * sin(D);
+			final double cosLcosD = cosL * cos(D);
+			
+			final double eot = ephemeris != null ? ephemeris.equationOfTime(t) : equationOfTime(t);
+			final double noon = noonWithoutEquationOfTime - eot / 60;
+			
+			// sin(acot(x)) == 1 / sqrt(1 + x^2), which saves an atan2 and a sin per day.
+			final double asrCotangent = shadowLength + tan(L - D);
+			final double sinAsrAngle = 1 / sqrt(1 + asrCotangent * asrCotangent);
+			
+			final double magrib = noon + hoursFromHourAngle((-sinMagribAngle - sinLsinD) / cosLcosD);
+			
+			out[fajrColumn + day] = noon - hoursFromHourAngle((-sinFajrAngle - sinLsinD) / cosLcosD);
+			out[duhrColumn + day] = noon;
+			out[asrColumn + day] = noon + hoursFromHourAngle((sinAsrAngle - sinLsinD) / cosLcosD);
+			out[magribColumn + day] = magrib;
+			out[ishaColumn + day] = useIshaAngle ?
+					noon + hoursFromHourAngle((-sinIshaAngle - sinLsinD) / cosLcosD) :
+					magrib + ishaOffsetHours;
+		}
+	}
+	
+	/**
+	 * <p>Converts the cosine of an hour angle to an offset from solar noon.</p>
+	 * @param cosHourAngle cosine of the hour angle.
+	 * @return offset from solar noon in hours; NaN if the sun never reaches the angle.
+	 */
+	private static double hoursFromHourAngle(double cosHourAngle) {
+		return acos(cosHourAngle) / 15 * 180 / PI;
+	}
+	
+	/**
+	 * <p>
+	 * Converts a timing calculated with a time zone of 0 to an instant. Since the timing is
+	 * relative to 00:00 UTC, no zone rules are needed; it may be negative or past 24 for
+	 * longitudes far from 0.
+	 * </p>
+	 * @param epochDay date the timing was calculated for, as days since 1970-01-01.
+	 * @param hours timing in hours since 00:00 UTC of the date.
+	 * @return milliseconds since 1970-01-01 00:00 UTC, or <em>NO_TIME_MILLIS</em> if timing is NaN.
+	 */
+	public static long toEpochMillis(long epochDay, double hours) {
+		if (Double.isNaN(hours)) {
+			return NO_TIME_MILLIS;
+		}
+		
+		return epochDay * 86400000L + round(hours * 3600000);
 	}
 	
 	/**
@@ -0,0 +1,224 @@
+package com.basilalasadi.fasters.math;
+
+
+/**
+ * <p>
+ * Precomputed table of the equation of time and the solar declination between year 2000 and
+ * 2050 (the validity range of <em>AstronomyMath</em>), evaluated by cubic interpolation. Outside
+ * that range, values are calculated by <em>AstronomyMath</em> instead.
+ * </p><p>
+ * Use <em>forErrorBound()</em> to build a table with the largest sampling step whose
+ * interpolation error, measured against <em>AstronomyMath</em>, is within the given bounds. The
+ * calculated equation of time jumps at the start of every 365.25 day cycle, which no interpolation
+ * follows, so bounds below 0.0013 minutes for it can't be met. A daily table, the default, is
+ * within 0.00122 minutes and 3.82e-8 radians.
+ * </p>
+ * @see AstronomyMath
+ */
+public final class SolarEphemeris {
+	/**
+	 * <p>First day covered by the table (2000-01-01 00:00 UTC), as days since epoch.</p>
+	 */
+	public static final double FIRST_DAY = AstronomyMath.daysSinceEpoch(2000, 1, 1, 0, 0, 0);
+	
+	/**
+	 * <p>Last day covered by the table (2051-01-01 00:00 UTC), as days since epoch.</p>
+	 */
+	public static final double LAST_DAY = AstronomyMath.daysSinceEpoch(2051, 1, 1, 0, 0, 0);
+	
+	/**
+	 * <p>Candidate sampling steps in days, from largest to smallest.</p>
+	 */
+	private static final double[] STEPS = { 16, 8, 4, 2, 1, 1 / 4d, 1 / 24d };
+	
+	/**
+	 * <p>Number of points at which the error is measured between two samples.</p>
+	 */
+	private static final int ERROR_POINTS_PER_STEP = 16;
+	
+	/**
+	 * <p>Length in days of the cycles of <em>AstronomyMath.equationOfTime()</em>.</p>
+	 */
+	private static final double CYCLE_DAYS = 365.25;
+	
+	/**
+	 * <p>
+	 * Factor applied to the measured errors when comparing them with bounds, to cover the error
+	 * between the measured points, which is at most 2% larger.
+	 * </p>
+	 */
+	private static final double ERROR_MARGIN = 1.05;
+	
+	private final double step;
+	private final int size;
+	private final float[] equationOfTime;
+	private final float[] declination;
+	
+	private double maxEquationOfTimeError = Double.NaN;
+	private double maxDeclinationError = Double.NaN;
+	
+	/**
+	 * <p>Builds a table sampled every <em>stepDays</em>.</p>
+	 * @param stepDays sampling step in days.
+	 */
+	public SolarEphemeris(double stepDays) {
+		if (!(stepDays > 0)) {
+			throw new IllegalArgumentException("Step must be positive.");
+		}
+		
+		this.step = stepDays;
+		this.size = (int) Math.ceil((LAST_DAY - FIRST_DAY) / stepDays) + 1;
+		
+		// One extra sample on each side, so that every interval has four neighbouring samples.
+		this.equationOfTime = new float[size + 2];
+		this.declination = new float[size + 2];
+		
+		for (int i = 0; i < size + 2; i++) {
+			final double t = FIRST_DAY + (i - 1) * stepDays;
+			equationOfTime[i] = (float) AstronomyMath.equationOfTime(t);
+			declination[i] = (float) AstronomyMath.solarDeclination(t);
+		}
+	}
+	
+	/**
+	 * <p>Builds the table with the largest sampling step that satisfies both error bounds.</p>
+	 * @param maxEquationOfTimeErrorMinutes maximum error of the equation of time in minutes.
+	 * @param maxDeclinationErrorRadians maximum error of the solar declination in radians.
+	 * @return the table.
+	 * @throws IllegalArgumentException if even the smallest step can't satisfy the bounds.
+	 */
+	public static SolarEphemeris forErrorBound(double maxEquationOfTimeErrorMinutes, double maxDeclinationErrorRadians) {
+		for (double step : STEPS) {
+			SolarEphemeris ephemeris = new SolarEphemeris(step);
+			
+			if (ephemeris.getMaxEquationOfTimeError() * ERROR_MARGIN <= maxEquationOfTimeErrorMinutes &&
+					ephemeris.getMaxDeclinationError() * ERROR_MARGIN <= maxDeclinationErrorRadians) {
+				
+				return ephemeris;
+			}
+		}
+		
+		throw new IllegalArgumentException("Error bounds are too small.");
+	}
+	
+	/**
+	 * <p>Gets the shared table, sampled once per day.</p>
+	 * @return the shared table.
+	 */
+	public static SolarEphemeris getDefault() {
+		return DefaultHolder.instance;
+	}
+	
+	/**
+	 * @return sampling step in days.
+	 */
+	public double getStep() {
+		return step;
+	}
+	
+	/**
+	 * <p>Interpolated equation of time.</p>
+	 * @see AstronomyMath#equationOfTime(double)
+	 */
+	public double equationOfTime(double daysSinceEpoch) {
+		if (!(daysSinceEpoch >= FIRST_DAY && daysSinceEpoch < LAST_DAY)) {
+			return AstronomyMath.equationOfTime(daysSinceEpoch);
+		}
+		
+		return interpolate(equationOfTime, daysSinceEpoch);
+	}
+	
+	/**
+	 * <p>Interpolated solar declination angle in radians.</p>
+	 * @see AstronomyMath#solarDeclination(double)
+	 */
+	public double solarDeclination(double daysSinceEpoch) {
+		if (!(daysSinceEpoch >= FIRST_DAY && daysSinceEpoch < LAST_DAY)) {
+			return AstronomyMath.solarDeclination(daysSinceEpoch);
+		}
+		
+		return interpolate(declination, daysSinceEpoch);
+	}
+	
+	/**
+	 * <p>
+	 * Gets the largest difference between the interpolated and the calculated equation of time
+	 * over the whole table. It is measured on first call.
+	 * </p>
+	 * @return maximum error in minutes.
+	 */
+	public synchronized double getMaxEquationOfTimeError() {
+		if (Double.isNaN(maxEquationOfTimeError)) {
+			measureErrors();
+		}
+		
+		return maxEquationOfTimeError;
+	}
+	
+	/**
+	 * <p>
+	 * Gets the largest difference between the interpolated and the calculated solar declination
+	 * over the whole table. It is measured on first call.
+	 * </p>
+	 * @return maximum error in radians.
+	 */
+	public synchronized double getMaxDeclinationError() {
+		if (Double.isNaN(maxDeclinationError)) {
+			measureErrors();
+		}
+		
+		return maxDeclinationError;
+	}
+	
+	/**
+	 * <p>
+	 * Measures the errors at the samples, at points between them, and on either side of the
+	 * equation of time jumps.
+	 * </p>
+	 */
+	private void measureErrors() {
+		double eotError = 0;
+		double declinationError = 0;
+		
+		final double pointStep = step / ERROR_POINTS_PER_STEP;
+		
+		for (double t = FIRST_DAY; t < LAST_DAY; t += pointStep) {
+			eotError = Math.max(eotError, Math.abs(equationOfTime(t) - AstronomyMath.equationOfTime(t)));
+			declinationError = Math.max(declinationError, Math.abs(solarDeclination(t) - AstronomyMath.solarDeclination(t)));
+		}
+		
+		// The largest equation of time errors are on either side of the jumps between cycles.
+		for (double t = CYCLE_DAYS; t < LAST_DAY; t += CYCLE_DAYS) {
+			final double before = Math.nextDown(t);
+			
+			eotError = Math.max(eotError, Math.abs(equationOfTime(before) - AstronomyMath.equationOfTime(before)));
+			eotError = Math.max(eotError, Math.abs(equationOfTime(t) - AstronomyMath.equationOfTime(t)));
+		}
+		
+		maxEquationOfTimeError = eotError;
+		maxDeclinationError = declinationError;
+	}
+	
+	/**
+	 * <p>Cubic (Catmull-Rom) interpolation between the two samples around <em>t</em>.</p>
+	 */
+	private double interpolate(float[] samples, double t) {
+		final double u = (t - FIRST_DAY) / step;
+		final int i = Math.min((int) u, size - 2);
+		final double f = u - i;
+		
+		final double p0 = samples[i];
+		final double p1 = samples[i + 1];
+		final double p2 = samples[i + 2];
+		final double p3 = samples[i + 3];
+		
+		return p1 + 0.5 * f * (p2 - p0 + f * (2 * p0 - 5 * p1 + 4 * p2 - p3 + f * (3 * (p1 - p2) + p3 - p0)));
+	}
+	
+	/**
+	 * <p>Lazily builds the shared table.</p>
+	 */
+	private static final class DefaultHolder {
+		static final SolarEphemeris instance = new SolarEphemeris(1);
+	}
+}
@@ -0,0 +1,108 @@
+package com.basilalasadi.fasters.model;
+
+import java.text.DateFormatSymbols;
+
+
+/**
+ * <p>
+ * Reusable text buffers for the countdown that is updated every second. <em>tick()</em> writes
+ * the digits straight into the buffers from epoch seconds, so a tick allocates nothing.
+ * </p><p>
+ * Use the buffers with <em>TextView.setText(char[], int, int)</em>.
+ * </p>
+ */
+public final class CountdownTicker {
+	public final char[] hours = new char[2];
+	public final char[] minutes = new char[2];
+	public final char[] seconds = new char[2];
+	public final char[] timeTillNextPrayer = new char[8];
+	public final char[] currentTime = new char[16];
+	
+	public int timeTillNextPrayerLength;
+	public int currentTimeLength;
+	
+	/**
+	 * Progress of the countdown, from 0 to <em>progressMax</em>.
+	 */
+	public int progress;
+	
+	private final int progressMax;
+	private final char[] am;
+	private final char[] pm;
+	
+	/**
+	 * @param progressMax value of <em>progress</em> at the end of the countdown.
+	 */
+	public CountdownTicker(int progressMax) {
+		this.progressMax = progressMax;
+		
+		String[] amPm = DateFormatSymbols.getInstance().getAmPmStrings();
+		this.am = amPm[0].toCharArray();
+		this.pm = amPm[1].toCharArray();
+	}
+	
+	/**
+	 * Updates the buffers.
+	 *
+	 * @param now current time in epoch seconds.
+	 * @param countDownStartTime start of the countdown in epoch seconds.
+	 * @param countDownEndTime end of the countdown in epoch seconds.
+	 * @param nextPrayerTime time of the next prayer in epoch seconds.
+	 * @param zoneOffsetSeconds offset of the local time from UTC.
+	 */
+	public void tick(long now, long countDownStartTime, long countDownEndTime, long nextPrayerTime,
+			int zoneOffsetSeconds) {
+		
+		final long remaining = Math.max(0, countDownEndTime - now);
+		
+		writeTwoDigits(hours, 0, (int) (remaining / 3600));
+		writeTwoDigits(minutes, 0, (int) (remaining / 60 % 60));
+		writeTwoDigits(seconds, 0, (int) (remaining % 60));
+		
+		progress = (int) ((now - countDownStartTime) * progressMax / (double) (countDownEndTime - countDownStartTime));
+		
+		final long tillNextPrayer = Math.max(0, nextPrayerTime - now);
+		int length = writeNumber(timeTillNextPrayer, 0, (int) (tillNextPrayer / 3600));
+		timeTillNextPrayer[length++] = ':';
+		length = writeTwoDigits(timeTillNextPrayer, length, (int) (tillNextPrayer / 60 % 60));
+		timeTillNextPrayerLength = length;
+		
+		final int secondOfDay = (int) Math.floorMod(now + zoneOffsetSeconds, 86400L);
+		final int hourOfDay = secondOfDay / 3600;
+		final int clockHour = hourOfDay % 12 == 0 ? 12 : hourOfDay % 12;
+		final char[] amPm = hourOfDay < 12 ? am : pm;
+		
+		length = writeNumber(currentTime, 0, clockHour);
+		currentTime[length++] = ':';
+		length = writeTwoDigits(currentTime, length, secondOfDay / 60 % 60);
+		currentTime[length++] = ' ';
+		
+		final int amPmLength = Math.min(amPm.length, currentTime.length - length);
+		System.arraycopy(amPm, 0, currentTime, length, amPmLength);
+		currentTimeLength = length + amPmLength;
+	}
+	
+	/**
+	 * Writes a number from 0 to 99 as two digits.
+	 * @return index after the last written char.
+	 */
+	private static int writeTwoDigits(char[] buf, int offset, int value) {
+		buf[offset] = (char) ('0' + value / 10 % 10);
+		buf[offset + 1] = (char) ('0' + value % 10);
+		return offset + 2;
+	}
+	
+	/**
+	 * Writes a number from 0 to 99 without leading zeros.
+	 * @return index after the last written char.
+	 */
+	private static int writeNumber(char[] buf, int offset, int value) {
+		if (value < 10) {
+			buf[offset] = (char) ('0' + value);
+			return offset + 1;
+		}
+		else {
+			return writeTwoDigits(buf, offset, value);
+		}
+	}
+}
@@ -1,44 +1,17 @@
 package com.basilalasadi.fasters.model;
 
-import com.basilalasadi.fasters.bloc.CountdownBloc;
-import com.basilalasadi.fasters.util.TimeProvider;
+import com.basilalasadi.fasters.math.PrayerTimings;
 
 import org.jetbrains.annotations.NotNull;
 import org.threeten.bp.LocalTime;
-import org.threeten.bp.ZonedDateTime;
-import org.threeten.bp.Duration;
 import org.threeten.bp.format.DateTimeFormatter;
 import org.threeten.bp.format.DateTimeFormatterBuilder;
 import org.threeten.bp.temporal.ChronoField;
 
-import java.util.Arrays;
-import java.util.Locale;
+import java.util.TimeZone;
 
 
 public final class CountdownViewModel {
-	public static class CountdownDisplay {
-		public final String hours;
-		public final String minute;
-		public final String second;
-		
-		CountdownDisplay(int hours, int minute, int second) {
-			this.hours = String.valueOf(hours);
-			this.minute = String.valueOf(minute);
-			this.second = String.valueOf(second);
-		}
-		
-		CountdownDisplay(int seconds) {
-			int hours = seconds / 3600;
-			int minute = seconds / 60 - hours * 60;
-			int second = seconds - hours * 3600 - minute * 60;
-			
-			this.hours = String.format(Locale.US, "%02d", hours);
-			this.minute = String.format(Locale.US, "%02d", minute);
-			this.second = String.format(Locale.US,"%02d", second);
-		}
-	}
-	
-	
 	public static final String TAG = "countdownViewModel";
 	
 	public static final int FLAG_DATA_AVAILABLE = 0x01;
@@ -57,46 +30,40 @@ public final class CountdownViewModel {
 					.toFormatter();
 	
 	public final int flags;
-	public final boolean isEvening;
-	public final long countDownStartTime;
-	public final long countDownEndTime;
 	public final String location;
-	public final int nextPrayerIndex;
-	public final String nextPrayerName;
-	public final double[] prayerTimes;
-	public final int nextPrayerId;
-	public final int zone;
-	public final ZonedDateTime expires;
 	
-	public CountdownViewModel(int flags, boolean isEvening, long countDownStartTime, long countDownEndTime,
-			String location, int nextPrayerIndex, String nextPrayerName, double @NotNull [] prayerTimes,
-			int nextPrayerId, int zone, ZonedDateTime expires) {
+	/**
+	 * Events of the next few days, or null if no data is available. It is advanced in place, so the
+	 * view model stays valid across prayers.
+	 */
+	public final PrayerTimeline timeline;
+	
+	/**
+	 * Names of fajr, duhr, asr, magrib and isha.
+	 */
+	private final String[] prayerNames;
+	
+	/**
+	 * Local zone, to get the offset of the current time without allocating.
+	 */
+	private final TimeZone timeZone;
+	
+	public CountdownViewModel(int flags, String location, String @NotNull [] prayerNames,
+			@NotNull PrayerTimeline timeline, @NotNull TimeZone timeZone) {
 		
 		this.flags = flags;
-		this.isEvening = isEvening;
-		this.countDownStartTime = countDownStartTime;
-		this.countDownEndTime = countDownEndTime;
 		this.location = location;
-		this.nextPrayerIndex = nextPrayerIndex;
-		this.nextPrayerName = nextPrayerName;
-		this.prayerTimes = prayerTimes;
-		this.nextPrayerId = nextPrayerId;
-		this.zone = zone;
-		this.expires = expires;
+		this.prayerNames = prayerNames;
+		this.timeline = timeline;
+		this.timeZone = timeZone;
 	}
 	
 	private CountdownViewModel(int flags) {
 		this.flags = flags;
-		this.isEvening = false;
-		this.countDownStartTime = -1;
-		this.countDownEndTime = -1;
 		this.location = null;
-		this.nextPrayerIndex = -1;
-		this.nextPrayerName = null;
-		this.prayerTimes = null;
-		this.nextPrayerId = -1;
-		this.zone = 0;
-		this.expires = TimeProvider.now().minusSeconds(1);
+		this.prayerNames = null;
+		this.timeline = null;
+		this.timeZone = null;
 	}
 	
 	public static CountdownViewModel dataLoading() {
@@ -133,7 +100,7 @@ public final class CountdownViewModel {
 				case ERROR_INVALID_SETTINGS:
 					buf.append("error_invalid_settings ");
 					break;
-					
+				
 				default:
 					buf.append("error_")
 							.append(Integer.toHexString(getError()).toUpperCase())
@@ -147,16 +114,15 @@ public final class CountdownViewModel {
 		
 		buf.append("}");
 		
-		buf.append(", isEvening: ").append(isEvening);
-		buf.append(", countDownStartTime: ").append(countDownStartTime);
-		buf.append(", countDownEndTime: ").append(countDownEndTime);
 		buf.append(", location: ").append(location);
-		buf.append(", timeTillNextPrayer: ").append(nextPrayerIndex);
-		buf.append(", nextPrayer: ").append(nextPrayerName);
-		buf.append(", prayerTimes: ").append(Arrays.toString(prayerTimes));
-		buf.append(", nextPrayerTime: ").append(nextPrayerId);
-		buf.append(", zone: ").append(zone);
-		buf.append(", expires: ").append(expires);
+		
+		if (timeline != null && !timeline.isEmpty()) {
+			buf.append(", isEvening: ").append(isEvening());
+			buf.append(", windowStart: ").append(timeline.getWindowStart());
+			buf.append(", windowEnd: ").append(timeline.getWindowEnd());
+			buf.append(", nextPrayer: ").append(getNextPrayerName());
+			buf.append(", nextPrayerTime: ").append(timeline.getTime(timeline.getNextIndex()));
+		}
 		
 		buf.append(")");
 		
@@ -171,7 +137,7 @@ public final class CountdownViewModel {
 			switch (error) {
 				case ERROR_INVALID_SETTINGS:
 					return "ERROR_INVALID_SETTINGS";
-					
+				
 				case ERROR_NO_LOCATION:
 					return "ERROR_NO_LOCATION";
 				
@@ -183,7 +149,7 @@ public final class CountdownViewModel {
 		switch (status) {
 			case FLAG_DATA_AVAILABLE:
 				return "FLAG_DATA_AVAILABLE";
-				
+			
 			case FLAG_DATA_LOADING:
 				return "FLAG_DATA_LOADING";
 			
@@ -208,66 +174,115 @@ public final class CountdownViewModel {
 		return flags & 0xf0;
 	}
 	
-	public static String getFormattedTime(ZonedDateTime time) {
-		return TIME_FORMATTER_HH_MM_AMPM.format(time);
+	/**
+	 * @return true if the countdown ends at fajr.
+	 */
+	public boolean isEvening() {
+		return timeline.isEvening();
+	}
+	
+	public String getNextPrayerName() {
+		return prayerNames[timeline.getNextIndex() % PrayerTimeline.EVENTS_PER_DAY];
+	}
+	
+	/**
+	 * Updates the countdown buffers of <em>ticker</em>. Does not allocate.
+	 *
+	 * @param now current time in epoch millis.
+	 * @param ticker buffers to update.
+	 */
+	public void tick(long now, CountdownTicker ticker) {
+		ticker.tick(toEpochSecond(now), toEpochSecond(timeline.getWindowStart()),
+				toEpochSecond(timeline.getWindowEnd()), toEpochSecond(timeline.getTime(timeline.getNextIndex())),
+				timeZone.getOffset(now) / 1000);
 	}
 	
-	public double getProgress(ZonedDateTime now) {
-		return (now.toEpochSecond() - countDownStartTime) / (double)(countDownEndTime - countDownStartTime);
+	/**
+	 * Moves the timeline past the events that happened. Does not allocate.
+	 * @param now current time in epoch millis.
+	 * @return true if the next prayer changed.
+	 */
+	public boolean advance(long now) {
+		return timeline != null && timeline.advance(now);
 	}
 	
-	public CountdownDisplay getCountdownDisplay(ZonedDateTime now) {
-		int seconds = (int)(countDownEndTime - now.toEpochSecond());
-		return new CountdownDisplay(seconds);
+	/**
+	 * @return true if the timeline runs low and the caller should send a refill event.
+	 */
+	public boolean requestRefill() {
+		return timeline != null && timeline.requestRefill();
 	}
 	
+	/**
+	 * @return true if the view model can't tell the next prayer and has to be recomputed.
+	 */
 	public boolean isExpired() {
-		return !TimeProvider.now().isBefore(expires);
+		return timeline == null || timeline.isEmpty();
 	}
 	
+	/**
+	 * Formats the timings of the day of the next prayer.
+	 * @return fajr, duhr, asr, magrib and isha as local time.
+	 */
 	public String[] getFormattedTimings() {
-		String[] timings = new String[5];
+		String[] timings = new String[PrayerTimeline.EVENTS_PER_DAY];
 		
-		for (int i = 0; i < 5; i++) {
-			timings[i] = formatTiming(prayerTimes[i]);
+		for (int i = 0; i < PrayerTimeline.EVENTS_PER_DAY; i++) {
+			timings[i] = getFormattedTiming(i);
 		}
 		
 		return timings;
 	}
 	
-	public long getTimeTillNextPrayer(ZonedDateTime now) {
-		ZonedDateTime nextPrayerTime;
-		
-		if (nextPrayerIndex == 5) {
-			nextPrayerTime = CountdownBloc.datetimeFromTiming(now, prayerTimes[5], 1);
-		}
-		else {
-			nextPrayerTime = CountdownBloc.datetimeFromTiming(now, prayerTimes[nextPrayerId]);
-		}
-		
-		return Duration.between(now, nextPrayerTime).getSeconds();
+	/**
+	 * Formats a timing of the day of the next prayer as local time.
+	 * @param event Event (<em>PrayerTimings.FAJR</em> to <em>ISHA</em>).
+	 * @return formatted time, or "-" if the event does not occur.
+	 */
+	public String getFormattedTiming(int event) {
+		return formatTime(timeline.getDayIndex(event));
 	}
 	
-	public String formatTiming(double timing) {
-		while (timing < 0) {
-			timing += 24;
-		}
-		while (timing >= 24) {
-			timing -= 24;
+	/**
+	 * Formats the next occurrence of an event as local time.
+	 * @param event Event (<em>PrayerTimings.FAJR</em> to <em>ISHA</em>).
+	 * @return formatted time, or "-" if the event does not occur within the timeline.
+	 */
+	public String getFormattedNextTime(int event) {
+		return formatTime(timeline.getNextIndex(event));
+	}
+	
+	/**
+	 * Formats a buffered event of the timeline as local time.
+	 * @param index Index of the event in the timeline.
+	 * @return formatted time, or "-" if the event does not occur.
+	 */
+	public String getFormattedTime(int index) {
+		return formatTime(index);
+	}
+	
+	/**
+	 * @param event Event (<em>PrayerTimings.FAJR</em> to <em>ISHA</em>).
+	 * @return time of the next occurrence of the event in epoch millis, or
+	 * <em>PrayerTimings.NO_TIME_MILLIS</em> if it does not occur within the timeline.
+	 */
+	public long getNextTime(int event) {
+		final int index = timeline.getNextIndex(event);
+		return index == -1 ? PrayerTimings.NO_TIME_MILLIS : timeline.getTime(index);
+	}
+	
+	private String formatTime(int index) {
+		if (index == -1 || timeline.getTime(index) == PrayerTimings.NO_TIME_MILLIS) {
+			return "-";
 		}
 		
-		LocalTime t = LocalTime.ofSecondOfDay((long)(timing * 3600));
+		long secondOfDay = Math.floorMod(toEpochSecond(timeline.getTime(index)) + timeline.getOffset(index), 86400L);
+		
+		LocalTime t = LocalTime.ofSecondOfDay(secondOfDay);
 		return TIME_FORMATTER_HH_MM_AMPM.format(t);
 	}
 	
-	public ZonedDateTime[] getDayTimings(ZonedDateTime now) {
-		ZonedDateTime[] times = new ZonedDateTime[6];
-		
-		for (int i = 0; i < 5; i++) {
-			times[i] = CountdownBloc.datetimeFromTiming(now, prayerTimes[i]);
-		}
-		times[5] = CountdownBloc.datetimeFromTiming(now, prayerTimes[5], 1);
-		
-		return times;
+	private static long toEpochSecond(long epochMillis) {
+		return Math.floorDiv(epochMillis, 1000);
 	}
 }
@@ -0,0 +1,281 @@
+package com.basilalasadi.fasters.model;
+
+import com.basilalasadi.fasters.math.PrayerTimings;
+
+import org.threeten.bp.Instant;
+import org.threeten.bp.zone.ZoneRules;
+
+import static com.basilalasadi.fasters.math.PrayerTimings.FAJR;
+import static com.basilalasadi.fasters.math.PrayerTimings.MAGRIB;
+import static com.basilalasadi.fasters.math.PrayerTimings.NO_TIME_MILLIS;
+
+
+/**
+ * <p>
+ * Ring buffer of the prayer times of the next few days, in epoch millis. Days are appended whole,
+ * five events each, and <em>advance()</em> moves the head past the events that have passed, so
+ * the countdown window and the next prayer are found in O(1) without recomputing anything.
+ * <em>requestRefill()</em> tells when the buffer runs low.
+ * </p><p>
+ * Events are addressed by absolute index: the event of index <em>i</em> is event
+ * <code>i % 5</code> (<em>PrayerTimings.FAJR</em> to <em>ISHA</em>) of day <code>i / 5</code>
+ * after the first day. Methods are synchronized, since the timeline is advanced by the tick
+ * timer, read by the UI and refilled by the bloc.
+ * </p>
+ */
+public final class PrayerTimeline {
+	public static final int EVENTS_PER_DAY = PrayerTimings.TIMINGS_COUNT;
+	
+	/**
+	 * Number of days the buffer holds, including the current day.
+	 */
+	public static final int CAPACITY_DAYS = 7;
+	
+	/**
+	 * A refill is due when fewer events than this many days' are left.
+	 */
+	public static final int LOW_WATER_DAYS = 3;
+	
+	private static final int CAPACITY = CAPACITY_DAYS * EVENTS_PER_DAY;
+	
+	private final long firstEpochDay;
+	private final long[] times = new long[CAPACITY];
+	private final int[] offsets = new int[CAPACITY];
+	
+	private int head = 0;
+	private int tail = 0;
+	private long windowStart;
+	private int windowEnd = -1;
+	private boolean refillPending = false;
+	
+	/**
+	 * @param firstEpochDay Date of the first day, as days since 1970-01-01.
+	 * @param previousMagrib Magrib of the day before the first day, in epoch millis. It starts
+	 *                       the first countdown window.
+	 */
+	public PrayerTimeline(long firstEpochDay, long previousMagrib) {
+		this.firstEpochDay = firstEpochDay;
+		this.windowStart = previousMagrib;
+	}
+	
+	/**
+	 * @return date of the next day to append, as days since 1970-01-01.
+	 */
+	public synchronized long getNextEpochDay() {
+		return firstEpochDay + tail / EVENTS_PER_DAY;
+	}
+	
+	/**
+	 * @return true if there is room for another day.
+	 */
+	public synchronized boolean canAppendDay() {
+		return tail + EVENTS_PER_DAY - getDayStart() <= CAPACITY;
+	}
+	
+	/**
+	 * Appends the day after the last one, and ends a pending refill.
+	 * @param dayTimes Fajr, duhr, asr, magrib and isha in epoch millis, or <em>NO_TIME_MILLIS</em>.
+	 * @param dayOffsets Offset of the local time from UTC at each event, in seconds.
+	 * @throws IllegalStateException if the buffer is full.
+	 */
+	public synchronized void appendDay(long[] dayTimes, int[] dayOffsets) {
+		if (!canAppendDay()) {
+			throw new IllegalStateException("Timeline is full.");
+		}
+		
+		for (int event = 0; event < EVENTS_PER_DAY; event++) {
+			times[(tail + event) % CAPACITY] = dayTimes[event];
+			offsets[(tail + event) % CAPACITY] = dayOffsets[event];
+		}
+		
+		tail += EVENTS_PER_DAY;
+		refillPending = false;
+		
+		if (windowEnd == -1) {
+			windowEnd = findWindowEnd();
+		}
+	}
+	
+	/**
+	 * Appends the day after the last one from its timings, and ends a pending refill.
+	 * @param timings Fajr, duhr, asr, magrib and isha in hours since 00:00 UTC of the day, or NaN.
+	 * @param zoneRules Rules of the local zone, for the offsets at the events.
+	 * @throws IllegalStateException if the buffer is full.
+	 */
+	public synchronized void appendDay(double[] timings, ZoneRules zoneRules) {
+		final long epochDay = getNextEpochDay();
+		final long[] dayTimes = new long[EVENTS_PER_DAY];
+		final int[] dayOffsets = new int[EVENTS_PER_DAY];
+		
+		// Events that don't occur get the offset at the start of the day, which is never shown.
+		final int dayOffset = zoneRules.getOffset(Instant.ofEpochSecond(epochDay * 86400)).getTotalSeconds();
+		
+		for (int i = 0; i < EVENTS_PER_DAY; i++) {
+			dayTimes[i] = PrayerTimings.toEpochMillis(epochDay, timings[i]);
+			dayOffsets[i] = dayTimes[i] == NO_TIME_MILLIS
+					? dayOffset
+					: zoneRules.getOffset(Instant.ofEpochMilli(dayTimes[i])).getTotalSeconds();
+		}
+		
+		appendDay(dayTimes, dayOffsets);
+	}
+	
+	/**
+	 * Moves past the events that happened at or before <em>now</em>. Nothing is allocated.
+	 * @param now Current time in epoch millis.
+	 * @return true if the next prayer changed.
+	 */
+	public synchronized boolean advance(long now) {
+		final int start = head;
+		
+		// Events that don't occur have the smallest time, so they are passed too.
+		while (head < tail && times[head % CAPACITY] <= now) {
+			final int event = head % EVENTS_PER_DAY;
+			final long time = times[head % CAPACITY];
+			
+			if ((event == FAJR || event == MAGRIB) && time != NO_TIME_MILLIS) {
+				windowStart = time;
+			}
+			
+			head++;
+		}
+		
+		if (head != start) {
+			windowEnd = findWindowEnd();
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return true if no event is left, so the timeline can't tell the next prayer.
+	 */
+	public synchronized boolean isEmpty() {
+		return head >= tail || windowEnd == -1;
+	}
+	
+	/**
+	 * Starts a refill if the buffer runs low and none is pending.
+	 * @return true if the caller should refill the timeline.
+	 */
+	public synchronized boolean requestRefill() {
+		if (refillPending || tail - head >= LOW_WATER_DAYS * EVENTS_PER_DAY) {
+			return false;
+		}
+		
+		refillPending = true;
+		return true;
+	}
+	
+	/**
+	 * Ends a pending refill without appending, so that it can be requested again.
+	 */
+	public synchronized void cancelRefill() {
+		refillPending = false;
+	}
+	
+	/**
+	 * @return index of the next event.
+	 */
+	public synchronized int getNextIndex() {
+		return head;
+	}
+	
+	/**
+	 * @param event Event (<em>PrayerTimings.FAJR</em> to <em>ISHA</em>).
+	 * @return index of the next occurrence of the event, or -1 if it is past the buffer.
+	 */
+	public synchronized int getNextIndex(int event) {
+		final int index = head + Math.floorMod(event - head, EVENTS_PER_DAY);
+		return index < tail ? index : -1;
+	}
+	
+	/**
+	 * @param event Event (<em>PrayerTimings.FAJR</em> to <em>ISHA</em>).
+	 * @return index of the event on the day of the next event.
+	 */
+	public synchronized int getDayIndex(int event) {
+		return getDayStart() + event;
+	}
+	
+	/**
+	 * @return index after the last buffered event.
+	 */
+	public synchronized int getEndIndex() {
+		return tail;
+	}
+	
+	/**
+	 * @param index Index of an event.
+	 * @return local date of the event, as days since 1970-01-01.
+	 */
+	public long getEpochDay(int index) {
+		return firstEpochDay + index / EVENTS_PER_DAY;
+	}
+	
+	/**
+	 * @param index Index of a buffered event.
+	 * @return time of the event in epoch millis, or <em>NO_TIME_MILLIS</em>.
+	 */
+	public synchronized long getTime(int index) {
+		checkIndex(index);
+		return times[index % CAPACITY];
+	}
+	
+	/**
+	 * @param index Index of a buffered event.
+	 * @return offset of the local time from UTC at the event, in seconds.
+	 */
+	public synchronized int getOffset(int index) {
+		checkIndex(index);
+		return offsets[index % CAPACITY];
+	}
+	
+	/**
+	 * @return start of the countdown window (the last fajr or magrib) in epoch millis.
+	 */
+	public synchronized long getWindowStart() {
+		return windowStart;
+	}
+	
+	/**
+	 * @return end of the countdown window (the next fajr or magrib) in epoch millis, or
+	 * <em>NO_TIME_MILLIS</em> if it is past the buffer.
+	 */
+	public synchronized long getWindowEnd() {
+		return windowEnd == -1 ? NO_TIME_MILLIS : times[windowEnd % CAPACITY];
+	}
+	
+	/**
+	 * @return true if the countdown window ends at fajr.
+	 */
+	public synchronized boolean isEvening() {
+		return windowEnd != -1 && windowEnd % EVENTS_PER_DAY == FAJR;
+	}
+	
+	private int getDayStart() {
+		return head - head % EVENTS_PER_DAY;
+	}
+	
+	/**
+	 * @return index of the next fajr or magrib that occurs, or -1 if it is past the buffer.
+	 */
+	private int findWindowEnd() {
+		for (int i = head; i < tail; i++) {
+			final int event = i % EVENTS_PER_DAY;
+			
+			if ((event == FAJR || event == MAGRIB) && times[i % CAPACITY] != NO_TIME_MILLIS) {
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private void checkIndex(int index) {
+		if (index < getDayStart() || index >= tail) {
+			throw new IndexOutOfBoundsException("Event " + index + " is not buffered.");
+		}
+	}
+}
@@ -9,6 +9,10 @@ import static com.basilalasadi.fasters.logic.ReminderConstants.*;
 public class ReminderIntent extends Intent {
 	public static final String EXTRA_REMINDER_INDEX = "reminder";
 	public static final String EXTRA_STRING = "string";
+	public static final String EXTRA_SCHEDULED_TIME = "scheduled_time";
+	public static final String EXTRA_REQUEST_CODE = "request_code";
+	public static final String EXTRA_TITLE = "title";
+	public static final String EXTRA_MESSAGE = "message";
 	public static final String ACTION_SEND_NOTIFICATION = "com.basilalasadi.fasters.action.SEND_NOTIFICATION";
 	
 	/**
@@ -31,10 +35,39 @@ public class ReminderIntent extends Intent {
 		super.putExtra(EXTRA_STRING, extraString);
 	}
 	
+	/**
+	 * Creates an explicit intent that sends a reminder notification to the user, from an alarm.
+	 *
+	 * @param context Current context.
+	 * @param reminderIndex One of reminder indexes in ReminderConstants class.
+	 * @param extraString The string extra.
+	 * @param scheduledTime Time the alarm is set for in epoch millis, to log how late it fires.
+	 * @param requestCode Request code of the alarm's pending intent, to log which alarm fired.
+	 */
+	public ReminderIntent(Context context, int reminderIndex, String extraString, long scheduledTime, int requestCode) {
+		this(context, reminderIndex, extraString);
+		super.putExtra(EXTRA_SCHEDULED_TIME, scheduledTime);
+		super.putExtra(EXTRA_REQUEST_CODE, requestCode);
+	}
+	
 	public ReminderIntent(Intent intent) {
 		super(intent);
 	}
 	
+	/**
+	 * Adds the notification content, rendered when the alarm is armed, so the publisher doesn't
+	 * have to.
+	 *
+	 * @param title Notification title.
+	 * @param message Notification message.
+	 * @return this intent.
+	 */
+	public ReminderIntent putContent(String title, String message) {
+		super.putExtra(EXTRA_TITLE, title);
+		super.putExtra(EXTRA_MESSAGE, message);
+		return this;
+	}
+	
 	public int getReminderIndex() {
 		return super.getIntExtra(EXTRA_REMINDER_INDEX, -1);
 	}
@@ -43,6 +76,34 @@ public class ReminderIntent extends Intent {
 		return super.getStringExtra(EXTRA_STRING);
 	}
 	
+	/**
+	 * @return notification title, or null if the content was not rendered.
+	 */
+	public String getTitle() {
+		return super.getStringExtra(EXTRA_TITLE);
+	}
+	
+	/**
+	 * @return notification message, or null if the content was not rendered.
+	 */
+	public String getMessage() {
+		return super.getStringExtra(EXTRA_MESSAGE);
+	}
+	
+	/**
+	 * @return time the alarm was set for in epoch millis, or <em>WakeupLog.NO_TIME</em>.
+	 */
+	public long getScheduledTime() {
+		return super.getLongExtra(EXTRA_SCHEDULED_TIME, WakeupLog.NO_TIME);
+	}
+	
+	/**
+	 * @return request code of the alarm's pending intent, or -1 if not sent by an alarm.
+	 */
+	public int getRequestCode() {
+		return super.getIntExtra(EXTRA_REQUEST_CODE, -1);
+	}
+	
 	@NonNull
 	@Override
 	public String toString() {
@@ -8,13 +8,16 @@ import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationCompat;
 
+import com.basilalasadi.fasters.BuildConfig;
 import com.basilalasadi.fasters.R;
+import com.basilalasadi.fasters.executors.AppExecutors;
 import com.basilalasadi.fasters.logic.settings.SettingsManager;
 import com.basilalasadi.fasters.util.TimeProvider;
 import com.basilalasadi.fasters.view.MainActivity;
@@ -35,61 +38,107 @@ public class ReminderPublisher extends BroadcastReceiver {
 	public static final String CHANNEL_BREAKFAST_REMINDER = "BreakfastReminder";
 	
 	
+	/**
+	 * Version of the app the channels were created by, in the reminders preferences.
+	 */
+	private static final String PREFS_KEY_CHANNELS_VERSION = "channels_version";
+	
+	private static volatile boolean channelsCreated = false;
+	
+	
+	/**
+	 * Only hands the broadcast to a background thread, so the main thread is not held up; the
+	 * notification is posted there.
+	 */
 	@Override
 	public void onReceive(Context context, Intent intent) {
-		Log.d(TAG, "Recieved " + intent + ".");
+		final long receivedNanos = System.nanoTime();
+		final long receivedTime = System.currentTimeMillis();
 		
 		if (!Objects.equals(intent.getAction(), ReminderIntent.ACTION_SEND_NOTIFICATION)) {
 			Log.d(TAG, "Not send notificaion intent.");
 			return;
 		}
 		
-		ReminderIntent reminderIntent = new ReminderIntent(intent);
+		final Context appContext = context.getApplicationContext();
+		final ReminderIntent reminderIntent = new ReminderIntent(intent);
+		final PendingResult pendingResult = goAsync();
+		final int mainThreadMicros = (int) ((System.nanoTime() - receivedNanos) / 1000);
 		
-		Log.d(TAG, reminderIntent.toString());
-		
-		SettingsManager settingsManager = SettingsManager.getInstance(context);
-		
-		if (!settingsManager.areNotificationsEnabled(context) ||
-				!settingsManager.isReminderEnabled(context, reminderIntent.getReminderIndex())) {
-			return;
-		}
-		
-		NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-		createChannels(context, manager);
-		
-		int dayOfYear = TimeProvider.now().getDayOfYear();
+		AppExecutors.ioExecutor.execute(() -> {
+			try {
+				publish(appContext, reminderIntent, receivedTime, mainThreadMicros);
+			}
+			catch (RuntimeException e) {
+				Log.e(TAG, "Could not publish reminder.", e);
+			}
+			finally {
+				pendingResult.finish();
+			}
+		});
+	}
+	
+	/**
+	 * Renders the notification of a reminder.
+	 * @param context The current context.
+	 * @param reminderIndex One of reminder indexes in ReminderConstants class.
+	 * @param extraString The string extra, see <em>ReminderIntent</em>.
+	 * @param dayOfYear Day of the year the reminder fires on, which picks the prefast meal message.
+	 * @return title and message, or null if the reminder index is invalid.
+	 */
+	public static String[] renderContent(Context context, int reminderIndex, String extraString, int dayOfYear) {
 		int randInt = Math.abs((new Random(dayOfYear)).nextInt());
 		
-		String title;
-		String message;
-		
-		switch (reminderIntent.getReminderIndex()) {
+		switch (reminderIndex) {
 			case REMINDER_PREFAST_MEAL:
-				title = context.getString(R.string.prefast_meal_reminder_title);
 				String[] messages = context.getResources().getStringArray(R.array.prefast_meal_reminer_detail_messages);
-				message = messages[randInt % messages.length];
-				break;
-				
+				return new String[]{context.getString(R.string.prefast_meal_reminder_title), messages[randInt % messages.length]};
+			
 			case REMINDER_WATER:
-				title = context.getString(R.string.water_reminder_title);
-				message = context.getString(R.string.fasting_begins_at_template, reminderIntent.getExtraString());
-				break;
-				
+				return new String[]{context.getString(R.string.water_reminder_title),
+						context.getString(R.string.fasting_begins_at_template, extraString)};
+			
 			case REMINDER_PREPARE_BREAKFAST:
-				title = context.getString(R.string.prepare_breakfast_meal_reminder_title);
-				message = context.getString(R.string.breakfast_at_template, reminderIntent.getExtraString());
-				break;
-				
+				return new String[]{context.getString(R.string.prepare_breakfast_meal_reminder_title),
+						context.getString(R.string.breakfast_at_template, extraString)};
+			
 			case REMINDER_BREAKFAST_CLOSE:
-				title = context.getString(R.string.breakfast_reminder_title);
-				message = context.getString(R.string.breakfast_at_template, reminderIntent.getExtraString());
-				break;
-				
+				return new String[]{context.getString(R.string.breakfast_reminder_title),
+						context.getString(R.string.breakfast_at_template, extraString)};
+			
 			default:
-				return;
+				return null;
+		}
+	}
+	
+	private static void publish(Context context, ReminderIntent reminderIntent, long receivedTime, int mainThreadMicros) {
+		Log.d(TAG, "Recieved " + reminderIntent + ".");
+		
+		final int reminderIndex = reminderIntent.getReminderIndex();
+		final WakeupLog wakeupLog = WakeupLog.getInstance(context);
+		
+		// Logged by request code, like the arming and cancelling of the alarm.
+		wakeupLog.log(WakeupLog.TYPE_ALARM_FIRED, reminderIntent.getScheduledTime(), reminderIntent.getRequestCode());
+		
+		if (!SettingsManager.getInstance(context).getSnapshot(context).isReminderEnabled(reminderIndex)) {
+			return;
+		}
+		
+		int dayOfYear = TimeProvider.now().getDayOfYear();
+		
+		String title = reminderIntent.getTitle();
+		String message = reminderIntent.getMessage();
+		
+		// Alarms armed before content was rendered, and test broadcasts.
+		if (title == null || message == null) {
+			String[] content = renderContent(context, reminderIndex, reminderIntent.getExtraString(), dayOfYear);
+			title = content[0];
+			message = content[1];
 		}
 		
+		NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+		ensureChannels(context, manager);
+		
 		NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_PREFAST_MEAL_REMINDER);
 		
 		builder.setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
@@ -109,7 +158,28 @@ public class ReminderPublisher extends BroadcastReceiver {
 		
 		Log.d(TAG, "Sending " + notification + "..");
 		
-		manager.notify(dayOfYear << 16 | (reminderIntent.getReminderIndex() & 0xff), notification);
+		manager.notify(dayOfYear << 16 | (reminderIndex & 0xff), notification);
+		
+		wakeupLog.log(WakeupLog.TYPE_NOTIFIED, receivedTime, mainThreadMicros);
+	}
+	
+	/**
+	 * Creates the channels once per version of the app; they persist, and recreating them on each
+	 * reminder only costs binder calls.
+	 */
+	private static void ensureChannels(Context context, NotificationManager manager) {
+		if (channelsCreated) {
+			return;
+		}
+		
+		SharedPreferences prefs = context.getSharedPreferences(RemindersService.PREFS_NAME, Context.MODE_PRIVATE);
+		
+		if (prefs.getInt(PREFS_KEY_CHANNELS_VERSION, -1) != BuildConfig.VERSION_CODE) {
+			createChannels(context, manager);
+			prefs.edit().putInt(PREFS_KEY_CHANNELS_VERSION, BuildConfig.VERSION_CODE).apply();
+		}
+		
+		channelsCreated = true;
 	}
 	
 	private static void createChannels(Context context, NotificationManager manager) {
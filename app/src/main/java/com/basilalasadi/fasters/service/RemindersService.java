@@ -7,16 +7,26 @@ import android.app.job.JobParameters;
 import android.app.job.JobScheduler;
 import android.app.job.JobService;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Build;
 import android.util.Log;
 
 import com.basilalasadi.fasters.bloc.CountdownBloc;
+import com.basilalasadi.fasters.bloc.StateStream;
+import com.basilalasadi.fasters.executors.AppExecutors;
+import com.basilalasadi.fasters.logic.ReminderPlanner;
+import com.basilalasadi.fasters.logic.settings.SettingsManager;
 import com.basilalasadi.fasters.model.CountdownViewModel;
 import com.basilalasadi.fasters.util.TimeProvider;
 
-import org.threeten.bp.Duration;
-import org.threeten.bp.ZonedDateTime;
+import org.threeten.bp.Instant;
+import org.threeten.bp.ZoneId;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 import static com.basilalasadi.fasters.logic.ReminderConstants.*;
 
@@ -24,24 +34,47 @@ import static com.basilalasadi.fasters.logic.ReminderConstants.*;
 public class RemindersService extends JobService implements CountdownBloc.StateStreamConsumer {
 	public static final String TAG = "RemindersService";
 	
-	public final CountdownBloc bloc  = new CountdownBloc(this);
 	public static final int JOB_ID = 1;
 	
+	/**
+	 * A replan may be deferred by this much past its time; the plan still covers the reminders.
+	 */
+	public static final long REPLAN_DEADLINE_MILLIS = 6 * 3600 * 1000;
+	
+	static final String PREFS_NAME = "reminders";
+	private static final String PREFS_KEY_ARMED = "armed";
+	private static final int LEGACY_REQUEST_CODE = 1;
+	
 	private JobScheduler jobScheduler;
 	private AlarmManager alarmManager;
 	private JobParameters jobParameters = null;
+	private StateStream<CountdownViewModel>.Subscription subscription = null;
 	
-	@Override
-	public int onStartCommand(Intent intent, int flags, int startId) {
-		ComponentName serviceComponent = new ComponentName(this, RemindersService.class);
-		
-		JobInfo.Builder builder = new JobInfo.Builder(JOB_ID, serviceComponent);
-		builder.setOverrideDeadline(System.currentTimeMillis() + 60 * 1000);
+	/**
+	 * Set while the load this job sent has not started, so a replayed error is not taken for its
+	 * result.
+	 */
+	private volatile boolean awaitingLoad = false;
+	
+	/**
+	 * Schedules the job to run soon, replacing any scheduled run. The job reschedules itself while
+	 * reminders are enabled, so this is called on start and when a reminder setting changes.
+	 * @param context The current context.
+	 * @param delayMillis Maximum delay of the run.
+	 */
+	public static void schedule(Context context, long delayMillis) {
+		JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
 		
-		JobInfo jobInfo = builder.build();
+		JobInfo.Builder builder = new JobInfo.Builder(JOB_ID, new ComponentName(context, RemindersService.class));
+		builder.setOverrideDeadline(delayMillis);
 		
 		jobScheduler.cancel(JOB_ID);
-		jobScheduler.schedule(jobInfo);
+		jobScheduler.schedule(builder.build());
+	}
+	
+	@Override
+	public int onStartCommand(Intent intent, int flags, int startId) {
+		schedule(this, 60 * 1000);
 		
 		Log.d(TAG, "Starting reminders service within 60 seconds..");
 		
@@ -57,7 +90,32 @@ public class RemindersService extends JobService implements CountdownBloc.StateS
 		alarmManager = getSystemService(AlarmManager.class);
 		jobParameters = params;
 		
-		bloc.addEvent(new CountdownBloc.LoadTimingsEvent(this));
+		WakeupLog.getInstance(this).log(WakeupLog.TYPE_JOB_STARTED, WakeupLog.NO_TIME, params.getJobId());
+		
+		if (SettingsManager.getInstance(this).getEnabledReminders(this) == 0) {
+			// Nothing to plan; a reminder setting change schedules the job again.
+			long now = TimeProvider.currentTimeMillis();
+			armReminders(new ReminderPlanner.Plan(new ArrayList<>(), ReminderPlanner.NO_UPDATE), null, now);
+			
+			Log.d(TAG, "No reminder enabled; not rescheduling.");
+			return false;
+		}
+		
+		CountdownBloc bloc = CountdownBloc.getInstance();
+		CountdownViewModel current = bloc.getStateStream().getState();
+		
+		// The activity's countdown is reused if it is still valid.
+		if (current != null) {
+			current.advance(TimeProvider.currentTimeMillis());
+		}
+		
+		awaitingLoad = current == null || current.isExpired();
+		
+		if (awaitingLoad) {
+			bloc.addEvent(new CountdownBloc.LoadTimingsEvent(this));
+		}
+		
+		subscription = bloc.getStateStream().subscribe(this, AppExecutors.ioExecutor);
 		
 		return true;
 	}
@@ -65,6 +123,7 @@ public class RemindersService extends JobService implements CountdownBloc.StateS
 	@Override
 	public boolean onStopJob(JobParameters params) {
 		Log.d(TAG, "Job stopped.");
+		cancelSubscription();
 		return true;
 	}
 	
@@ -77,103 +136,157 @@ public class RemindersService extends JobService implements CountdownBloc.StateS
 	public void onState(CountdownViewModel viewModel) {
 		Log.d(TAG, "New state (" + viewModel.statusString() + ")");
 		
-		if (viewModel.isError()) {
+		if (viewModel.isDataLoading()) {
+			awaitingLoad = false;
+		}
+		else if (viewModel.isError() && !awaitingLoad) {
 			String errorMessage;
 			
 			switch (viewModel.getError()) {
 				case CountdownViewModel.ERROR_INVALID_SETTINGS:
 					errorMessage = "Error starting reminders service; invalid settings.";
 					break;
-					
+				
 				case CountdownViewModel.ERROR_NO_LOCATION:
 					errorMessage = "Error starting reminders service; location not set.";
 					break;
-					
+				
 				default:
 					errorMessage = "Error starting reminders service.";
 			}
 			
 			Log.e(TAG, errorMessage);
+			cancelSubscription();
 			jobFinished(jobParameters, false);
 		}
 		else if (viewModel.isDataAvailable()) {
-			ZonedDateTime now = TimeProvider.now();
-			
-			ZonedDateTime[] dayTimings = viewModel.getDayTimings(now);
+			long now = TimeProvider.currentTimeMillis();
+			viewModel.advance(now);
 			
-			ZonedDateTime fajrTime = CountdownBloc.datetimeFromTiming(now, viewModel.prayerTimes[0]);
-			ZonedDateTime magribTime = CountdownBloc.datetimeFromTiming(now, viewModel.prayerTimes[3]);
+			if (viewModel.isExpired()) {
+				awaitingLoad = true;
+				CountdownBloc.getInstance().addEvent(new CountdownBloc.LoadTimingsEvent(this));
+				return;
+			}
 			
-			long secondsToFajr = Duration.between(now, fajrTime).getSeconds();
-			long secondsToMagrib = Duration.between(now, magribTime).getSeconds();
-			ZonedDateTime nextUpdate;
 			
-			if (secondsToFajr >= 3600) {
-				long delay = secondsToFajr - 3600;
-				scheduleReminder(now.plusSeconds(delay), REMINDER_PREFAST_MEAL, null);
-				nextUpdate = fajrTime;
-			}
-			else if (secondsToFajr >= 15 * 60) {
-				long delay = secondsToFajr - 15 * 60;
-				scheduleReminder(now.plusSeconds(delay), REMINDER_WATER, CountdownViewModel.getFormattedTime(dayTimings[0]));
-				nextUpdate = fajrTime;
-			}
-			else if (secondsToMagrib >= 2 * 3600) {
-				long delay = secondsToMagrib - 2 * 3600;
-				scheduleReminder(now.plusSeconds(delay), REMINDER_PREPARE_BREAKFAST, CountdownViewModel.getFormattedTime(dayTimings[3]));
-				nextUpdate = magribTime;
-			}
-			else if (secondsToMagrib >= 15 * 60) {
-				long delay = secondsToMagrib - 15 * 60;
-				scheduleReminder(now.plusSeconds(delay), REMINDER_BREAKFAST_CLOSE, CountdownViewModel.getFormattedTime(dayTimings[3]));
-				nextUpdate = magribTime;
-			}
-			else {
-				nextUpdate = CountdownBloc.datetimeFromTiming(now, 0.001, 1);
+			if (viewModel.requestRefill()) {
+				CountdownBloc.getInstance().addEvent(new CountdownBloc.RefillTimelineEvent(this, viewModel));
 			}
 			
+			int enabledReminders = SettingsManager.getInstance(this).getEnabledReminders(this);
+			ReminderPlanner.Plan plan = ReminderPlanner.plan(viewModel.timeline, now, enabledReminders);
+			
+			armReminders(plan, viewModel, now);
+			
+			long nextUpdate = plan.nextUpdate;
+			
+			if (nextUpdate == ReminderPlanner.NO_UPDATE) {
+				jobScheduler.cancel(JOB_ID);
+				Log.d(TAG, "No reminder enabled; not rescheduling.");
+				
+				cancelSubscription();
+				jobFinished(jobParameters, false);
+				return;
+			}
 			
 			ComponentName service = new ComponentName(this, RemindersService.class);
 			
-			long executionDelay = getMillisTo(now, nextUpdate);
+			long executionDelay = nextUpdate - now;
 			
 			JobInfo.Builder builder = new JobInfo.Builder(JOB_ID, service);
 			builder.setMinimumLatency(Math.max(1, executionDelay));
-			builder.setOverrideDeadline(15 * 60 * 1000);
+			builder.setOverrideDeadline(Math.max(1, executionDelay) + REPLAN_DEADLINE_MILLIS);
 			
 			JobInfo jobInfo = builder.build();
 			
 			jobScheduler.cancel(JOB_ID);
 			jobScheduler.schedule(jobInfo);
 			
+			WakeupLog.getInstance(this).log(WakeupLog.TYPE_JOB_SCHEDULED, now + Math.max(1, executionDelay), JOB_ID);
+			
 			Log.d(TAG, String.format("Scheduled reminder service to run after %d.", executionDelay));
 			
+			cancelSubscription();
 			jobFinished(jobParameters, false);
 		}
 	}
 	
-	private void scheduleReminder(ZonedDateTime time, int reminderIndex, String extra) {
-		Log.d(TAG, "Scheduling reminder (" + reminderIndex + ")..");
-
+	private synchronized void cancelSubscription() {
+		if (subscription != null) {
+			subscription.cancel();
+			subscription = null;
+		}
+	}
+	
+	/**
+	 * Arms the planned reminders that are not armed yet, and cancels the armed ones that are no longer
+	 * planned, each with its own request code. The armed reminders are kept in private preferences,
+	 * since alarms can't be read back from the alarm manager.
+	 */
+	private void armReminders(ReminderPlanner.Plan plan, CountdownViewModel viewModel, long now) {
 		if (Build.VERSION.SDK_INT >= 31 && !alarmManager.canScheduleExactAlarms()) {
 			Log.d(TAG, "Need permission to schedule exact alarms.");
 			return;
 		}
-
-		ReminderIntent intent = new ReminderIntent(this, reminderIndex, extra);
-		PendingIntent pendingIntent = PendingIntent.getBroadcast(this, 1, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
 		
-		alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, getEpochMillis(time), pendingIntent);
+		SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+		Set<String> armedSet = prefs.getStringSet(PREFS_KEY_ARMED, null);
+		ArrayList<ReminderPlanner.Reminder> armed = new ArrayList<>();
 		
-		Log.d(TAG, String.format("Scheduled %s for %s.", intent, time));
-	}
-	
-	private static long getEpochMillis(ZonedDateTime dt) {
-		return dt.toEpochSecond() * 1000;
+		if (armedSet == null) {
+			// Before reminders were planned, the single next one was armed with this request code.
+			alarmManager.cancel(makePendingIntent(LEGACY_REQUEST_CODE, REMINDER_PREFAST_MEAL, null, WakeupLog.NO_TIME));
+		}
+		else {
+			for (String encoded : armedSet) {
+				ReminderPlanner.Reminder reminder = ReminderPlanner.Reminder.decode(encoded);
+				
+				if (reminder != null) {
+					armed.add(reminder);
+				}
+			}
+		}
+		
+		ReminderPlanner.Diff diff = ReminderPlanner.diff(armed, plan.reminders, now);
+		
+		WakeupLog wakeupLog = WakeupLog.getInstance(this);
+		ZoneId zone = TimeProvider.now().getZone();
+		
+		for (ReminderPlanner.Reminder reminder : diff.toCancel) {
+			alarmManager.cancel(makePendingIntent(reminder.requestCode, reminder.reminderIndex, null, reminder.time));
+			wakeupLog.log(WakeupLog.TYPE_ALARM_CANCELLED, reminder.time, reminder.requestCode);
+		}
+		
+		for (ReminderPlanner.Reminder reminder : diff.toArm) {
+			// The prefast meal reminder has no extra.
+			String extra = reminder.reminderIndex == REMINDER_PREFAST_MEAL ? null : viewModel.getFormattedTime(reminder.eventIndex);
+			int dayOfYear = Instant.ofEpochMilli(reminder.time).atZone(zone).getDayOfYear();
+			String[] content = ReminderPublisher.renderContent(this, reminder.reminderIndex, extra, dayOfYear);
+			
+			ReminderIntent intent = new ReminderIntent(this, reminder.reminderIndex, extra, reminder.time, reminder.requestCode)
+					.putContent(content[0], content[1]);
+			PendingIntent pendingIntent = PendingIntent.getBroadcast(this, reminder.requestCode, intent,
+					PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+			
+			alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, reminder.time, pendingIntent);
+			wakeupLog.log(WakeupLog.TYPE_ALARM_ARMED, reminder.time, reminder.requestCode);
+		}
+		
+		Set<String> planned = new HashSet<>();
+		
+		for (ReminderPlanner.Reminder reminder : plan.reminders) {
+			planned.add(reminder.encode());
+		}
+		
+		prefs.edit().putStringSet(PREFS_KEY_ARMED, planned).apply();
+		
+		Log.d(TAG, String.format("Planned %d reminders; armed %d, cancelled %d.", plan.reminders.size(),
+				diff.toArm.size(), diff.toCancel.size()));
 	}
 	
-	private static long getMillisTo(ZonedDateTime now, ZonedDateTime target) {
-		Duration dt = Duration.between(now, target);
-		return dt.getSeconds() * 1000 + dt.getNano() / 1000;
+	private PendingIntent makePendingIntent(int requestCode, int reminderIndex, String extra, long time) {
+		ReminderIntent intent = new ReminderIntent(this, reminderIndex, extra, time, requestCode);
+		return PendingIntent.getBroadcast(this, requestCode, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
 	}
 }
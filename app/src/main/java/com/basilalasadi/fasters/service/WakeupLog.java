@@ -0,0 +1,408 @@
+package com.basilalasadi.fasters.service;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.basilalasadi.fasters.executors.AppExecutors;
+
+import org.threeten.bp.Instant;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.ZoneId;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Singleton log of the wakeups of the reminders: job starts and schedules, and alarm arms, cancels
+ * and firings, and notifications, with the time each was meant for. It tells how often the app wakes the device, and
+ * how late jobs and alarms run, see <em>dump()</em>.
+ *
+ * The log is a ring buffer of fixed-size records in a file in the files dir, so it survives
+ * process death and never grows; each record is one small write. Lifetime counters and the time of
+ * the last event of each type are kept in the header. Times are real wall clock times, not
+ * <em>TimeProvider</em>'s.
+ *
+ * <em>log()</em> only queues the event, with its time, so it can be called on the main thread; the
+ * queued events are written together on the io executor. <em>dump()</em> and <em>clear()</em> do
+ * file I/O, and must be called off the main thread.
+ *
+ * Format (big endian):
+ * <pre>
+ *   int     magic ("FWKL")
+ *   int     version
+ *   int     capacity (records)
+ *   long    records written
+ *   long[TYPE_COUNT]  events of each type
+ *   long[TYPE_COUNT]  time of the last event of each type
+ *   records[capacity]:
+ *     long  time
+ *     long  time the event was meant for, or NO_TIME
+ *     int   type
+ *     int   argument (job id for jobs, request code for alarms, or main thread time in micros
+ *           for notifications)
+ * </pre>
+ */
+public final class WakeupLog {
+	public static final String TAG = "WakeupLog";
+	
+	public static final int TYPE_JOB_SCHEDULED = 0;
+	public static final int TYPE_JOB_STARTED = 1;
+	public static final int TYPE_ALARM_ARMED = 2;
+	public static final int TYPE_ALARM_CANCELLED = 3;
+	public static final int TYPE_ALARM_FIRED = 4;
+	public static final int TYPE_NOTIFIED = 5;
+	public static final int TYPE_COUNT = 6;
+	
+	public static final long NO_TIME = Long.MIN_VALUE;
+	
+	/**
+	 * Number of records kept, about two months of a daily job and its alarms.
+	 */
+	public static final int CAPACITY = 1024;
+	
+	private static final String FILE_NAME = "wakeups.log";
+	private static final int MAGIC = 0x46574b4c;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 20 + TYPE_COUNT * 16;
+	private static final int RECORD_SIZE = 24;
+	
+	private static final String[] TYPE_NAMES = {
+			"jobs scheduled", "jobs started", "alarms armed", "alarms cancelled", "alarms fired", "notified"
+	};
+	
+	/**
+	 * Upper bounds of the latency buckets of <em>dump()</em>, in millis.
+	 */
+	private static final long[] BUCKET_BOUNDS = {
+			0, 10, 100, 1000, 10 * 1000, 60 * 1000, 10 * 60 * 1000, 3600 * 1000, Long.MAX_VALUE
+	};
+	private static final String[] BUCKET_NAMES = {
+			"early", "< 10 ms", "< 100 ms", "< 1 s", "< 10 s", "< 1 min", "< 10 min", "< 1 h", ">= 1 h"
+	};
+	
+	private static WakeupLog instance;
+	
+	private final File file;
+	private final long[] counts = new long[TYPE_COUNT];
+	private final long[] lastTimes = new long[TYPE_COUNT];
+	private long written = 0;
+	private boolean loaded = false;
+	
+	/**
+	 * Events logged but not written yet, as time, intended time, type and argument, guarded by
+	 * itself.
+	 */
+	private final ArrayList<long[]> pending = new ArrayList<>();
+	private boolean flushPosted = false;
+	
+	/**
+	 * Returns singleton instance of WakeupLog, or constructs it if not already constructed.
+	 * @param context The current context.
+	 * @return WakeupLog instance.
+	 */
+	public static synchronized WakeupLog getInstance(Context context) {
+		if (instance == null) {
+			instance = new WakeupLog(new File(context.getFilesDir(), FILE_NAME));
+		}
+		return instance;
+	}
+	
+	private WakeupLog(File file) {
+		this.file = file;
+		Arrays.fill(lastTimes, NO_TIME);
+	}
+	
+	/**
+	 * Logs an event at the current time. The event is written later, on the io executor.
+	 * @param type Type of the event (<em>TYPE_JOB_SCHEDULED</em> to <em>TYPE_ALARM_FIRED</em>).
+	 * @param intendedTime Time the event was meant for in epoch millis, or <em>NO_TIME</em>.
+	 * @param argument Job id for jobs, request code of the pending intent for alarms, or for
+	 *                 <em>TYPE_NOTIFIED</em> the time the broadcast held the main thread, in micros.
+	 */
+	public void log(int type, long intendedTime, int argument) {
+		final long now = System.currentTimeMillis();
+		
+		synchronized (pending) {
+			pending.add(new long[]{now, intendedTime, type, argument});
+			
+			if (flushPosted) {
+				return;
+			}
+			
+			flushPosted = true;
+		}
+		
+		AppExecutors.ioExecutor.execute(this::flush);
+	}
+	
+	/**
+	 * Writes the queued events, with one open of the file and one write of the counters.
+	 */
+	private synchronized void flush() {
+		final long[][] events;
+		
+		synchronized (pending) {
+			events = pending.toArray(new long[0][]);
+			pending.clear();
+			flushPosted = false;
+		}
+		
+		if (events.length == 0) {
+			return;
+		}
+		
+		ensureLoaded();
+		
+		for (long[] event : events) {
+			counts[(int) event[2]]++;
+			lastTimes[(int) event[2]] = event[0];
+		}
+		
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			if (written == 0) {
+				out.setLength(0);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(CAPACITY);
+			}
+			
+			for (long[] event : events) {
+				out.seek(HEADER_SIZE + (written % CAPACITY) * RECORD_SIZE);
+				out.writeLong(event[0]);
+				out.writeLong(event[1]);
+				out.writeInt((int) event[2]);
+				out.writeInt((int) event[3]);
+				
+				written++;
+			}
+			
+			writeCounters(out);
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Could not write log file.", e);
+		}
+	}
+	
+	/**
+	 * Removes all records and counters, including events not written yet.
+	 */
+	public synchronized void clear() {
+		synchronized (pending) {
+			pending.clear();
+		}
+		
+		written = 0;
+		Arrays.fill(counts, 0);
+		Arrays.fill(lastTimes, NO_TIME);
+		loaded = true;
+		
+		if (file.exists() && !file.delete()) {
+			Log.w(TAG, "Could not delete log file.");
+		}
+	}
+	
+	/**
+	 * Summarizes the log as text: lifetime counters, wakeups of each day in the buffer, and
+	 * histograms of how late jobs and alarms ran. Writes the queued events first.
+	 * @param zone Zone of the dates of the days.
+	 * @return the summary.
+	 */
+	public synchronized String dump(ZoneId zone) {
+		flush();
+		ensureLoaded();
+		
+		final StringBuilder buf = new StringBuilder();
+		
+		buf.append("Lifetime:\n");
+		
+		for (int type = 0; type < TYPE_COUNT; type++) {
+			buf.append(String.format("  %-17s %6d", TYPE_NAMES[type], counts[type]));
+			
+			if (lastTimes[type] != NO_TIME) {
+				buf.append(", last ").append(Instant.ofEpochMilli(lastTimes[type]).atZone(zone).toLocalDateTime());
+			}
+			
+			buf.append('\n');
+		}
+		
+		final TreeMap<LocalDate, int[]> days = new TreeMap<>();
+		final int[] jobLatencies = new int[BUCKET_NAMES.length];
+		final int[] alarmDrifts = new int[BUCKET_NAMES.length];
+		final int[] notifyLatencies = new int[BUCKET_NAMES.length];
+		final ArrayList<Long> drifts = new ArrayList<>();
+		final ArrayList<Long> mainThreadMicros = new ArrayList<>();
+		long scheduledJobTime = NO_TIME;
+		
+		for (long[] record : readRecords()) {
+			final long time = record[0];
+			final long intendedTime = record[1];
+			final int type = (int) record[2];
+			final int argument = (int) record[3];
+			
+			if (type < 0 || type >= TYPE_COUNT) {
+				continue;
+			}
+			
+			final LocalDate date = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+			int[] dayCounts = days.get(date);
+			
+			if (dayCounts == null) {
+				dayCounts = new int[TYPE_COUNT];
+				days.put(date, dayCounts);
+			}
+			
+			dayCounts[type]++;
+			
+			if (type == TYPE_JOB_SCHEDULED) {
+				scheduledJobTime = intendedTime;
+			}
+			else if (type == TYPE_JOB_STARTED && scheduledJobTime != NO_TIME) {
+				jobLatencies[getBucket(time - scheduledJobTime)]++;
+				scheduledJobTime = NO_TIME;
+			}
+			else if (type == TYPE_ALARM_FIRED && intendedTime != NO_TIME) {
+				alarmDrifts[getBucket(time - intendedTime)]++;
+				drifts.add(time - intendedTime);
+			}
+			else if (type == TYPE_NOTIFIED) {
+				notifyLatencies[getBucket(time - intendedTime)]++;
+				mainThreadMicros.add((long) argument);
+			}
+		}
+		
+		buf.append("\nPer day (jobs started, alarms armed, cancelled, fired):\n");
+		
+		for (Map.Entry<LocalDate, int[]> day : days.entrySet()) {
+			final int[] dayCounts = day.getValue();
+			
+			buf.append(String.format("  %s  %3d %3d %3d %3d\n", day.getKey(), dayCounts[TYPE_JOB_STARTED],
+					dayCounts[TYPE_ALARM_ARMED], dayCounts[TYPE_ALARM_CANCELLED], dayCounts[TYPE_ALARM_FIRED]));
+		}
+		
+		buf.append("\nJob start latency (started - scheduled):\n");
+		appendHistogram(buf, jobLatencies);
+		
+		buf.append("\nAlarm drift (fired - intended):\n");
+		appendHistogram(buf, alarmDrifts);
+		
+		appendMedianAndMax(buf, drifts, "ms");
+		
+		buf.append("\nBroadcast latency (notified - received):\n");
+		appendHistogram(buf, notifyLatencies);
+		
+		buf.append("\nMain thread time of the broadcast:\n");
+		appendMedianAndMax(buf, mainThreadMicros, "us");
+		
+		return buf.toString();
+	}
+	
+	private static void appendHistogram(StringBuilder buf, int[] buckets) {
+		for (int i = 0; i < buckets.length; i++) {
+			buf.append(String.format("  %-9s %5d\n", BUCKET_NAMES[i], buckets[i]));
+		}
+	}
+	
+	private static void appendMedianAndMax(StringBuilder buf, ArrayList<Long> values, String unit) {
+		if (values.isEmpty()) {
+			return;
+		}
+		
+		Long[] sorted = values.toArray(new Long[0]);
+		Arrays.sort(sorted);
+		
+		buf.append(String.format("  median %d %s, max %d %s\n", sorted[sorted.length / 2], unit, sorted[sorted.length - 1], unit));
+	}
+	
+	private static int getBucket(long latency) {
+		if (latency < 0) {
+			return 0;
+		}
+		
+		for (int i = 1; i < BUCKET_BOUNDS.length; i++) {
+			if (latency < BUCKET_BOUNDS[i]) {
+				return i;
+			}
+		}
+		
+		return BUCKET_BOUNDS.length - 1;
+	}
+	
+	/**
+	 * @return records in the buffer, oldest first, as time, intended time, type and argument.
+	 */
+	private ArrayList<long[]> readRecords() {
+		final ArrayList<long[]> records = new ArrayList<>();
+		
+		if (written == 0) {
+			return records;
+		}
+		
+		final long first = Math.max(0, written - CAPACITY);
+		
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			for (long i = first; i < written; i++) {
+				in.seek(HEADER_SIZE + (i % CAPACITY) * RECORD_SIZE);
+				records.add(new long[]{in.readLong(), in.readLong(), in.readInt(), in.readInt()});
+			}
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Could not read log file.", e);
+		}
+		
+		return records;
+	}
+	
+	private void writeCounters(RandomAccessFile out) throws IOException {
+		out.seek(12);
+		out.writeLong(written);
+		
+		for (long count : counts) {
+			out.writeLong(count);
+		}
+		for (long lastTime : lastTimes) {
+			out.writeLong(lastTime);
+		}
+	}
+	
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		
+		loaded = true;
+		
+		if (!file.isFile()) {
+			return;
+		}
+		
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			if (in.length() < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION
+					|| in.readInt() != CAPACITY) {
+				return;
+			}
+			
+			final long fileWritten = in.readLong();
+			
+			for (int type = 0; type < TYPE_COUNT; type++) {
+				counts[type] = in.readLong();
+			}
+			for (int type = 0; type < TYPE_COUNT; type++) {
+				lastTimes[type] = in.readLong();
+			}
+			
+			written = fileWritten;
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Could not read log file.", e);
+			written = 0;
+			Arrays.fill(counts, 0);
+			Arrays.fill(lastTimes, NO_TIME);
+		}
+	}
+}
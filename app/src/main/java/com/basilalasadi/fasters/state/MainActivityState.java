@@ -3,7 +3,6 @@ package com.basilalasadi.fasters.state;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.Message;
 import android.util.Log;
 
 import org.threeten.bp.ZonedDateTime;
@@ -11,17 +10,27 @@ import java.util.Date;
 import java.util.Timer;
 import java.util.TimerTask;
 
+import com.basilalasadi.fasters.FastersApplication;
 import com.basilalasadi.fasters.bloc.CountdownBloc;
 import com.basilalasadi.fasters.bloc.CountdownBloc.LoadTimingsEvent;
+import com.basilalasadi.fasters.bloc.CountdownBloc.RefillTimelineEvent;
 import com.basilalasadi.fasters.bloc.CountdownBloc.StateStreamConsumer;
 import com.basilalasadi.fasters.controller.MainActivityController;
+import com.basilalasadi.fasters.executors.AppExecutors;
 import com.basilalasadi.fasters.logic.settings.LocationSetListener;
 import com.basilalasadi.fasters.logic.settings.SettingsManager;
 import com.basilalasadi.fasters.model.CountdownViewModel;
+import com.basilalasadi.fasters.util.TimeProvider;
 import com.basilalasadi.fasters.view.MainActivity;
 
 
 public class MainActivityState extends ActivityState<MainActivity> implements StateStreamConsumer {
+	/**
+	 * How long the first start waits for the countdown computed at startup, to show it in the
+	 * first frame.
+	 */
+	private static final long FIRST_VIEW_MODEL_TIMEOUT_MS = 250;
+	
 	private static CountdownBloc bloc;
 	
 	private MainActivityController controller = null;
@@ -43,7 +52,8 @@ public class MainActivityState extends ActivityState<MainActivity> implements St
 		Log.d("MainActivityState", "activity creation.");
 		
 		if (bloc == null) {
-			bloc = new CountdownBloc(this);
+			bloc = CountdownBloc.getInstance();
+			bloc.getStateStream().subscribe(this, AppExecutors.mainExecutor);
 		}
 	}
 	
@@ -56,7 +66,25 @@ public class MainActivityState extends ActivityState<MainActivity> implements St
 	protected void onStartActivity() {
 		Log.d("MainActivityState", "activity start.");
 		
-		if (viewModel == null || !viewModel.isDataAvailable()) {
+		if (viewModel == null) {
+			FastersApplication application = (FastersApplication) controller.getCurrentContext().getApplicationContext();
+			CountdownViewModel firstViewModel = application.takeFirstViewModel(FIRST_VIEW_MODEL_TIMEOUT_MS);
+			
+			if (firstViewModel != null) {
+				firstViewModel.advance(TimeProvider.currentTimeMillis());
+			}
+			
+			if (firstViewModel != null && !firstViewModel.isExpired()) {
+				onState(firstViewModel);
+				return;
+			}
+		}
+		
+		if (viewModel != null) {
+			viewModel.advance(TimeProvider.currentTimeMillis());
+		}
+		
+		if (viewModel == null || viewModel.isExpired()) {
 			sendLoadTimingsEvent();
 		}
 		else {
@@ -90,6 +118,10 @@ public class MainActivityState extends ActivityState<MainActivity> implements St
 		bloc.addEvent(new LoadTimingsEvent(controller.getCurrentContext()));
 	}
 	
+	void sendRefillTimelineEvent(CountdownViewModel viewModel) {
+		bloc.addEvent(new RefillTimelineEvent(controller.getCurrentContext(), viewModel));
+	}
+	
 	public void onLocationSet() {
 		sendLoadTimingsEvent();
 	}
@@ -132,15 +164,11 @@ public class MainActivityState extends ActivityState<MainActivity> implements St
 	}
 	
 	private void sendUpdateView() {
-		Message msg = new Message();
-		msg.what = MainActivityController.MSG_UPDATE_VIEW;
-		controller.getHandler().sendMessage(msg);
+		controller.getHandler().sendEmptyMessage(MainActivityController.MSG_UPDATE_VIEW);
 	}
 	
 	private void sendUpdateCountdown() {
-		Message msg = new Message();
-		msg.what = MainActivityController.MSG_UPDATE_COUNTDOWN;
-		controller.getHandler().sendMessage(msg);
+		controller.getHandler().sendEmptyMessage(MainActivityController.MSG_UPDATE_COUNTDOWN);
 	}
 	
 	
@@ -154,12 +182,22 @@ public class MainActivityState extends ActivityState<MainActivity> implements St
 		@Override
 		public void run() {
 			try {
-				if (state.getViewModel().isExpired()) {
-					state.sendLoadTimingsEvent();
+				final CountdownViewModel viewModel = state.getViewModel();
+				
+				if (viewModel.advance(TimeProvider.currentTimeMillis())) {
+					// The next prayer changed; the title, theme and timings may change with it.
+					state.sendUpdateView();
 				}
 				else {
 					state.sendUpdateCountdown();
 				}
+				
+				if (viewModel.isExpired()) {
+					state.sendLoadTimingsEvent();
+				}
+				else if (viewModel.requestRefill()) {
+					state.sendRefillTimelineEvent(viewModel);
+				}
 			}
 			catch (Exception e) {
 				e.printStackTrace();
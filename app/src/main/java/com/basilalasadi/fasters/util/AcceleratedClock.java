@@ -0,0 +1,57 @@
+package com.basilalasadi.fasters.util;
+
+import org.threeten.bp.Clock;
+import org.threeten.bp.Instant;
+import org.threeten.bp.ZoneId;
+
+
+/**
+ * Clock that runs a fixed number of times faster than a base clock, from a given start. Reading it
+ * does not allocate.
+ */
+public final class AcceleratedClock extends Clock {
+	private final Clock base;
+	private final long baseStart;
+	private final long start;
+	private final double factor;
+	
+	/**
+	 * @param base Clock to pace from, usually the system clock.
+	 * @param start Time the clock starts at, in epoch millis.
+	 * @param factor Simulated milliseconds per millisecond of the base clock.
+	 */
+	public AcceleratedClock(Clock base, long start, double factor) {
+		this(base, base.millis(), start, factor);
+	}
+	
+	private AcceleratedClock(Clock base, long baseStart, long start, double factor) {
+		if (!(factor > 0)) {
+			throw new IllegalArgumentException("Factor must be positive.");
+		}
+		
+		this.base = base;
+		this.baseStart = baseStart;
+		this.start = start;
+		this.factor = factor;
+	}
+	
+	@Override
+	public long millis() {
+		return start + (long) ((base.millis() - baseStart) * factor);
+	}
+	
+	@Override
+	public Instant instant() {
+		return Instant.ofEpochMilli(millis());
+	}
+	
+	@Override
+	public ZoneId getZone() {
+		return base.getZone();
+	}
+	
+	@Override
+	public Clock withZone(ZoneId zone) {
+		return new AcceleratedClock(base.withZone(zone), baseStart, start, factor);
+	}
+}
@@ -0,0 +1,62 @@
+package com.basilalasadi.fasters.util;
+
+import org.threeten.bp.Clock;
+import org.threeten.bp.Instant;
+import org.threeten.bp.ZoneId;
+
+
+/**
+ * Clock that only moves when it is told to. Reading it does not allocate; it is meant to be moved
+ * from a single thread.
+ */
+public final class ManualClock extends Clock {
+	private final ZoneId zone;
+	private volatile long millis;
+	
+	/**
+	 * @param millis Initial time in epoch millis.
+	 * @param zone Zone of the clock.
+	 */
+	public ManualClock(long millis, ZoneId zone) {
+		this.millis = millis;
+		this.zone = zone;
+	}
+	
+	/**
+	 * @param millis New time in epoch millis. It may be in the past.
+	 */
+	public void set(long millis) {
+		this.millis = millis;
+	}
+	
+	/**
+	 * Moves the clock forward.
+	 * @param millis Milliseconds to step.
+	 */
+	public void step(long millis) {
+		this.millis += millis;
+	}
+	
+	@Override
+	public long millis() {
+		return millis;
+	}
+	
+	@Override
+	public Instant instant() {
+		return Instant.ofEpochMilli(millis);
+	}
+	
+	@Override
+	public ZoneId getZone() {
+		return zone;
+	}
+	
+	/**
+	 * @return a copy of the clock at the same time, which moves separately.
+	 */
+	@Override
+	public Clock withZone(ZoneId zone) {
+		return new ManualClock(millis, zone);
+	}
+}
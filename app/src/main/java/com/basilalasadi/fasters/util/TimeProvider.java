@@ -1,18 +1,104 @@
 package com.basilalasadi.fasters.util;
 
+import org.threeten.bp.Clock;
 import org.threeten.bp.Duration;
+import org.threeten.bp.Instant;
+import org.threeten.bp.ZoneId;
 import org.threeten.bp.ZonedDateTime;
 
 
+/**
+ * Source of the current time for the app. Everything that depends on the time reads it through
+ * here, so the clock can be swapped for a fixed, manual (<em>ManualClock</em>) or accelerated
+ * (<em>AcceleratedClock</em>) one to test and simulate.
+ */
 public abstract class TimeProvider {
-	private static Duration offset = Duration.ZERO;
+	private static volatile Clock clock = new DefaultZoneClock(Clock.systemUTC());
 	
+	/**
+	 * Sets the clock to run from <em>datetime</em> at the pace of the system clock, in the default
+	 * zone.
+	 * @param datetime Current date and time to set.
+	 */
 	public static void setDateTime(ZonedDateTime datetime) {
-		offset = Duration.between(ZonedDateTime.now(), datetime);
+		clock = new DefaultZoneClock(Clock.offset(Clock.systemUTC(),
+				Duration.between(Instant.now(), datetime.toInstant())));
+	}
+	
+	/**
+	 * @param clock Clock to read the time from.
+	 */
+	public static void setClock(Clock clock) {
+		TimeProvider.clock = clock;
+	}
+	
+	/**
+	 * @return the clock the time is read from.
+	 */
+	public static Clock getClock() {
+		return clock;
+	}
+	
+	/**
+	 * Sets the clock back to the system clock.
+	 */
+	public static void reset() {
+		clock = new DefaultZoneClock(Clock.systemUTC());
 	}
 	
 	public static ZonedDateTime now() {
-		ZonedDateTime now = ZonedDateTime.now();
-		return now.plus(offset);
+		return ZonedDateTime.now(clock);
+	}
+	
+	/**
+	 * Current time without allocating.
+	 * @return milliseconds since 1970-01-01 00:00 UTC.
+	 */
+	public static long currentTimeMillis() {
+		return clock.millis();
+	}
+	
+	/**
+	 * Current time without allocating.
+	 * @return seconds since 1970-01-01 00:00 UTC.
+	 */
+	public static long currentEpochSecond() {
+		return Math.floorDiv(currentTimeMillis(), 1000);
+	}
+	
+	
+	/**
+	 * Clock in the default zone at the time of each call. <em>Clock.systemDefaultZone()</em> fixes
+	 * the zone when created, so it would miss the device moving to another zone.
+	 */
+	private static final class DefaultZoneClock extends Clock {
+		private final Clock clock;
+		
+		/**
+		 * @param clock Clock to read the time from. Its zone is ignored.
+		 */
+		DefaultZoneClock(Clock clock) {
+			this.clock = clock;
+		}
+		
+		@Override
+		public long millis() {
+			return clock.millis();
+		}
+		
+		@Override
+		public Instant instant() {
+			return clock.instant();
+		}
+		
+		@Override
+		public ZoneId getZone() {
+			return ZoneId.systemDefault();
+		}
+		
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return clock.withZone(zone);
+		}
 	}
 }
@@ -0,0 +1,226 @@
+package com.basilalasadi.fasters.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Thread-safe set of weakly referenced listeners, compared by identity.
+ *
+ * Listeners are kept in a concurrent map keyed by a weak reference that hashes and compares its
+ * referent by identity, so adding, removing and looking up a listener are O(1) and never lock.
+ * Iterating walks an array snapshot of the references, rebuilt only after the registry changes, so
+ * a dispatch neither locks nor allocates more than its iterator, and listeners may add or remove
+ * listeners while being notified; the change shows from the next iteration. Iteration only yields
+ * live listeners. References cleared by the garbage collector are purged through a reference queue
+ * on every call.
+ *
+ * The registry does not keep its listeners alive; a listener has to be strongly referenced by its
+ * owner for as long as it should be notified.
+ */
+public final class WeakListenerRegistry<T> implements Iterable<T> {
+	private static final ListenerRef<?>[] EMPTY = new ListenerRef<?>[0];
+	
+	private final ConcurrentHashMap<ListenerRef<T>, ListenerRef<T>> refs = new ConcurrentHashMap<>();
+	private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+	
+	/**
+	 * Incremented on every change of <em>refs</em>, so a snapshot built while the registry changed
+	 * is never used.
+	 */
+	private final AtomicInteger version = new AtomicInteger();
+	private volatile Snapshot snapshot = new Snapshot(0, EMPTY);
+	
+	/**
+	 * Adds a listener, unless it is already registered.
+	 * @param listener The listener; not null.
+	 * @return true if the listener was added.
+	 */
+	public boolean add(T listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener");
+		}
+		
+		purge();
+		
+		final ListenerRef<T> ref = new ListenerRef<>(listener, queue);
+		
+		if (refs.putIfAbsent(ref, ref) != null) {
+			return false;
+		}
+		
+		version.incrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * Removes a listener. Iterations started after it returns will not yield the listener.
+	 * @param listener The listener.
+	 * @return true if the listener was registered.
+	 */
+	public boolean remove(T listener) {
+		purge();
+		
+		if (listener == null || refs.remove(new ListenerRef<>(listener, null)) == null) {
+			return false;
+		}
+		
+		version.incrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * @param listener The listener.
+	 * @return true if the listener is registered.
+	 */
+	public boolean contains(T listener) {
+		purge();
+		
+		return listener != null && refs.containsKey(new ListenerRef<>(listener, null));
+	}
+	
+	/**
+	 * @return number of registered listeners, which may include listeners collected since the last
+	 * purge.
+	 */
+	public int size() {
+		purge();
+		
+		return refs.size();
+	}
+	
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	/**
+	 * Removes all listeners.
+	 */
+	public void clear() {
+		refs.clear();
+		version.incrementAndGet();
+		purge();
+	}
+	
+	/**
+	 * Iterates over the live listeners registered when it is called. The iterator does not support
+	 * removal; use <em>remove()</em>.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		purge();
+		
+		return new SnapshotIterator<>(getSnapshot());
+	}
+	
+	private ListenerRef<?>[] getSnapshot() {
+		Snapshot current = snapshot;
+		final int currentVersion = version.get();
+		
+		if (current.version != currentVersion) {
+			current = new Snapshot(currentVersion, refs.keySet().toArray(EMPTY));
+			
+			// Only published if nothing changed while it was built; otherwise it is used once.
+			if (version.get() == currentVersion) {
+				snapshot = current;
+			}
+		}
+		
+		return current.refs;
+	}
+	
+	/**
+	 * Removes the references cleared by the garbage collector.
+	 */
+	private void purge() {
+		for (Reference<? extends T> ref = queue.poll(); ref != null; ref = queue.poll()) {
+			if (refs.remove(ref) != null) {
+				version.incrementAndGet();
+			}
+		}
+	}
+	
+	
+	private static final class Snapshot {
+		final int version;
+		final ListenerRef<?>[] refs;
+		
+		Snapshot(int version, ListenerRef<?>[] refs) {
+			this.version = version;
+			this.refs = refs;
+		}
+	}
+	
+	
+	/**
+	 * Weak reference equal to references to the same listener. A cleared reference is only equal to
+	 * itself, and keeps the hash of its listener so it can still be removed from the map.
+	 */
+	private static final class ListenerRef<T> extends WeakReference<T> {
+		private final int hash;
+		
+		ListenerRef(T listener, ReferenceQueue<? super T> queue) {
+			super(listener, queue);
+			this.hash = System.identityHashCode(listener);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof ListenerRef)) {
+				return false;
+			}
+			
+			final Object listener = get();
+			return listener != null && listener == ((ListenerRef<?>) o).get();
+		}
+	}
+	
+	
+	/**
+	 * Iterator over a snapshot that skips collected listeners, holding the next one strongly so
+	 * <em>hasNext()</em> and <em>next()</em> agree.
+	 */
+	private static final class SnapshotIterator<T> implements Iterator<T> {
+		private final ListenerRef<?>[] refs;
+		private int index = 0;
+		private T next;
+		
+		SnapshotIterator(ListenerRef<?>[] refs) {
+			this.refs = refs;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean hasNext() {
+			while (next == null && index < refs.length) {
+				next = (T) refs[index++].get();
+			}
+			
+			return next != null;
+		}
+		
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			final T listener = next;
+			next = null;
+			return listener;
+		}
+	}
+}
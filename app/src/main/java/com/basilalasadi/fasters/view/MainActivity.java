@@ -5,9 +5,6 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.annotation.SuppressLint;
-import android.app.job.JobInfo;
-import android.app.job.JobScheduler;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
@@ -24,25 +21,28 @@ import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import org.threeten.bp.ZoneId;
 import org.threeten.bp.ZonedDateTime;
 
 import com.basilalasadi.fasters.BuildConfig;
 import com.basilalasadi.fasters.FastersApplication;
 import com.basilalasadi.fasters.R;
 import com.basilalasadi.fasters.controller.MainActivityController;
+import com.basilalasadi.fasters.executors.AppExecutors;
 import com.basilalasadi.fasters.logic.settings.LocationSetListener;
+import com.basilalasadi.fasters.model.CountdownTicker;
 import com.basilalasadi.fasters.model.CountdownViewModel;
 import com.basilalasadi.fasters.logic.ReminderConstants;
 import com.basilalasadi.fasters.logic.settings.SettingsManager;
 import com.basilalasadi.fasters.util.TimeProvider;
 import com.basilalasadi.fasters.service.ReminderIntent;
 import com.basilalasadi.fasters.service.RemindersService;
+import com.basilalasadi.fasters.service.WakeupLog;
 import com.basilalasadi.fasters.state.ActivityState;
 import com.basilalasadi.fasters.state.MainActivityState;
 import com.basilalasadi.fasters.view.settings.SettingsActivity;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
-import java.util.Locale;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -67,6 +67,8 @@ public class MainActivity extends AppCompatActivity implements MainActivityContr
 	private TextView    tvMagribTiming;
 	private TextView    tvIshaTiming;
 	
+	private final CountdownTicker ticker = new CountdownTicker(180);
+	
 	private AppTheme activityAppTheme = null;
 	private ScrollingGradientBackground scrollingBackground;
 	private Handler handler;
@@ -89,17 +91,7 @@ public class MainActivity extends AppCompatActivity implements MainActivityContr
 		MainActivityState.bindApplication(getApplication());
 		
 		// Starts reminders service.
-		{
-			JobScheduler jobScheduler = getSystemService(JobScheduler.class);
-			
-			ComponentName remindersService = new ComponentName(this, RemindersService.class);
-			
-			JobInfo.Builder builder = new JobInfo.Builder(RemindersService.JOB_ID, remindersService);
-			builder.setOverrideDeadline(System.currentTimeMillis() + 15 * 1000);
-			
-			jobScheduler.cancel(RemindersService.JOB_ID);
-			jobScheduler.schedule(builder.build());
-		}
+		RemindersService.schedule(this, 15 * 1000);
 		
 		isLandscape = getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE;
 		
@@ -169,18 +161,17 @@ public class MainActivity extends AppCompatActivity implements MainActivityContr
 	}
 	
 	public void updateView() {
-		ZonedDateTime now = TimeProvider.now();
 		CountdownViewModel viewModel = state.getViewModel();
 		
 		if (viewModel != null) {
-			if (viewModel.isDataAvailable()) {
-				tvTitle.setText(viewModel.isEvening ? R.string.time_until_fasting : R.string.time_until_break_fast);
+			if (viewModel.isDataAvailable() && !viewModel.isExpired()) {
+				tvTitle.setText(viewModel.isEvening() ? R.string.time_until_fasting : R.string.time_until_break_fast);
 				tvLocation.setText(viewModel.location);
 				
-				updateCountdown(now);
+				updateCountdown();
 				
 				String[] timings = viewModel.getFormattedTimings();
-				String nextTimingLabel = getString(R.string.time_till) + " " + viewModel.nextPrayerName;
+				String nextTimingLabel = getString(R.string.time_till) + " " + viewModel.getNextPrayerName();
 				
 				tvNextTimingLabel.setText(nextTimingLabel);
 				tvFajrTiming.setText(timings[0]);
@@ -189,13 +180,14 @@ public class MainActivity extends AppCompatActivity implements MainActivityContr
 				tvMagribTiming.setText(timings[3]);
 				tvIshaTiming.setText(timings[4]);
 				
-				AppTheme appTheme = viewModel.isEvening ? AppTheme.Evening : AppTheme.Morning;
+				AppTheme appTheme = viewModel.isEvening() ? AppTheme.Evening : AppTheme.Morning;
 				
 				if (FastersApplication.get(this).updateTheme(appTheme)) {
 					recreate();
 				}
 			}
-			else if (viewModel.isDataLoading()) {
+			else if (viewModel.isDataLoading() || viewModel.isDataAvailable()) {
+				// An expired view model is being recomputed.
 				clearViewData("please wait...");
 			}
 			else if (viewModel.isError()) {
@@ -243,33 +235,25 @@ public class MainActivity extends AppCompatActivity implements MainActivityContr
 		tvIshaTiming.setText("");
 	}
 	
+	/**
+	 * Called every second. Does not allocate.
+	 */
 	public void updateCountdown() {
-		ZonedDateTime now = TimeProvider.now();
-		updateCountdown(now);
-	}
-	
-	public void updateCountdown(ZonedDateTime now) {
 		CountdownViewModel viewModel = state.getViewModel();
 		
-		if (viewModel == null || !viewModel.isDataAvailable()) {
+		if (viewModel == null || !viewModel.isDataAvailable() || viewModel.isExpired()) {
 			return;
 		}
 		
-		CountdownViewModel.CountdownDisplay countdown = viewModel.getCountdownDisplay(now);
-		
-		tvCountdownHours.setText(countdown.hours);
-		tvCountdownMinutes.setText(countdown.minute);
-		tvCountdownSeconds.setText(countdown.second);
-		
-		progressBar.setProgress((int) (viewModel.getProgress(now) * 180));
-		tvCurrentTime.setText(CountdownViewModel.getFormattedTime(now));
-		
-		long timeTillNextPrayer = viewModel.getTimeTillNextPrayer(now);
+		viewModel.tick(TimeProvider.currentTimeMillis(), ticker);
 		
-		long nextPrayerHours = timeTillNextPrayer / 3600;
-		long nextPrayerMinute = timeTillNextPrayer / 60 - nextPrayerHours * 60;
+		tvCountdownHours.setText(ticker.hours, 0, ticker.hours.length);
+		tvCountdownMinutes.setText(ticker.minutes, 0, ticker.minutes.length);
+		tvCountdownSeconds.setText(ticker.seconds, 0, ticker.seconds.length);
 		
-		tvNextTiming.setText(String.format(Locale.US, "%d:%02d", nextPrayerHours, nextPrayerMinute));
+		progressBar.setProgress(ticker.progress);
+		tvCurrentTime.setText(ticker.currentTime, 0, ticker.currentTimeLength);
+		tvNextTiming.setText(ticker.timeTillNextPrayer, 0, ticker.timeTillNextPrayerLength);
 	}
 	
 	protected void addListeners() {
@@ -370,15 +354,48 @@ public class MainActivity extends AppCompatActivity implements MainActivityContr
 				Intent intent = new ReminderIntent(this, ReminderConstants.REMINDER_PREFAST_MEAL, null);
 				sendBroadcast(intent);
 			});
+			
+			findViewById(R.id.textViewTitle).setOnClickListener(view -> {
+				WakeupLog wakeupLog = WakeupLog.getInstance(this);
+				
+				// The log is read off the main thread.
+				AppExecutors.ioExecutor.execute(() -> {
+					String dump = wakeupLog.dump(ZoneId.systemDefault());
+					AppExecutors.mainExecutor.execute(() -> showWakeupLog(wakeupLog, dump));
+				});
+			});
 		}
 	}
 	
+	private void showWakeupLog(WakeupLog wakeupLog, String dump) {
+		if (isFinishing() || isDestroyed()) {
+			return;
+		}
+		
+		MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(this);
+		builder.setTitle("Wakeups");
+		builder.setMessage(dump);
+		
+		builder.setPositiveButton("Share", (dialog, which) -> {
+			Intent intent = new Intent(Intent.ACTION_SEND);
+			intent.setType("text/plain");
+			intent.putExtra(Intent.EXTRA_SUBJECT, "Fasters wakeups");
+			intent.putExtra(Intent.EXTRA_TEXT, dump);
+			startActivity(Intent.createChooser(intent, "Share wakeups"));
+		});
+		
+		builder.setNeutralButton("Clear", (dialog, which) -> AppExecutors.ioExecutor.execute(wakeupLog::clear));
+		
+		AlertDialog alertDialog = builder.create();
+		alertDialog.show();
+	}
+	
 	private boolean setActivityTheme() {
 		final CountdownViewModel viewModel = state.getViewModel();
 		AppTheme appTheme = SettingsManager.getInstance(this).getTheme(this);
 		
 		if (appTheme == null) {
-			if (viewModel != null && viewModel.isDataAvailable() && viewModel.isEvening) {
+			if (viewModel != null && viewModel.isDataAvailable() && viewModel.isEvening()) {
 				appTheme = AppTheme.Evening;
 				setTheme(R.style.Theme_App_Evening);
 			}
@@ -37,13 +37,14 @@ public class ManualLocationSettingsFragment extends PreferenceFragmentCompat {
 		countryAdapter = new ArrayAdapterWithFuzzyFilter<>(requireContext(), R.layout.list_item, R.id.textview);
 		cityAdapter = new ArrayAdapterWithFuzzyFilter<>(requireContext(), R.layout.list_item, R.id.textview);
 		
-		executor.execute(() -> {
-			countryAdapter.addAll(CitiesDatabase.getInstance(getContext()).getCountries());
+		// Queried once the database is open, without holding an executor thread while it opens.
+		CitiesDatabase.getInstance(requireContext()).whenReady(executor, database -> {
+			countryAdapter.addAll(database.getCountries());
 			
 			String country = countryPreference.getText();
 			
 			if (country != null && !country.isEmpty()) {
-				CitiesDatabase.AdminCity[] adminCities = CitiesDatabase.getInstance(getContext()).getCountryAdminCities(country);
+				CitiesDatabase.AdminCity[] adminCities = database.getCountryAdminCities(country);
 				
 				String[] options = new String[adminCities.length];
 				
@@ -113,8 +114,8 @@ public class ManualLocationSettingsFragment extends PreferenceFragmentCompat {
 			cityPreference.setText(null);
 			cityPreference.setSummary(R.string.not_set);
 			
-			executor.execute(() -> {
-				CitiesDatabase.AdminCity[] adminCities = CitiesDatabase.getInstance(getContext()).getCountryAdminCities((String) newValue);
+			CitiesDatabase.getInstance(requireContext()).whenReady(executor, database -> {
+				CitiesDatabase.AdminCity[] adminCities = database.getCountryAdminCities((String) newValue);
 				
 				Log.d(TAG, adminCities.length + " cities found.");
 				
@@ -0,0 +1,146 @@
+package com.basilalasadi.fasters.database;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Compares the k nearest cities found by <em>CityGeoIndex</em> with a linear scan by haversine
+ * distance, on random points and on points clustered around the poles and the antimeridian.
+ */
+public class CityGeoIndexTest {
+	private static final int K = 8;
+	private static final double TOLERANCE_KM = 1e-6;
+	
+	/**
+	 * Queries at and near the poles and the antimeridian, where longitudes wrap around.
+	 */
+	private static final double[][] EDGE_QUERIES = {
+			{ 0, 90 }, { 0, -90 }, { 123, 90 }, { -57, -90 }, { 180, 89.9 }, { -180, -89.9 },
+			{ 180, 0 }, { -180, 0 }, { 179.99, 35 }, { -179.99, 35 }, { 180, -60 }, { -179.5, 64.8 },
+	};
+	
+	@Test
+	public void matchesLinearScanOnRandomPoints() {
+		final Random random = new Random(1);
+		final double[][] points = randomPoints(random, 2000);
+		final CityGeoIndex index = new CityGeoIndex(points[0], points[1]);
+		
+		for (int i = 0; i < 500; i++) {
+			final double[] query = randomPoint(random);
+			checkNearest(index, points, query[0], query[1]);
+		}
+		
+		for (double[] query : EDGE_QUERIES) {
+			checkNearest(index, points, query[0], query[1]);
+		}
+	}
+	
+	@Test
+	public void matchesLinearScanNearPolesAndAntimeridian() {
+		final Random random = new Random(2);
+		final double[][] points = new double[2][1500];
+		
+		// Within a few degrees of the north pole, the south pole and the antimeridian.
+		for (int i = 0; i < 500; i++) {
+			points[0][i] = random.nextDouble() * 360 - 180;
+			points[1][i] = 90 - random.nextDouble() * 3;
+			points[0][i + 500] = random.nextDouble() * 360 - 180;
+			points[1][i + 500] = -90 + random.nextDouble() * 3;
+			points[0][i + 1000] = random.nextBoolean() ? 180 - random.nextDouble() * 2 : -180 + random.nextDouble() * 2;
+			points[1][i + 1000] = random.nextDouble() * 160 - 80;
+		}
+		
+		final CityGeoIndex index = new CityGeoIndex(points[0], points[1]);
+		
+		for (double[] query : EDGE_QUERIES) {
+			checkNearest(index, points, query[0], query[1]);
+		}
+		
+		for (int i = 0; i < 300; i++) {
+			final double longitude = random.nextBoolean() ? 180 - random.nextDouble() : -180 + random.nextDouble();
+			final double latitude = random.nextDouble() * 180 - 90;
+			checkNearest(index, points, longitude, latitude);
+		}
+	}
+	
+	@Test
+	public void findsAllWhenFewerThanK() {
+		final CityGeoIndex index = new CityGeoIndex(new double[] { 31.24, 39.83, 35.93 }, new double[] { 30.04, 21.42, 31.95 });
+		final int[] indices = new int[K];
+		
+		assertEquals(3, index.findNearest(36, 32, K, indices, null));
+		assertEquals(2, indices[0]);
+		assertEquals(0, index.findNearest(31, 30));
+	}
+	
+	@Test
+	public void emptyIndexFindsNothing() {
+		final CityGeoIndex index = new CityGeoIndex(new double[0], new double[0]);
+		
+		assertEquals(0, index.findNearest(0, 0, K, new int[K], new double[K]));
+		assertEquals(-1, index.findNearest(0, 0));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsArraysOfDifferentLengths() {
+		new CityGeoIndex(new double[2], new double[3]);
+	}
+	
+	/**
+	 * Checks the distances of the found cities against the linear scan rank by rank, so cities at
+	 * the same distance may come in any order.
+	 */
+	private static void checkNearest(CityGeoIndex index, double[][] points, double longitude, double latitude) {
+		final String message = "query (" + longitude + ", " + latitude + ")";
+		final int[] indices = new int[K];
+		final double[] distances = new double[K];
+		
+		assertEquals(message, K, index.findNearest(longitude, latitude, K, indices, distances));
+		
+		final double[] expected = new double[points[0].length];
+		
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = CityGeoIndex.distanceKm(longitude, latitude, points[0][i], points[1][i]);
+		}
+		
+		Arrays.sort(expected);
+		
+		for (int i = 0; i < K; i++) {
+			final double actual = CityGeoIndex.distanceKm(longitude, latitude, points[0][indices[i]], points[1][indices[i]]);
+			
+			assertEquals(message + ", rank " + i, expected[i], actual, TOLERANCE_KM);
+			assertEquals(message + ", rank " + i, actual, distances[i], TOLERANCE_KM);
+			assertTrue(message + ", rank " + i, i == 0 || distances[i] >= distances[i - 1]);
+		}
+		
+		assertEquals(message, indices[0], index.findNearest(longitude, latitude));
+	}
+	
+	private static double[][] randomPoints(Random random, int count) {
+		final double[][] points = new double[2][count];
+		
+		for (int i = 0; i < count; i++) {
+			final double[] point = randomPoint(random);
+			points[0][i] = point[0];
+			points[1][i] = point[1];
+		}
+		
+		return points;
+	}
+	
+	/**
+	 * @return longitude and latitude of a point uniformly distributed on the sphere.
+	 */
+	private static double[] randomPoint(Random random) {
+		return new double[] {
+				random.nextDouble() * 360 - 180,
+				Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1)),
+		};
+	}
+}
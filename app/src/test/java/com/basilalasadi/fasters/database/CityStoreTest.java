@@ -0,0 +1,140 @@
+package com.basilalasadi.fasters.database;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Reads a small store built in the format documented on <em>CityStore</em>.
+ */
+public class CityStoreTest {
+	/**
+	 * Country, admin, city, longitude and latitude of each city, sorted. "Bhutan" and "Fiji" have
+	 * no cities.
+	 */
+	private static final Object[][] CITIES = {
+			{ "Algeria", "Adrar", "Adrar", -0.29, 27.87 },
+			{ "Algeria", "Alger", "Algiers", 3.06, 36.75 },
+			{ "Egypt", "Al Iskandariyah", "Alexandria", 29.92, 31.2 },
+			{ "Egypt", "Al Qahirah", "Cairo", 31.24, 30.04 },
+			{ "Egypt", "Aswan", "Aswan", 32.9, 24.09 },
+			{ "Jordan", "Amman", "Amman", 35.93, 31.95 },
+	};
+	private static final String[] COUNTRIES = { "Algeria", "Bhutan", "Egypt", "Fiji", "Jordan" };
+	private static final int[] COUNTRY_STARTS = { 0, 2, 2, 5, 5, 6 };
+	
+	private CityStore store;
+	
+	@Before
+	public void setUp() throws IOException {
+		store = new CityStore(buildStore());
+	}
+	
+	@Test
+	public void countryOfCitySkipsEmptyCountries() {
+		final String[] expected = { "Algeria", "Algeria", "Egypt", "Egypt", "Egypt", "Jordan" };
+		
+		for (int i = 0; i < store.size(); i++) {
+			assertEquals("city " + i, expected[i], store.getCountry(store.getCountryOfCity(i)));
+		}
+	}
+	
+	@Test
+	public void countryOfCityIsWithinCountryRange() {
+		for (int i = 0; i < store.size(); i++) {
+			final int country = store.getCountryOfCity(i);
+			
+			assertTrue(store.getCountryStart(country) <= i && i < store.getCountryEnd(country));
+		}
+	}
+	
+	@Test
+	public void readsColumns() {
+		assertEquals(CITIES.length, store.size());
+		assertEquals(COUNTRIES.length, store.getCountryCount());
+		
+		for (int i = 0; i < CITIES.length; i++) {
+			assertEquals(CITIES[i][1], store.getAdmin(i));
+			assertEquals(CITIES[i][2], store.getCity(i));
+			assertEquals((double) CITIES[i][3], store.getLongitude(i), 0);
+			assertEquals((double) CITIES[i][4], store.getLatitude(i), 0);
+		}
+	}
+	
+	@Test
+	public void findsCities() {
+		assertEquals(2, store.findCountry("Egypt"));
+		assertEquals(-1, store.findCountry("Chad"));
+		assertEquals(2, store.findCity("Egypt", "Al Iskandariyah", "Alexandria"));
+		assertEquals(-1, store.findCity("Egypt", "Aswan", "Cairo"));
+		assertEquals(-1, store.findCity("Fiji", "Central", "Suva"));
+	}
+	
+	private static ByteBuffer buildStore() throws IOException {
+		final List<String> strings = new ArrayList<>();
+		final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+		final List<Integer> offsets = new ArrayList<>();
+		
+		for (Object[] city : CITIES) {
+			addString(strings, (String) city[1]);
+			addString(strings, (String) city[2]);
+		}
+		for (String country : COUNTRIES) {
+			addString(strings, country);
+		}
+		
+		for (String string : strings) {
+			offsets.add(pool.size());
+			pool.write(string.getBytes(StandardCharsets.UTF_8));
+		}
+		offsets.add(pool.size());
+		
+		final ByteBuffer buffer = ByteBuffer.allocate(24 + CITIES.length * 24 + COUNTRIES.length * 4 +
+				COUNTRY_STARTS.length * 4 + offsets.size() * 4 + pool.size());
+		
+		buffer.putInt(CityStore.MAGIC).putInt(CityStore.VERSION).putInt(CITIES.length).putInt(COUNTRIES.length)
+				.putInt(strings.size()).putInt(pool.size());
+		
+		for (Object[] city : CITIES) {
+			buffer.putDouble((double) city[3]);
+		}
+		for (Object[] city : CITIES) {
+			buffer.putDouble((double) city[4]);
+		}
+		for (Object[] city : CITIES) {
+			buffer.putInt(strings.indexOf((String) city[1]));
+		}
+		for (Object[] city : CITIES) {
+			buffer.putInt(strings.indexOf((String) city[2]));
+		}
+		for (String country : COUNTRIES) {
+			buffer.putInt(strings.indexOf(country));
+		}
+		for (int start : COUNTRY_STARTS) {
+			buffer.putInt(start);
+		}
+		for (int offset : offsets) {
+			buffer.putInt(offset);
+		}
+		
+		buffer.put(pool.toByteArray());
+		buffer.flip();
+		return buffer;
+	}
+	
+	private static void addString(List<String> strings, String string) {
+		if (!strings.contains(string)) {
+			strings.add(string);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package com.basilalasadi.fasters.database;
+
+import com.basilalasadi.fasters.math.PrayerTimings;
+
+import org.junit.Test;
+import org.threeten.bp.LocalDate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Writes timetables with <em>TimetableFileWriter</em> and reads them back.
+ */
+public class TimetableFileTest {
+	private static final LocalDate FIRST_DATE = LocalDate.of(2025, 1, 1);
+	private static final int DAYS = 100;
+	
+	@Test
+	public void roundTripsAcrossBlocks() throws IOException {
+		for (int daysPerBlock : new int[] { TimetableFileWriter.DEFAULT_DAYS_PER_BLOCK, 1, 7, DAYS, DAYS + 1 }) {
+			final int[][] timings = timings(DAYS, daysPerBlock);
+			final TimetableFile file = new TimetableFile(write(timings, daysPerBlock));
+			
+			assertEquals(FIRST_DATE, file.getFirstDate());
+			assertEquals(DAYS, file.getDays());
+			checkTimings(file, timings, "days per block " + daysPerBlock);
+		}
+	}
+	
+	@Test
+	public void roundTripsToAndFromNoTime() throws IOException {
+		final int[][] timings = new int[DAYS][];
+		
+		// Events stop and start occurring in the middle and at the start of blocks.
+		for (int day = 0; day < DAYS; day++) {
+			final boolean noFajr = day % 16 == 0 || day % 5 == 3 || day >= 90;
+			
+			timings[day] = new int[] {
+					noFajr ? TimetableFile.NO_TIME : 4 * 3600 + day,
+					12 * 3600 + day,
+					15 * 3600 + day,
+					18 * 3600 - day,
+					day % 2 == 0 ? TimetableFile.NO_TIME : 86399,
+			};
+		}
+		
+		checkTimings(new TimetableFile(write(timings, TimetableFileWriter.DEFAULT_DAYS_PER_BLOCK)), timings, "");
+		checkTimings(new TimetableFile(write(timings, 3)), timings, "3 days per block");
+	}
+	
+	@Test
+	public void readsEmptyTimetable() throws IOException {
+		final TimetableFile file = new TimetableFile(write(new int[0][], TimetableFileWriter.DEFAULT_DAYS_PER_BLOCK));
+		
+		assertEquals(0, file.getDays());
+		assertEquals(-1, file.indexOf(FIRST_DATE));
+	}
+	
+	@Test
+	public void indexOfIsInRange() throws IOException {
+		final TimetableFile file = new TimetableFile(write(timings(DAYS, 7), 7));
+		
+		assertEquals(-1, file.indexOf(FIRST_DATE.minusDays(1)));
+		assertEquals(0, file.indexOf(FIRST_DATE));
+		assertEquals(DAYS - 1, file.indexOf(FIRST_DATE.plusDays(DAYS - 1)));
+		assertEquals(-1, file.indexOf(FIRST_DATE.plusDays(DAYS)));
+		assertEquals(-1, file.indexOf(FIRST_DATE.plusYears(100)));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void rejectsDayOutOfRange() throws IOException {
+		new TimetableFile(write(timings(DAYS, 7), 7)).getTimings(DAYS, new int[PrayerTimings.TIMINGS_COUNT]);
+	}
+	
+	@Test
+	public void rejectsInvalidFiles() throws IOException {
+		final byte[] bytes = write(timings(DAYS, 7), 7).array();
+		
+		final byte[] badMagic = bytes.clone();
+		badMagic[0] ^= 1;
+		final byte[] badVersion = bytes.clone();
+		badVersion[7] ^= 1;
+		final byte[] badDaysPerBlock = bytes.clone();
+		Arrays.fill(badDaysPerBlock, 20, 24, (byte) 0);
+		
+		checkRejected(badMagic);
+		checkRejected(badVersion);
+		checkRejected(badDaysPerBlock);
+		checkRejected(Arrays.copyOf(bytes, TimetableFile.HEADER_SIZE - 1));
+		
+		// The header and part of the index of the 15 blocks.
+		checkRejected(Arrays.copyOf(bytes, TimetableFile.HEADER_SIZE + 40));
+	}
+	
+	@Test
+	public void writerRejectsWrongNumberOfDays() throws IOException {
+		final TimetableFileWriter writer = new TimetableFileWriter(new ByteArrayOutputStream(), FIRST_DATE, 2);
+		final int[] timings = timings(1, 1)[0];
+		
+		writer.writeDay(timings);
+		
+		try {
+			writer.finish();
+			fail("finish() before the last day returned");
+		}
+		catch (IllegalStateException e) {
+			// Expected.
+		}
+		
+		writer.writeDay(timings);
+		
+		try {
+			writer.writeDay(timings);
+			fail("writeDay() after the last day returned");
+		}
+		catch (IllegalStateException e) {
+			// Expected.
+		}
+	}
+	
+	/**
+	 * Random timings around fixed times of day, with some days that have no isha.
+	 */
+	private static int[][] timings(int days, long seed) {
+		final Random random = new Random(seed);
+		final int[] base = { 4 * 3600, 12 * 3600, 15 * 3600, 18 * 3600, 19 * 3600 };
+		final int[][] timings = new int[days][PrayerTimings.TIMINGS_COUNT];
+		
+		for (int day = 0; day < days; day++) {
+			for (int event = 0; event < PrayerTimings.TIMINGS_COUNT; event++) {
+				timings[day][event] = base[event] + random.nextInt(3600);
+			}
+			
+			if (random.nextInt(10) == 0) {
+				timings[day][PrayerTimings.ISHA] = TimetableFile.NO_TIME;
+			}
+		}
+		
+		return timings;
+	}
+	
+	private static ByteBuffer write(int[][] timings, int daysPerBlock) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final TimetableFileWriter writer = new TimetableFileWriter(out, FIRST_DATE, timings.length, daysPerBlock);
+		
+		for (int[] day : timings) {
+			writer.writeDay(day);
+		}
+		
+		writer.finish();
+		return ByteBuffer.wrap(out.toByteArray());
+	}
+	
+	private static void checkTimings(TimetableFile file, int[][] timings, String message) {
+		final int[] out = new int[PrayerTimings.TIMINGS_COUNT];
+		
+		for (int day = 0; day < timings.length; day++) {
+			file.getTimings(day, out);
+			assertArrayEquals(message + ", day " + day, timings[day], out);
+		}
+	}
+	
+	private static void checkRejected(byte[] bytes) {
+		try {
+			new TimetableFile(ByteBuffer.wrap(bytes));
+			fail("file of " + bytes.length + " bytes read");
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+	}
+}
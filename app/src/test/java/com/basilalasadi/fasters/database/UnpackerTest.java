@@ -0,0 +1,104 @@
+package com.basilalasadi.fasters.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class UnpackerTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void unpackedFileVerifies() throws IOException {
+		final byte[] data = randomBytes(Unpacker.BUFFER_SIZE * 2 + 17);
+		final File destination = new File(folder.getRoot(), "data");
+		
+		final Unpacker.Manifest manifest = Unpacker.unpack(new ByteArrayInputStream(data), destination);
+		
+		assertEquals(data.length, manifest.size);
+		assertEquals(data.length, destination.length());
+		assertEquals(manifest.crc, Unpacker.checksum(destination));
+		assertTrue(Unpacker.verify(destination));
+		assertFalse(new File(destination.getPath() + ".tmp").exists());
+	}
+	
+	@Test
+	public void changedFileDoesNotVerify() throws IOException {
+		final File destination = new File(folder.getRoot(), "data");
+		Unpacker.unpack(new ByteArrayInputStream(randomBytes(1000)), destination);
+		
+		try (FileOutputStream out = new FileOutputStream(destination, true)) {
+			out.write(0);
+		}
+		
+		assertFalse(Unpacker.verify(destination));
+	}
+	
+	@Test
+	public void failedUnpackDeletesDestination() throws IOException {
+		final File destination = new File(folder.getRoot(), "data");
+		Unpacker.unpack(new ByteArrayInputStream(randomBytes(1000)), destination);
+		
+		try {
+			Unpacker.unpack(new FailingInputStream(Unpacker.BUFFER_SIZE + 1), destination);
+			fail("unpack of a failing stream returned");
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+		
+		assertFalse(destination.exists());
+		assertFalse(new File(destination.getPath() + ".manifest").exists());
+		assertFalse(new File(destination.getPath() + ".tmp").exists());
+		assertFalse(Unpacker.verify(destination));
+	}
+	
+	@Test
+	public void deleteRemovesFileAndManifest() throws IOException {
+		final File destination = new File(folder.getRoot(), "data");
+		Unpacker.unpack(new ByteArrayInputStream(randomBytes(1000)), destination);
+		
+		assertTrue(Unpacker.delete(destination));
+		assertFalse(destination.exists());
+		assertFalse(new File(destination.getPath() + ".manifest").exists());
+	}
+	
+	private static byte[] randomBytes(int size) {
+		final byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		return bytes;
+	}
+	
+	
+	/**
+	 * Stream of zeros that fails after some bytes.
+	 */
+	private static final class FailingInputStream extends InputStream {
+		private int remaining;
+		
+		FailingInputStream(int size) {
+			this.remaining = size;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if (remaining-- <= 0) {
+				throw new IOException("Read failed.");
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package com.basilalasadi.fasters.logic;
+
+import com.basilalasadi.fasters.math.PrayerTimings;
+import com.basilalasadi.fasters.model.PrayerTimeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.basilalasadi.fasters.logic.ReminderConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Plans reminders from a timeline of made-up days, with fajr at 04:00 and magrib at 18:00 UTC.
+ */
+public class ReminderPlannerTest {
+	private static final long DAY = 20000;
+	private static final long DAY_MILLIS = 86400 * 1000L;
+	private static final long HOUR_MILLIS = 3600 * 1000L;
+	private static final long MIDNIGHT = DAY * DAY_MILLIS;
+	private static final int ALL_REMINDERS = (1 << REMINDER_COUNT) - 1;
+	
+	@Test
+	public void requestCodesWrapAround() {
+		final Set<Integer> codes = new HashSet<>();
+		
+		for (long epochDay = DAY; epochDay < DAY + ReminderPlanner.REQUEST_CODE_DAYS; epochDay++) {
+			for (int reminderIndex = 0; reminderIndex < REMINDER_COUNT; reminderIndex++) {
+				final int code = ReminderPlanner.getRequestCode(epochDay, reminderIndex);
+				
+				assertTrue(code >= ReminderPlanner.REQUEST_CODE_BASE);
+				assertTrue(code < ReminderPlanner.REQUEST_CODE_BASE + ReminderPlanner.REQUEST_CODE_DAYS * REMINDER_COUNT);
+				assertTrue("code " + code + " repeats within " + ReminderPlanner.REQUEST_CODE_DAYS + " days", codes.add(code));
+				assertEquals(code, ReminderPlanner.getRequestCode(epochDay + ReminderPlanner.REQUEST_CODE_DAYS, reminderIndex));
+			}
+		}
+		
+		assertEquals(ReminderPlanner.getRequestCode(ReminderPlanner.REQUEST_CODE_DAYS - 1, 2),
+				ReminderPlanner.getRequestCode(-1, 2));
+		assertTrue(ReminderPlanner.getRequestCode(-1, 0) >= ReminderPlanner.REQUEST_CODE_BASE);
+	}
+	
+	@Test
+	public void plansEnabledRemindersInOrder() {
+		final PrayerTimeline timeline = timeline(7);
+		final ReminderPlanner.Plan plan = ReminderPlanner.plan(timeline, MIDNIGHT, ALL_REMINDERS);
+		
+		// Fajr and magrib of the first three days; those of the fourth are past the horizon.
+		assertEquals(3 * REMINDER_COUNT, plan.reminders.size());
+		
+		long last = MIDNIGHT;
+		
+		for (ReminderPlanner.Reminder reminder : plan.reminders) {
+			final long epochDay = Math.floorDiv(reminder.eventTime, DAY_MILLIS);
+			
+			assertTrue(reminder.time > last);
+			assertTrue(reminder.time < MIDNIGHT + ReminderPlanner.PLAN_MILLIS);
+			assertEquals(ReminderPlanner.getRequestCode(epochDay, reminder.reminderIndex), reminder.requestCode);
+			assertEquals(ReminderPlanner.getEvent(reminder.reminderIndex), reminder.eventIndex % PrayerTimeline.EVENTS_PER_DAY);
+			assertEquals(reminder.eventTime, timeline.getTime(reminder.eventIndex));
+			last = reminder.time;
+		}
+		
+		assertEquals(MIDNIGHT + ReminderPlanner.REPLAN_INTERVAL_MILLIS, plan.nextUpdate);
+	}
+	
+	@Test
+	public void plansOnlyEnabledReminders() {
+		final ReminderPlanner.Plan plan = ReminderPlanner.plan(timeline(7), MIDNIGHT, 1 << REMINDER_WATER);
+		
+		assertEquals(3, plan.reminders.size());
+		
+		for (ReminderPlanner.Reminder reminder : plan.reminders) {
+			assertEquals(REMINDER_WATER, reminder.reminderIndex);
+			assertEquals(15 * 60 * 1000, reminder.eventTime - reminder.time);
+		}
+	}
+	
+	@Test
+	public void skipsPastReminders() {
+		final long now = MIDNIGHT + 3 * HOUR_MILLIS + 30 * 60 * 1000;
+		final PrayerTimeline timeline = timeline(7);
+		timeline.advance(now);
+		
+		final ReminderPlanner.Plan plan = ReminderPlanner.plan(timeline, now, ALL_REMINDERS);
+		
+		// The prefast meal reminder of the first fajr was at 03:00.
+		assertEquals(REMINDER_WATER, plan.reminders.get(0).reminderIndex);
+		assertEquals(MIDNIGHT + 4 * HOUR_MILLIS, plan.reminders.get(0).eventTime);
+		
+		for (ReminderPlanner.Reminder reminder : plan.reminders) {
+			assertTrue(reminder.time > now);
+		}
+	}
+	
+	@Test
+	public void noUpdateWhenNoReminderIsEnabled() {
+		final ReminderPlanner.Plan plan = ReminderPlanner.plan(timeline(7), MIDNIGHT, 0);
+		
+		assertTrue(plan.reminders.isEmpty());
+		assertEquals(ReminderPlanner.NO_UPDATE, plan.nextUpdate);
+	}
+	
+	@Test
+	public void retriesWhenNothingIsPlanned() {
+		final ReminderPlanner.Plan plan = ReminderPlanner.plan(timeline(0), MIDNIGHT, ALL_REMINDERS);
+		
+		assertTrue(plan.reminders.isEmpty());
+		assertEquals(MIDNIGHT + ReminderPlanner.RETRY_MILLIS, plan.nextUpdate);
+	}
+	
+	@Test
+	public void updatesAtLastReminderWithinReplanInterval() {
+		final ReminderPlanner.Plan plan = ReminderPlanner.plan(timeline(1), MIDNIGHT, ALL_REMINDERS);
+		
+		assertEquals(REMINDER_COUNT, plan.reminders.size());
+		assertEquals(MIDNIGHT + 18 * HOUR_MILLIS - 15 * 60 * 1000, plan.nextUpdate);
+	}
+	
+	@Test
+	public void diffKeepsSameAlarms() {
+		final List<ReminderPlanner.Reminder> planned = ReminderPlanner.plan(timeline(7), MIDNIGHT, ALL_REMINDERS).reminders;
+		
+		assertTrue(ReminderPlanner.diff(planned, planned, MIDNIGHT).isEmpty());
+		assertTrue(ReminderPlanner.diff(decode(planned), planned, MIDNIGHT).isEmpty());
+	}
+	
+	@Test
+	public void diffCancelsArmsAndReplaces() {
+		final long now = MIDNIGHT;
+		final ReminderPlanner.Reminder kept = new ReminderPlanner.Reminder(100, 0, now + 1000, -1, 0);
+		final ReminderPlanner.Reminder moved = new ReminderPlanner.Reminder(101, 1, now + 2000, -1, 0);
+		final ReminderPlanner.Reminder dropped = new ReminderPlanner.Reminder(102, 2, now + 3000, -1, 0);
+		final ReminderPlanner.Reminder fired = new ReminderPlanner.Reminder(103, 3, now, -1, 0);
+		final ReminderPlanner.Reminder movedTo = new ReminderPlanner.Reminder(101, 1, now + 2500, -1, 0);
+		final ReminderPlanner.Reminder added = new ReminderPlanner.Reminder(104, 0, now + 4000, -1, 0);
+		
+		final ReminderPlanner.Diff diff = ReminderPlanner.diff(Arrays.asList(kept, moved, dropped, fired),
+				Arrays.asList(kept, movedTo, added), now);
+		
+		// The moved alarm is replaced by arming its request code again, so it is not cancelled.
+		assertEquals(Collections.singletonList(dropped), diff.toCancel);
+		assertEquals(Arrays.asList(movedTo, added), diff.toArm);
+		assertFalse(diff.isEmpty());
+	}
+	
+	@Test
+	public void diffReplacesReusedRequestCode() {
+		final ReminderPlanner.Reminder armed = new ReminderPlanner.Reminder(100, 0, MIDNIGHT + 1000, -1, 0);
+		final ReminderPlanner.Reminder planned = new ReminderPlanner.Reminder(100, 1, MIDNIGHT + 1000, -1, 0);
+		
+		final ReminderPlanner.Diff diff = ReminderPlanner.diff(Collections.singletonList(armed),
+				Collections.singletonList(planned), MIDNIGHT);
+		
+		assertTrue(diff.toCancel.isEmpty());
+		assertEquals(1, diff.toArm.size());
+		assertSame(planned, diff.toArm.get(0));
+	}
+	
+	@Test
+	public void encodesAndDecodes() {
+		for (ReminderPlanner.Reminder reminder : ReminderPlanner.plan(timeline(7), MIDNIGHT, ALL_REMINDERS).reminders) {
+			final ReminderPlanner.Reminder decoded = ReminderPlanner.Reminder.decode(reminder.encode());
+			
+			assertTrue(decoded.sameAlarm(reminder));
+			assertEquals(reminder.requestCode, decoded.requestCode);
+			assertEquals(reminder.reminderIndex, decoded.reminderIndex);
+			assertEquals(reminder.time, decoded.time);
+			assertEquals(reminder.eventTime, decoded.eventTime);
+			assertEquals(-1, decoded.eventIndex);
+		}
+	}
+	
+	@Test
+	public void decodesMalformedStringsToNull() {
+		final String[] malformed = {
+				"", "100", "100:1", "100:1:5:7", "a:1:5", "100:b:5", "100:1:c", "100:1:", ":1:5",
+				"100:-1:5", "100:" + REMINDER_COUNT + ":5", "100:1:99999999999999999999",
+		};
+		
+		for (String encoded : malformed) {
+			assertNull("\"" + encoded + "\"", ReminderPlanner.Reminder.decode(encoded));
+		}
+		
+		assertNotNull(ReminderPlanner.Reminder.decode("100:1:5"));
+	}
+	
+	/**
+	 * @param days Number of days from the first one with fajr and magrib; the rest of the seven
+	 *             days have no fajr or magrib.
+	 */
+	private static PrayerTimeline timeline(int days) {
+		final PrayerTimeline timeline = new PrayerTimeline(DAY, MIDNIGHT - 6 * HOUR_MILLIS);
+		final double[] hours = { 4, 12, 15, 18, 19.5 };
+		final double[] noFajrOrMagrib = { Double.NaN, 12, 15, Double.NaN, 19.5 };
+		
+		for (int day = 0; timeline.canAppendDay(); day++) {
+			final long epochDay = timeline.getNextEpochDay();
+			final long[] times = new long[PrayerTimeline.EVENTS_PER_DAY];
+			
+			for (int event = 0; event < times.length; event++) {
+				times[event] = PrayerTimings.toEpochMillis(epochDay, day < days ? hours[event] : noFajrOrMagrib[event]);
+			}
+			
+			timeline.appendDay(times, new int[PrayerTimeline.EVENTS_PER_DAY]);
+		}
+		
+		return timeline;
+	}
+	
+	private static List<ReminderPlanner.Reminder> decode(List<ReminderPlanner.Reminder> reminders) {
+		final List<ReminderPlanner.Reminder> decoded = new ArrayList<>();
+		
+		for (ReminderPlanner.Reminder reminder : reminders) {
+			decoded.add(ReminderPlanner.Reminder.decode(reminder.encode()));
+		}
+		
+		return decoded;
+	}
+}
@@ -0,0 +1,148 @@
+package com.basilalasadi.fasters.math;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Fits timetables of a year within one second and checks them against the batch
+ * <em>PrayerTimings</em>, with isha by angle (Cairo) and by a fixed offset from magrib (Makkah).
+ */
+public class ChebyshevTimetableTest {
+	private static final int DAYS = 365;
+	private static final double FIRST_DAY = AstronomyMath.daysSinceEpoch(2025, 1, 1, 12, 0, 0);
+	private static final double ONE_SECOND = 1 / 3600d;
+	
+	@Test
+	public void angleMethodMatchesPrayerTimings() {
+		final ChebyshevTimetable timetable = ChebyshevTimetable.forErrorBound(
+				TimingsMethod.EgyptianGeneralAuthorityOfSurvey, false, FIRST_DAY, DAYS, 2, 31.24, 30.04, 1);
+		
+		assertTrue(timetable.getMaxErrorSeconds() < 1);
+		checkAgainstPrayerTimings(timetable, TimingsMethod.EgyptianGeneralAuthorityOfSurvey, false, 2, 31.24, 30.04);
+	}
+	
+	@Test
+	public void fixedOffsetMethodMatchesPrayerTimings() {
+		final ChebyshevTimetable timetable = ChebyshevTimetable.forErrorBound(
+				TimingsMethod.UmmAlQuraUniversityMakkah, false, FIRST_DAY, DAYS, 3, 39.83, 21.42, 1);
+		
+		assertTrue(timetable.getMaxErrorSeconds() < 1);
+		checkAgainstPrayerTimings(timetable, TimingsMethod.UmmAlQuraUniversityMakkah, false, 3, 39.83, 21.42);
+		checkAgainstPrayerTimings(timetable, TimingsMethod.UmmAlQuraUniversityMakkah, true, 3, 39.83, 21.42);
+	}
+	
+	@Test
+	public void fixedOffsetIshaFollowsMagrib() {
+		final ChebyshevTimetable timetable = ChebyshevTimetable.forErrorBound(
+				TimingsMethod.UmmAlQuraUniversityMakkah, false, FIRST_DAY, DAYS, 3, 39.83, 21.42, 1);
+		final double[] timings = new double[PrayerTimings.TIMINGS_COUNT];
+		
+		for (int day = 0; day < DAYS; day++) {
+			timetable.getTimings(day, false, timings);
+			assertEquals(1.5, timings[PrayerTimings.ISHA] - timings[PrayerTimings.MAGRIB], 1e-9);
+			
+			timetable.getTimings(day, true, timings);
+			assertEquals(2, timings[PrayerTimings.ISHA] - timings[PrayerTimings.MAGRIB], 1e-9);
+		}
+	}
+	
+	@Test
+	public void blobRoundTrips() throws IOException {
+		for (TimingsMethod method : new TimingsMethod[] {
+				TimingsMethod.EgyptianGeneralAuthorityOfSurvey, TimingsMethod.UmmAlQuraUniversityMakkah }) {
+			
+			final ChebyshevTimetable timetable = ChebyshevTimetable.forErrorBound(method, true, FIRST_DAY, DAYS, 3,
+					39.83, 21.42, 1);
+			final byte[] blob = timetable.toByteArray();
+			final ChebyshevTimetable read = ChebyshevTimetable.fromByteArray(blob);
+			
+			assertEquals(timetable.getFirstDay(), read.getFirstDay(), 0);
+			assertEquals(timetable.getDays(), read.getDays());
+			assertEquals(timetable.getMaxErrorSeconds(), read.getMaxErrorSeconds(), 0);
+			assertArrayEquals(blob, read.toByteArray());
+			
+			final double[] expected = new double[PrayerTimings.TIMINGS_COUNT];
+			final double[] actual = new double[PrayerTimings.TIMINGS_COUNT];
+			
+			for (int day = 0; day < DAYS; day++) {
+				for (boolean isRamadan : new boolean[] { false, true }) {
+					timetable.getTimings(day, isRamadan, expected);
+					read.getTimings(day, isRamadan, actual);
+					assertArrayEquals(method + ", day " + day, expected, actual, 0);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void rejectsInvalidBlobs() {
+		final byte[] blob = ChebyshevTimetable.fit(TimingsMethod.EgyptianGeneralAuthorityOfSurvey, false, FIRST_DAY,
+				DAYS, 2, 31.24, 30.04, 4, 8).toByteArray();
+		
+		final byte[] badMagic = blob.clone();
+		badMagic[0] ^= 1;
+		final byte[] badVersion = blob.clone();
+		badVersion[7] ^= 1;
+		
+		checkRejected(badMagic);
+		checkRejected(badVersion);
+		checkRejected(Arrays.copyOf(blob, blob.length - 1));
+		checkRejected(Arrays.copyOf(blob, 10));
+	}
+	
+	@Test
+	public void highLatitudeErrorIsInfinite() {
+		// At 60° north, the sun does not go 19.5° below the horizon around the June solstice, so fajr
+		// does not occur on some days of the pieces that span it.
+		final ChebyshevTimetable timetable = ChebyshevTimetable.fit(TimingsMethod.EgyptianGeneralAuthorityOfSurvey,
+				false, FIRST_DAY, DAYS, 1, 10.75, 59.91, 4, 8);
+		
+		assertEquals(Double.POSITIVE_INFINITY, timetable.getMaxErrorSeconds(), 0);
+		
+		try {
+			ChebyshevTimetable.forErrorBound(TimingsMethod.EgyptianGeneralAuthorityOfSurvey, false, FIRST_DAY, DAYS,
+					1, 10.75, 59.91, 1);
+			fail("forErrorBound() returned a timetable with infinite error");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+	
+	private static void checkAgainstPrayerTimings(ChebyshevTimetable timetable, TimingsMethod method,
+			boolean isRamadan, int timeZone, double longitude, double latitude) {
+		
+		final double[] expected = new double[PrayerTimings.TIMINGS_COUNT * DAYS];
+		final double[] actual = new double[PrayerTimings.TIMINGS_COUNT];
+		
+		PrayerTimings.getTimings(method, FIRST_DAY, DAYS, timeZone, longitude, latitude, isRamadan, false, null,
+				expected);
+		
+		for (int day = 0; day < DAYS; day++) {
+			timetable.getTimings(day, isRamadan, actual);
+			
+			for (int event = 0; event < PrayerTimings.TIMINGS_COUNT; event++) {
+				assertEquals(method + ", day " + day + ", event " + event, expected[event * DAYS + day],
+						actual[event], ONE_SECOND);
+			}
+		}
+	}
+	
+	private static void checkRejected(byte[] blob) {
+		try {
+			ChebyshevTimetable.fromByteArray(blob);
+			fail("blob of " + blob.length + " bytes read");
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+	}
+}
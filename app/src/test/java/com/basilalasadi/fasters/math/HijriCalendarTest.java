@@ -0,0 +1,82 @@
+package com.basilalasadi.fasters.math;
+
+import org.junit.Test;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.chrono.HijrahDate;
+import org.threeten.bp.temporal.ChronoField;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks every day of the table, and the Ramadan ranges of every year it covers, against
+ * threeten's <em>HijrahChronology</em>.
+ */
+public class HijriCalendarTest {
+	private static final long TABLE_START = HijrahDate.of(HijriCalendar.FIRST_YEAR, 1, 1).toEpochDay();
+	private static final long TABLE_END = HijrahDate.of(HijriCalendar.LAST_YEAR + 1, 1, 1).toEpochDay();
+	
+	@Test
+	public void tableCoversFirstToLastYear() {
+		assertFalse(HijriCalendar.isSupported(TABLE_START - 1));
+		assertTrue(HijriCalendar.isSupported(TABLE_START));
+		assertTrue(HijriCalendar.isSupported(TABLE_END - 1));
+		assertFalse(HijriCalendar.isSupported(TABLE_END));
+	}
+	
+	@Test
+	public void everyDayMatchesHijrahDate() {
+		for (long epochDay = TABLE_START; epochDay < TABLE_END; epochDay++) {
+			final HijrahDate date = HijrahDate.from(LocalDate.ofEpochDay(epochDay));
+			final String message = LocalDate.ofEpochDay(epochDay) + " is " + date;
+			
+			assertEquals(message, date.get(ChronoField.YEAR), HijriCalendar.getYear(epochDay));
+			assertEquals(message, date.get(ChronoField.MONTH_OF_YEAR), HijriCalendar.getMonth(epochDay));
+			assertEquals(message, date.get(ChronoField.DAY_OF_MONTH), HijriCalendar.getDayOfMonth(epochDay));
+			assertEquals(message, date.get(ChronoField.MONTH_OF_YEAR) == HijriCalendar.RAMADAN, HijriCalendar.isRamadan(epochDay));
+		}
+	}
+	
+	@Test
+	public void daysOutsideTableMatchHijrahDate() {
+		final long[] days = { TABLE_START - 400, TABLE_START - 1, TABLE_END, TABLE_END + 400 };
+		
+		for (long epochDay : days) {
+			final HijrahDate date = HijrahDate.from(LocalDate.ofEpochDay(epochDay));
+			
+			assertEquals(date.get(ChronoField.YEAR), HijriCalendar.getYear(epochDay));
+			assertEquals(date.get(ChronoField.MONTH_OF_YEAR), HijriCalendar.getMonth(epochDay));
+			assertEquals(date.get(ChronoField.DAY_OF_MONTH), HijriCalendar.getDayOfMonth(epochDay));
+		}
+	}
+	
+	@Test
+	public void ramadanRangesMatchHijrahDate() {
+		for (int year = 1970; year <= 2100; year++) {
+			for (int offset = -HijriCalendar.MAX_DAY_OFFSET; offset <= HijriCalendar.MAX_DAY_OFFSET; offset++) {
+				checkRamadanRanges(year, offset);
+			}
+		}
+	}
+	
+	private static void checkRamadanRanges(int year, int offset) {
+		final long[] ranges = HijriCalendar.getRamadanRanges(year, offset);
+		final long first = LocalDate.of(year, 1, 1).toEpochDay();
+		final long end = LocalDate.of(year + 1, 1, 1).toEpochDay();
+		
+		for (long epochDay = first; epochDay < end; epochDay++) {
+			boolean inRange = false;
+			
+			for (int i = 0; i < ranges.length; i += 2) {
+				inRange |= epochDay >= ranges[i] && epochDay < ranges[i + 1];
+			}
+			
+			final HijrahDate date = HijrahDate.from(LocalDate.ofEpochDay(epochDay + offset));
+			
+			assertEquals(LocalDate.ofEpochDay(epochDay) + " with offset " + offset,
+					date.get(ChronoField.MONTH_OF_YEAR) == HijriCalendar.RAMADAN, inRange);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.basilalasadi.fasters.math;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Checks tables built for an error bound against <em>AstronomyMath</em> over 2000&ndash;2050, at
+ * points independent of the ones the table measures its errors at.
+ */
+public class SolarEphemerisTest {
+	/**
+	 * Errors of the daily table, as documented on <em>SolarEphemeris</em>.
+	 */
+	private static final double DAILY_EQUATION_OF_TIME_ERROR = 0.00122;
+	private static final double DAILY_DECLINATION_ERROR = 3.82e-8;
+	
+	/**
+	 * Largest distance in days between two checked points.
+	 */
+	private static final double MAX_CHECK_STEP = 0.05;
+	
+	@Test
+	public void tablesForBoundsAreWithinBounds() {
+		final double[][] bounds = {
+				{ 0.05, 2e-4 },
+				{ 0.006, 2e-5 },
+				{ 0.002, 3e-6 },
+				{ 0.0013, 3e-7 },
+				{ 0.0013, 4e-8 },
+				{ 0.0013, 2e-8 },
+				{ 1, 1.42e-4 },
+				{ 0.0017, 1 },
+		};
+		
+		for (double[] bound : bounds) {
+			final SolarEphemeris ephemeris = SolarEphemeris.forErrorBound(bound[0], bound[1]);
+			
+			checkErrors(ephemeris, bound[0], bound[1]);
+		}
+	}
+	
+	@Test
+	public void largerBoundsGiveLargerSteps() {
+		assertEquals(16, SolarEphemeris.forErrorBound(0.05, 2e-4).getStep(), 0);
+		assertEquals(8, SolarEphemeris.forErrorBound(0.006, 2e-5).getStep(), 0);
+		assertEquals(4, SolarEphemeris.forErrorBound(0.002, 3e-6).getStep(), 0);
+		assertEquals(2, SolarEphemeris.forErrorBound(0.0013, 3e-7).getStep(), 0);
+		assertEquals(1, SolarEphemeris.forErrorBound(0.0013, 4.1e-8).getStep(), 0);
+		assertEquals(1 / 4d, SolarEphemeris.forErrorBound(0.0013, 2e-8).getStep(), 0);
+	}
+	
+	@Test
+	public void dailyTableIsWithinDocumentedErrors() {
+		final SolarEphemeris ephemeris = SolarEphemeris.getDefault();
+		
+		assertEquals(1, ephemeris.getStep(), 0);
+		assertTrue(ephemeris.getMaxEquationOfTimeError() <= DAILY_EQUATION_OF_TIME_ERROR);
+		assertTrue(ephemeris.getMaxDeclinationError() <= DAILY_DECLINATION_ERROR);
+		
+		checkErrors(ephemeris, DAILY_EQUATION_OF_TIME_ERROR, DAILY_DECLINATION_ERROR);
+	}
+	
+	@Test
+	public void boundsBelowEquationOfTimeJumpsAreRejected() {
+		assertRejected(0.001, 1);
+		assertRejected(1, 1e-9);
+	}
+	
+	@Test
+	public void valuesOutsideTableAreCalculated() {
+		final SolarEphemeris ephemeris = SolarEphemeris.forErrorBound(0.05, 2e-4);
+		final double[] days = { SolarEphemeris.FIRST_DAY - 100.3, SolarEphemeris.LAST_DAY, SolarEphemeris.LAST_DAY + 36.7 };
+		
+		for (double t : days) {
+			assertEquals(AstronomyMath.equationOfTime(t), ephemeris.equationOfTime(t), 0);
+			assertEquals(AstronomyMath.solarDeclination(t), ephemeris.solarDeclination(t), 0);
+		}
+	}
+	
+	/**
+	 * Compares the table with <em>AstronomyMath</em> at points spaced by an irrational fraction of
+	 * its step, and on either side of every equation of time jump.
+	 */
+	private static void checkErrors(SolarEphemeris ephemeris, double maxEquationOfTimeError, double maxDeclinationError) {
+		final double checkStep = Math.min(ephemeris.getStep() / Math.PI / 7, MAX_CHECK_STEP);
+		
+		for (double t = SolarEphemeris.FIRST_DAY; t < SolarEphemeris.LAST_DAY; t += checkStep) {
+			checkErrors(ephemeris, t, maxEquationOfTimeError, maxDeclinationError);
+		}
+		
+		for (double t = 365.25; t < SolarEphemeris.LAST_DAY; t += 365.25) {
+			checkErrors(ephemeris, Math.nextDown(t), maxEquationOfTimeError, maxDeclinationError);
+			checkErrors(ephemeris, t, maxEquationOfTimeError, maxDeclinationError);
+		}
+	}
+	
+	private static void checkErrors(SolarEphemeris ephemeris, double t, double maxEquationOfTimeError, double maxDeclinationError) {
+		final double eotError = Math.abs(ephemeris.equationOfTime(t) - AstronomyMath.equationOfTime(t));
+		final double declinationError = Math.abs(ephemeris.solarDeclination(t) - AstronomyMath.solarDeclination(t));
+		
+		if (eotError > maxEquationOfTimeError) {
+			fail("step " + ephemeris.getStep() + ", day " + t + ": equation of time error " + eotError + " > " + maxEquationOfTimeError);
+		}
+		if (declinationError > maxDeclinationError) {
+			fail("step " + ephemeris.getStep() + ", day " + t + ": declination error " + declinationError + " > " + maxDeclinationError);
+		}
+	}
+	
+	private static void assertRejected(double maxEquationOfTimeError, double maxDeclinationError) {
+		try {
+			SolarEphemeris.forErrorBound(maxEquationOfTimeError, maxDeclinationError);
+			fail("bounds " + maxEquationOfTimeError + ", " + maxDeclinationError + " accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+}
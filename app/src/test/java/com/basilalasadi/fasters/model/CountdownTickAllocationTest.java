@@ -0,0 +1,100 @@
+package com.basilalasadi.fasters.model;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Counts the bytes the countdown tick allocates on the calling thread, which must be none.
+ */
+public class CountdownTickAllocationTest {
+	private static final long START = 1742180400; // 2025-03-17 03:00 UTC
+	private static final int ZONE_OFFSET = 2 * 3600;
+	private static final int TICKS = 100000;
+	
+	private com.sun.management.ThreadMXBean threadBean;
+	
+	@Before
+	public void setUp() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		
+		threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+	
+	@Test
+	public void tickerTickDoesNotAllocate() {
+		final CountdownTicker ticker = new CountdownTicker(180);
+		final long end = START + 16 * 3600;
+		
+		// Runs each path once before counting.
+		tickTicker(ticker, end, START, 16 * 3600);
+		
+		final long before = allocatedBytes();
+		tickTicker(ticker, end, START, TICKS);
+		final long allocated = allocatedBytes() - before;
+		
+		assertEquals("bytes allocated by " + TICKS + " ticks", 0, allocated);
+	}
+	
+	@Test
+	public void viewModelTickDoesNotAllocate() {
+		final long epochDay = START / 86400;
+		final PrayerTimeline timeline = new PrayerTimeline(epochDay, (epochDay * 86400 - 5 * 3600) * 1000);
+		
+		while (timeline.canAppendDay()) {
+			final long day = timeline.getNextEpochDay() * 86400 * 1000;
+			final long hour = 3600 * 1000;
+			
+			timeline.appendDay(new long[]{day + 2 * hour, day + 10 * hour, day + 13 * hour, day + 16 * hour, day + 17 * hour},
+					new int[]{ZONE_OFFSET, ZONE_OFFSET, ZONE_OFFSET, ZONE_OFFSET, ZONE_OFFSET});
+		}
+		
+		final CountdownViewModel viewModel = new CountdownViewModel(CountdownViewModel.FLAG_DATA_AVAILABLE, "",
+				new String[]{"fajr", "duhr", "asr", "magrib", "isha"}, timeline, TimeZone.getTimeZone("Africa/Cairo"));
+		final CountdownTicker ticker = new CountdownTicker(180);
+		final long startMillis = START * 1000;
+		
+		// Runs each path once before counting, including the lazy setup of the zone and the
+		// compilation of the loop.
+		for (int i = 0; i < 3; i++) {
+			tickViewModel(viewModel, ticker, startMillis + i * 1000L * TICKS, TICKS);
+		}
+		
+		final long before = allocatedBytes();
+		tickViewModel(viewModel, ticker, startMillis + 3 * 1000L * TICKS, TICKS);
+		final long allocated = allocatedBytes() - before;
+		
+		assertEquals("bytes allocated by " + TICKS + " ticks", 0, allocated);
+	}
+	
+	private static void tickTicker(CountdownTicker ticker, long end, long from, int count) {
+		for (int i = 0; i < count; i++) {
+			ticker.tick(from + i % (end - START), START, end, START + 5 * 3600, ZONE_OFFSET);
+		}
+	}
+	
+	/**
+	 * Ticks once a second, advancing the timeline as the activity does.
+	 */
+	private static void tickViewModel(CountdownViewModel viewModel, CountdownTicker ticker, long from, int count) {
+		for (int i = 0; i < count; i++) {
+			final long now = from + i * 1000L;
+			
+			viewModel.advance(now);
+			viewModel.tick(now, ticker);
+		}
+	}
+	
+	private long allocatedBytes() {
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,207 @@
+package com.basilalasadi.fasters.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Stress test of <em>WeakListenerRegistry</em> under concurrent add, remove, dispatch and garbage
+ * collection, for a few seconds.
+ *
+ * Mutator threads each own some listeners, which they add and remove at random, and after each
+ * call check that a new iteration does or does not yield the listener. Dispatcher threads iterate
+ * all the time, checking no null is yielded, while another thread adds listeners it drops right
+ * away. At the end, the dropped listeners must be purged once collected, and removing the owned
+ * ones must leave the registry empty.
+ */
+public class WeakListenerRegistryStressTest {
+	private static final long DURATION_MILLIS = 2000;
+	private static final int MUTATORS = 4;
+	private static final int DISPATCHERS = 4;
+	private static final int LISTENERS_PER_MUTATOR = 64;
+	
+	private final WeakListenerRegistry<Listener> registry = new WeakListenerRegistry<>();
+	private final AtomicBoolean running = new AtomicBoolean(true);
+	private final AtomicReference<String> failure = new AtomicReference<>();
+	
+	@Test(timeout = DURATION_MILLIS + 30000)
+	public void concurrentChangesAndCollection() throws InterruptedException {
+		final List<Thread> threads = new ArrayList<>();
+		final List<List<Listener>> owned = new ArrayList<>();
+		final CountDownLatch start = new CountDownLatch(1);
+		
+		for (int i = 0; i < MUTATORS; i++) {
+			final List<Listener> listeners = new ArrayList<>();
+			
+			for (int j = 0; j < LISTENERS_PER_MUTATOR; j++) {
+				listeners.add(new Listener());
+			}
+			
+			final Random random = new Random(i);
+			owned.add(listeners);
+			threads.add(new Thread(() -> mutate(start, listeners, random), "mutator-" + i));
+		}
+		
+		for (int i = 0; i < DISPATCHERS; i++) {
+			threads.add(new Thread(() -> dispatch(start), "dispatcher-" + i));
+		}
+		
+		threads.add(new Thread(() -> drop(start), "dropper"));
+		
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		
+		start.countDown();
+		Thread.sleep(DURATION_MILLIS);
+		running.set(false);
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		assertNull(failure.get());
+		
+		checkPurged();
+		checkRemoved(owned);
+	}
+	
+	private void mutate(CountDownLatch start, List<Listener> listeners, Random random) {
+		await(start);
+		
+		final boolean[] added = new boolean[listeners.size()];
+		
+		while (running.get() && failure.get() == null) {
+			final int i = random.nextInt(listeners.size());
+			final Listener listener = listeners.get(i);
+			
+			if (added[i]) {
+				check(registry.remove(listener), "remove() of a registered listener returned false");
+				check(!yields(listener), "listener yielded after remove()");
+			}
+			else {
+				check(registry.add(listener), "add() of a new listener returned false");
+				check(!registry.add(listener), "add() of a registered listener returned true");
+				check(yields(listener), "listener not yielded after add()");
+			}
+			
+			added[i] = !added[i];
+		}
+		
+		// Leaves every owned listener registered, for the final checks.
+		for (int i = 0; i < listeners.size(); i++) {
+			if (!added[i]) {
+				registry.add(listeners.get(i));
+			}
+		}
+	}
+	
+	private void dispatch(CountDownLatch start) {
+		await(start);
+		
+		while (running.get() && failure.get() == null) {
+			for (Listener listener : registry) {
+				if (listener == null) {
+					fail("null listener yielded");
+					return;
+				}
+				
+				listener.onEvent();
+			}
+		}
+	}
+	
+	private void drop(CountDownLatch start) {
+		await(start);
+		
+		for (long dropped = 1; running.get() && failure.get() == null; dropped++) {
+			registry.add(new Listener());
+			
+			if (dropped % 4096 == 0) {
+				System.gc();
+			}
+		}
+	}
+	
+	/**
+	 * Collects the dropped listeners, which must leave only the owned ones.
+	 */
+	private void checkPurged() throws InterruptedException {
+		final int expected = MUTATORS * LISTENERS_PER_MUTATOR;
+		
+		for (int i = 0; i < 50 && registry.size() != expected; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		
+		assertEquals("size after collection", expected, registry.size());
+		
+		int count = 0;
+		
+		for (Listener ignored : registry) {
+			count++;
+		}
+		
+		assertEquals("listeners yielded after collection", expected, count);
+	}
+	
+	private void checkRemoved(List<List<Listener>> owned) {
+		for (List<Listener> listeners : owned) {
+			for (Listener listener : listeners) {
+				assertTrue("owned listener missing", registry.contains(listener));
+				assertTrue("remove() of an owned listener returned false", registry.remove(listener));
+			}
+		}
+		
+		assertTrue("size " + registry.size() + " after removing all listeners", registry.isEmpty());
+		assertFalse("listener yielded after removing all listeners", registry.iterator().hasNext());
+	}
+	
+	private boolean yields(Listener listener) {
+		for (Listener other : registry) {
+			if (other == listener) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void check(boolean condition, String message) {
+		if (!condition) {
+			fail(message);
+		}
+	}
+	
+	private void fail(String message) {
+		failure.compareAndSet(null, Thread.currentThread().getName() + ": " + message);
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
+	private static final class Listener {
+		private volatile int events;
+		
+		void onEvent() {
+			events++;
+		}
+	}
+}
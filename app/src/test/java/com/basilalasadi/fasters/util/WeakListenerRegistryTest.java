@@ -0,0 +1,172 @@
+package com.basilalasadi.fasters.util;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class WeakListenerRegistryTest {
+	private final WeakListenerRegistry<Object> registry = new WeakListenerRegistry<>();
+	
+	@Test
+	public void addsOnce() {
+		final Object listener = new Object();
+		
+		assertTrue(registry.add(listener));
+		assertFalse(registry.add(listener));
+		assertTrue(registry.contains(listener));
+		assertEquals(1, registry.size());
+		assertEquals(1, collect().size());
+	}
+	
+	@Test
+	public void comparesByIdentity() {
+		final String a = new String("listener");
+		final String b = new String("listener");
+		
+		assertTrue(registry.add(a));
+		assertTrue(registry.add(b));
+		assertEquals(2, registry.size());
+		
+		assertTrue(registry.remove(a));
+		assertFalse(registry.contains(a));
+		assertTrue(registry.contains(b));
+		assertSame(b, collect().get(0));
+	}
+	
+	@Test
+	public void removes() {
+		final Object listener = new Object();
+		
+		assertFalse(registry.remove(listener));
+		registry.add(listener);
+		
+		assertTrue(registry.remove(listener));
+		assertFalse(registry.remove(listener));
+		assertFalse(registry.contains(listener));
+		assertTrue(registry.isEmpty());
+		assertFalse(registry.iterator().hasNext());
+	}
+	
+	@Test
+	public void ignoresNullLookups() {
+		assertFalse(registry.contains(null));
+		assertFalse(registry.remove(null));
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void rejectsNullListener() {
+		registry.add(null);
+	}
+	
+	@Test
+	public void clears() {
+		final Object a = new Object();
+		final Object b = new Object();
+		registry.add(a);
+		registry.add(b);
+		
+		registry.clear();
+		
+		assertTrue(registry.isEmpty());
+		assertFalse(registry.contains(a));
+		assertFalse(registry.iterator().hasNext());
+	}
+	
+	@Test
+	public void iteratesSnapshot() {
+		final Object a = new Object();
+		final Object b = new Object();
+		final Object c = new Object();
+		registry.add(a);
+		registry.add(b);
+		
+		final Iterator<Object> iterator = registry.iterator();
+		
+		// Changes while iterating show from the next iteration only.
+		registry.remove(a);
+		registry.add(c);
+		
+		final List<Object> yielded = new ArrayList<>();
+		
+		while (iterator.hasNext()) {
+			yielded.add(iterator.next());
+		}
+		
+		assertEquals(2, yielded.size());
+		assertTrue(yielded.contains(a));
+		assertTrue(yielded.contains(b));
+		
+		final List<Object> next = collect();
+		assertEquals(2, next.size());
+		assertTrue(next.contains(b));
+		assertTrue(next.contains(c));
+	}
+	
+	@Test(expected = NoSuchElementException.class)
+	public void iteratorEndThrows() {
+		registry.iterator().next();
+	}
+	
+	@Test
+	public void purgesCollectedListeners() throws InterruptedException {
+		final Object kept = new Object();
+		registry.add(kept);
+		
+		for (int i = 0; i < 100; i++) {
+			registry.add(new Object());
+		}
+		
+		for (int i = 0; i < 50 && registry.size() != 1; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		
+		assertEquals(1, registry.size());
+		assertTrue(registry.contains(kept));
+		assertSame(kept, collect().get(0));
+	}
+	
+	@Test
+	public void iterationSkipsCollectedListeners() throws InterruptedException {
+		final Object kept = new Object();
+		Object dropped = new Object();
+		final WeakReference<Object> droppedRef = new WeakReference<>(dropped);
+		
+		registry.add(kept);
+		registry.add(dropped);
+		dropped = null;
+		
+		final Iterator<Object> iterator = registry.iterator();
+		
+		for (int i = 0; i < 50 && droppedRef.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		
+		assertNull(droppedRef.get());
+		assertTrue(iterator.hasNext());
+		assertSame(kept, iterator.next());
+		assertFalse(iterator.hasNext());
+	}
+	
+	private List<Object> collect() {
+		final List<Object> listeners = new ArrayList<>();
+		
+		for (Object listener : registry) {
+			listeners.add(listener);
+		}
+		
+		return listeners;
+	}
+}
@@ -0,0 +1,78 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.math.AstronomyMath;
+import com.basilalasadi.fasters.math.SolarEphemeris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of the <em>AstronomyMath</em> functions, over every day of the selected year.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AstronomyMathBenchmark {
+	/**
+	 * Equator, Makkah, London, Reykjavik and Tromsø. The last two have no fajr and isha in summer.
+	 */
+	@Param({"0", "21.42", "51.51", "64.15", "69.65"})
+	public double latitude;
+	
+	@Param({"2000", "2025", "2050"})
+	public int year;
+	
+	private final Days days = new Days();
+	private SolarEphemeris ephemeris;
+	
+	@Setup
+	public void setup() {
+		days.setup(year);
+		ephemeris = SolarEphemeris.getDefault();
+	}
+	
+	@Benchmark
+	public double equationOfTime() {
+		return AstronomyMath.equationOfTime(days.next());
+	}
+	
+	@Benchmark
+	public double solarDeclination() {
+		return AstronomyMath.solarDeclination(days.next());
+	}
+	
+	@Benchmark
+	public double ephemerisEquationOfTime() {
+		return ephemeris.equationOfTime(days.next());
+	}
+	
+	@Benchmark
+	public double ephemerisSolarDeclination() {
+		return ephemeris.solarDeclination(days.next());
+	}
+	
+	@Benchmark
+	public double noonOffsetFromSunAngle() {
+		return AstronomyMath.noonOffsetFromSunAngle(18, days.next(), latitude);
+	}
+	
+	@Benchmark
+	public double noonOffsetFromShadowLength() {
+		return AstronomyMath.noonOffsetFromShadowLength(1, days.next(), latitude);
+	}
+}
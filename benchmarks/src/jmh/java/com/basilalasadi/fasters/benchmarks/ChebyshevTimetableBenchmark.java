@@ -0,0 +1,83 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.math.ChebyshevTimetable;
+import com.basilalasadi.fasters.math.PrayerTimings;
+import com.basilalasadi.fasters.math.TimingsMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of evaluating a day of a <em>ChebyshevTimetable</em> fitted within one second,
+ * against calculating it with <em>PrayerTimings</em>. The size of the blob and its error are
+ * printed on setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChebyshevTimetableBenchmark {
+	/**
+	 * Cairo, whose method has an isha angle, and Makkah, whose method has a fixed isha offset.
+	 */
+	@Param({"Cairo", "Makkah"})
+	public String city;
+	
+	private TimingsMethod method;
+	private int timeZone;
+	private double longitude;
+	private double latitude;
+	private final Days days = new Days();
+	private final double[] timings = new double[PrayerTimings.TIMINGS_COUNT];
+	private ChebyshevTimetable timetable;
+	private int day = 0;
+	
+	@Setup
+	public void setup() {
+		if (city.equals("Makkah")) {
+			method = TimingsMethod.UmmAlQuraUniversityMakkah;
+			timeZone = 3;
+			longitude = 39.83;
+			latitude = 21.42;
+		}
+		else {
+			method = TimingsMethod.EgyptianGeneralAuthorityOfSurvey;
+			timeZone = 2;
+			longitude = 31.24;
+			latitude = 30.04;
+		}
+		
+		days.setup(2025);
+		timetable = ChebyshevTimetable.forErrorBound(method, false, days.first(), Days.DAYS_IN_YEAR, timeZone,
+				longitude, latitude, 1);
+		
+		System.out.println("\nblob: " + timetable.toByteArray().length + " bytes, max error: "
+				+ timetable.getMaxErrorSeconds() + " s");
+	}
+	
+	@Benchmark
+	public double[] chebyshev() {
+		timetable.getTimings(day, false, timings);
+		day = day == Days.DAYS_IN_YEAR - 1 ? 0 : day + 1;
+		return timings;
+	}
+	
+	@Benchmark
+	public double[] analytic() {
+		return PrayerTimings.getTimings(method, days.next(), timeZone, longitude, latitude, false, false);
+	}
+}
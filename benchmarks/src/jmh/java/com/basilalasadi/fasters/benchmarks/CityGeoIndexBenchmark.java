@@ -0,0 +1,79 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.database.CityGeoIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of nearest city lookups, over as many random cities as the worldcities database
+ * has, uniformly spread over the sphere.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CityGeoIndexBenchmark {
+	private static final int CITIES = 26569;
+	private static final int QUERIES = 1024;
+	
+	@Param({"1", "10"})
+	public int k;
+	
+	private CityGeoIndex index;
+	private final double[] queryLongitude = new double[QUERIES];
+	private final double[] queryLatitude = new double[QUERIES];
+	private int[] indices;
+	private double[] distances;
+	private int query = 0;
+	
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		double[] longitude = new double[CITIES];
+		double[] latitude = new double[CITIES];
+		
+		for (int i = 0; i < CITIES; i++) {
+			longitude[i] = randomLongitude(random);
+			latitude[i] = randomLatitude(random);
+		}
+		for (int i = 0; i < QUERIES; i++) {
+			queryLongitude[i] = randomLongitude(random);
+			queryLatitude[i] = randomLatitude(random);
+		}
+		
+		index = new CityGeoIndex(longitude, latitude);
+		indices = new int[k];
+		distances = new double[k];
+	}
+	
+	@Benchmark
+	public int findNearest() {
+		query = (query + 1) % QUERIES;
+		index.findNearest(queryLongitude[query], queryLatitude[query], k, indices, distances);
+		return indices[0];
+	}
+	
+	private static double randomLongitude(Random random) {
+		return random.nextDouble() * 360 - 180;
+	}
+	
+	private static double randomLatitude(Random random) {
+		return Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+	}
+}
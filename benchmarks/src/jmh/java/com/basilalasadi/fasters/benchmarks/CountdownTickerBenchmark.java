@@ -0,0 +1,52 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.model.CountdownTicker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmark of the countdown tick, over a 16 hour countdown. The tick must not allocate:
+ * <em>gc.alloc.rate.norm</em> reported by the gc profiler should be 0 B/op, and
+ * <em>CountdownTickAllocationTest</em> asserts it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountdownTickerBenchmark {
+	private static final long START = 1742180400; // 2025-03-17 03:00 UTC
+	private static final long END = START + 16 * 3600;
+	private static final int ZONE_OFFSET = 3 * 3600;
+	
+	private final CountdownTicker ticker = new CountdownTicker(180);
+	private long now;
+	
+	@Setup
+	public void setup() {
+		now = START;
+	}
+	
+	@Benchmark
+	public int tick() {
+		if (++now == END) {
+			now = START;
+		}
+		
+		ticker.tick(now, START, END, START + 5 * 3600, ZONE_OFFSET);
+		return ticker.progress;
+	}
+}
@@ -0,0 +1,35 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.math.AstronomyMath;
+
+
+/**
+ * Cycles through the days (at 12:00 UTC) of a year, so that benchmarks don't run on a single
+ * constant input.
+ */
+final class Days {
+	static final int DAYS_IN_YEAR = 365;
+	
+	private final double[] values = new double[DAYS_IN_YEAR];
+	private int index = 0;
+	
+	void setup(int year) {
+		final double first = AstronomyMath.daysSinceEpoch(year, 1, 1, 12, 0, 0);
+		
+		for (int i = 0; i < DAYS_IN_YEAR; i++) {
+			values[i] = first + i;
+		}
+		
+		index = 0;
+	}
+	
+	double first() {
+		return values[0];
+	}
+	
+	double next() {
+		final double value = values[index];
+		index = index == DAYS_IN_YEAR - 1 ? 0 : index + 1;
+		return value;
+	}
+}
@@ -0,0 +1,49 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.math.HijriCalendar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.chrono.HijrahDate;
+import org.threeten.bp.temporal.ChronoField;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of deciding whether a day is in Ramadan with <em>HijriCalendar</em>, against
+ * <em>HijrahDate</em>. The table is checked against threeten's <em>HijrahChronology</em> by
+ * <em>HijriCalendarTest</em>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HijriCalendarBenchmark {
+	private static final long FIRST_DAY = LocalDate.of(2000, 1, 1).toEpochDay();
+	private static final int DAYS = 365 * 50;
+	
+	private int day = 0;
+	
+	@Benchmark
+	public boolean table() {
+		day = day == DAYS - 1 ? 0 : day + 1;
+		return HijriCalendar.isRamadan(FIRST_DAY + day);
+	}
+	
+	@Benchmark
+	public boolean hijrahDate() {
+		day = day == DAYS - 1 ? 0 : day + 1;
+		return HijrahDate.from(LocalDate.ofEpochDay(FIRST_DAY + day)).get(ChronoField.MONTH_OF_YEAR) == HijriCalendar.RAMADAN;
+	}
+}
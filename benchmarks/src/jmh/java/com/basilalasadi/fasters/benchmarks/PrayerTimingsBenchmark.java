@@ -0,0 +1,88 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.math.PrayerTimings;
+import com.basilalasadi.fasters.math.SolarEphemeris;
+import com.basilalasadi.fasters.math.TimingsMethod;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of the <em>PrayerTimings.getTimings</em> overloads, over every day of the selected
+ * year. <em>yearBatch</em> reports the cost per day of computing a whole year in one call, and
+ * <em>yearBatchEphemeris</em> the same with the sun's position looked up in a <em>SolarEphemeris</em>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrayerTimingsBenchmark {
+	private static final double LONGITUDE = 31.24;
+	private static final int TIME_ZONE = 2;
+	
+	/**
+	 * Equator, Makkah, London, Reykjavik and Tromsø. The last two have no fajr and isha in summer.
+	 */
+	@Param({"0", "21.42", "51.51", "64.15", "69.65"})
+	public double latitude;
+	
+	@Param({"2000", "2025", "2050"})
+	public int year;
+	
+	private final Days days = new Days();
+	private final double[] yearTimings = new double[PrayerTimings.TIMINGS_COUNT * Days.DAYS_IN_YEAR];
+	private SolarEphemeris ephemeris;
+	
+	@Setup
+	public void setup() {
+		days.setup(year);
+		ephemeris = SolarEphemeris.getDefault();
+	}
+	
+	@Benchmark
+	public double[] ishaAngle() {
+		return PrayerTimings.getTimings(18, false, 17.0, days.next(), TIME_ZONE, LONGITUDE, latitude);
+	}
+	
+	@Benchmark
+	public double[] ishaFixedOffset() {
+		return PrayerTimings.getTimings(18.5, false, 90, days.next(), TIME_ZONE, LONGITUDE, latitude);
+	}
+	
+	@Benchmark
+	public double[] method() {
+		return PrayerTimings.getTimings(TimingsMethod.EgyptianGeneralAuthorityOfSurvey, days.next(), TIME_ZONE,
+				LONGITUDE, latitude, false, false);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(Days.DAYS_IN_YEAR)
+	public double[] yearBatch() {
+		PrayerTimings.getTimings(TimingsMethod.EgyptianGeneralAuthorityOfSurvey, days.first(), Days.DAYS_IN_YEAR,
+				TIME_ZONE, LONGITUDE, latitude, false, false, null, yearTimings);
+		return yearTimings;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(Days.DAYS_IN_YEAR)
+	public double[] yearBatchEphemeris() {
+		PrayerTimings.getTimings(TimingsMethod.EgyptianGeneralAuthorityOfSurvey, days.first(), Days.DAYS_IN_YEAR,
+				TIME_ZONE, LONGITUDE, latitude, false, false, ephemeris, yearTimings);
+		return yearTimings;
+	}
+}
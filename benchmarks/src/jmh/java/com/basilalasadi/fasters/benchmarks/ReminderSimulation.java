@@ -0,0 +1,342 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.logic.ReminderPlanner;
+import com.basilalasadi.fasters.math.AstronomyMath;
+import com.basilalasadi.fasters.math.HijriCalendar;
+import com.basilalasadi.fasters.math.PrayerTimings;
+import com.basilalasadi.fasters.math.TimingsMethod;
+import com.basilalasadi.fasters.model.PrayerTimeline;
+import com.basilalasadi.fasters.util.ManualClock;
+import com.basilalasadi.fasters.util.TimeProvider;
+
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.zone.ZoneRules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.basilalasadi.fasters.logic.ReminderConstants.*;
+
+
+/**
+ * Headless simulation of a year of countdown ticks, timeline refills and reminder scheduling for a
+ * set of cities, on a <em>ManualClock</em> read through <em>TimeProvider</em>. Run with:
+ *     ./gradlew :benchmarks:simulate
+ * Optional arguments: year and tick step in seconds.
+ *
+ * The reminders job runs exactly at the time <em>ReminderPlanner</em> asks for, and arms the diff of
+ * its plan against the armed alarms, as the service does. The alarm manager is modelled as one slot
+ * per request code, so arming over an alarm that has not fired replaces it. Delivered reminders are
+ * checked against the four expected reminders of each fajr and magrib; missed and duplicated ones
+ * are reported, along with the alarm manager calls. A last run with every reminder disabled checks
+ * that the job runs once and does not reschedule itself.
+ */
+public final class ReminderSimulation {
+	private static final String[] REMINDER_NAMES = {"prefast meal", "water", "prepare breakfast", "breakfast close"};
+	
+	private static final City[] CITIES = {
+			new City("Cairo", 31.2357, 30.0444, "Africa/Cairo", TimingsMethod.EgyptianGeneralAuthorityOfSurvey),
+			new City("Makkah", 39.8262, 21.4225, "Asia/Riyadh", TimingsMethod.UmmAlQuraUniversityMakkah),
+			new City("London", -0.1276, 51.5072, "Europe/London", TimingsMethod.MuslimWorldLeague),
+			new City("New York", -74.006, 40.7128, "America/New_York", TimingsMethod.IslamicSocietyOfNorthAmerica),
+			new City("Jakarta", 106.8456, -6.2088, "Asia/Jakarta", TimingsMethod.MuslimWorldLeague),
+			new City("Kolkata", 88.3639, 22.5726, "Asia/Kolkata", TimingsMethod.MuslimWorldLeague),
+	};
+	
+	private final City city;
+	private final ZoneRules zoneRules;
+	private final ManualClock clock;
+	private final int year;
+	private final long start;
+	private final long end;
+	private final long stepMillis;
+	private final int enabledReminders;
+	
+	private PrayerTimeline timeline;
+	
+	private long ticks = 0;
+	private long advances = 0;
+	private long refills = 0;
+	private long reloads = 0;
+	private long jobRuns = 0;
+	private long replaced = 0;
+	private long alarmCalls = 0;
+	
+	/**
+	 * Armed alarms, keyed by request code, and the reminders the service recorded as armed.
+	 */
+	private final Map<Integer, ReminderPlanner.Reminder> alarms = new HashMap<>();
+	private List<ReminderPlanner.Reminder> armed = new ArrayList<>();
+	private long nextAlarmTime = Long.MAX_VALUE;
+	
+	/**
+	 * Delivered reminders, keyed by event time and reminder index, with their counts.
+	 */
+	private final Map<Long, Integer> delivered = new HashMap<>();
+	
+	private ReminderSimulation(City city, int year, long stepMillis, int enabledReminders) {
+		this.city = city;
+		this.zoneRules = city.zone.getRules();
+		this.year = year;
+		this.start = LocalDate.of(year, 1, 1).atStartOfDay(city.zone).toInstant().toEpochMilli();
+		this.clock = new ManualClock(start, city.zone);
+		this.end = LocalDate.of(year + 1, 1, 1).atStartOfDay(city.zone).toInstant().toEpochMilli();
+		this.stepMillis = stepMillis;
+		this.enabledReminders = enabledReminders;
+	}
+	
+	public static void main(String[] args) {
+		final int year = args.length > 0 ? Integer.parseInt(args[0]) : 2025;
+		final long stepSeconds = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		
+		System.out.printf("%-9s %11s %9s %12s %8s %9s %6s %7s %10s %8s %7s %7s%n", "city", "ticks", "wall ms",
+				"ticks/s", "refills", "reloads", "jobs", "alarms", "delivered", "missed", "dupes", "replaced");
+		
+		long totalTicks = 0;
+		long totalNanos = 0;
+		
+		for (City city : CITIES) {
+			final ReminderSimulation simulation = new ReminderSimulation(city, year, stepSeconds * 1000, (1 << REMINDER_COUNT) - 1);
+			
+			final long start = System.nanoTime();
+			simulation.run();
+			final long nanos = System.nanoTime() - start;
+			
+			totalTicks += simulation.ticks;
+			totalNanos += nanos;
+			
+			simulation.report(nanos);
+		}
+		
+		System.out.printf("total: %d ticks in %d ms, %.0f ticks/s%n", totalTicks, totalNanos / 1000000,
+				totalTicks * 1e9 / totalNanos);
+		
+		// The default install: notifications off. The job must run once and not reschedule itself.
+		final ReminderSimulation disabled = new ReminderSimulation(CITIES[0], year, stepSeconds * 1000, 0);
+		disabled.run();
+		
+		System.out.printf("reminders off (%s): %d jobs, %d alarms, %d delivered%s%n", CITIES[0].name,
+				disabled.jobRuns, disabled.alarmCalls, disabled.delivered.size(),
+				disabled.jobRuns == 1 && disabled.alarmCalls == 0 && disabled.delivered.isEmpty() ? "" : "  FAILED");
+		
+		TimeProvider.reset();
+	}
+	
+	private void run() {
+		TimeProvider.setClock(clock);
+		load();
+		
+		long nextJob = TimeProvider.currentTimeMillis();
+		
+		for (long now = TimeProvider.currentTimeMillis(); now < end; now = TimeProvider.currentTimeMillis()) {
+			if (now >= nextAlarmTime) {
+				deliver(now);
+			}
+			
+			if (now >= nextJob) {
+				nextJob = runJob(now);
+			}
+			
+			// What the tick timer of the activity does.
+			ticks++;
+			
+			if (timeline.advance(now)) {
+				advances++;
+			}
+			
+			if (timeline.isEmpty()) {
+				reloads++;
+				load();
+			}
+			else if (timeline.requestRefill()) {
+				refills++;
+				fill();
+			}
+			
+			clock.step(stepMillis);
+		}
+	}
+	
+	/**
+	 * What <em>CountdownBloc.computeViewModel()</em> does, without the settings and the cache.
+	 */
+	private void load() {
+		final long now = TimeProvider.currentTimeMillis();
+		final long epochDay = TimeProvider.now().toLocalDate().toEpochDay();
+		
+		timeline = new PrayerTimeline(epochDay, PrayerTimings.toEpochMillis(epochDay - 1, getDay(epochDay)[6]));
+		fill();
+		timeline.advance(now);
+	}
+	
+	private void fill() {
+		while (timeline.canAppendDay()) {
+			timeline.appendDay(getDay(timeline.getNextEpochDay()), zoneRules);
+		}
+	}
+	
+	/**
+	 * What <em>RemindersService</em> does when its job runs.
+	 * @return time of the next run.
+	 */
+	private long runJob(long now) {
+		jobRuns++;
+		timeline.advance(now);
+		
+		final ReminderPlanner.Plan plan = ReminderPlanner.plan(timeline, now, enabledReminders);
+		final ReminderPlanner.Diff diff = ReminderPlanner.diff(armed, plan.reminders, now);
+		
+		for (ReminderPlanner.Reminder reminder : diff.toCancel) {
+			alarmCalls++;
+			alarms.remove(reminder.requestCode);
+		}
+		
+		for (ReminderPlanner.Reminder reminder : diff.toArm) {
+			alarmCalls++;
+			
+			if (alarms.put(reminder.requestCode, reminder) != null) {
+				replaced++;
+			}
+		}
+		
+		armed = plan.reminders;
+		updateNextAlarmTime();
+		
+		// NO_UPDATE is never reached; the job is not scheduled again.
+		return Math.max(now + 1, plan.nextUpdate);
+	}
+	
+	private void deliver(long now) {
+		alarms.values().removeIf(reminder -> {
+			if (reminder.time > now) {
+				return false;
+			}
+			
+			delivered.merge(key(reminder.eventTime, reminder.reminderIndex), 1, Integer::sum);
+			return true;
+		});
+		
+		updateNextAlarmTime();
+	}
+	
+	private void updateNextAlarmTime() {
+		nextAlarmTime = Long.MAX_VALUE;
+		
+		for (ReminderPlanner.Reminder reminder : alarms.values()) {
+			nextAlarmTime = Math.min(nextAlarmTime, reminder.time);
+		}
+	}
+	
+	private void report(long nanos) {
+		final int[] missed = new int[REMINDER_NAMES.length];
+		int expected = 0;
+		int duplicated = 0;
+		int deliveredCount = 0;
+		
+		for (int count : delivered.values()) {
+			deliveredCount += count;
+			duplicated += count - 1;
+		}
+		
+		final long first = LocalDate.of(year, 1, 1).toEpochDay();
+		final long last = LocalDate.of(year + 1, 1, 1).toEpochDay();
+		
+		for (long day = first; day < last; day++) {
+			final double[] timings = getDay(day);
+			final long fajr = PrayerTimings.toEpochMillis(day, timings[PrayerTimings.FAJR]);
+			final long magrib = PrayerTimings.toEpochMillis(day, timings[PrayerTimings.MAGRIB]);
+			
+			final long[] eventTimes = {fajr, fajr, magrib, magrib};
+			final long[] leads = {3600 * 1000, 15 * 60 * 1000, 2 * 3600 * 1000, 15 * 60 * 1000};
+			
+			for (int reminder = REMINDER_PREFAST_MEAL; reminder <= REMINDER_BREAKFAST_CLOSE; reminder++) {
+				final long eventTime = eventTimes[reminder];
+				
+				// The first day has no job before it to schedule its reminders.
+				if (eventTime == PrayerTimings.NO_TIME_MILLIS || eventTime - leads[reminder] < start + 86400000L
+						|| eventTime - leads[reminder] >= end) {
+					continue;
+				}
+				
+				expected++;
+				
+				if (!delivered.containsKey(key(eventTime, reminder))) {
+					missed[reminder]++;
+				}
+			}
+		}
+		
+		int missedCount = 0;
+		StringBuilder breakdown = new StringBuilder();
+		
+		for (int i = 0; i < missed.length; i++) {
+			missedCount += missed[i];
+			
+			if (missed[i] != 0) {
+				breakdown.append(breakdown.length() == 0 ? "" : ", ").append(REMINDER_NAMES[i]).append(": ").append(missed[i]);
+			}
+		}
+		
+		System.out.printf("%-9s %11d %9d %12.0f %8d %9d %6d %7d %10d %8s %7d %7d%n", city.name, ticks, nanos / 1000000,
+				ticks * 1e9 / nanos, refills, reloads, jobRuns, alarmCalls, deliveredCount, missedCount + "/" + expected, duplicated,
+				replaced);
+		
+		if (breakdown.length() != 0) {
+			System.out.println("          missed " + breakdown);
+		}
+	}
+	
+	/**
+	 * Timings of a day, as <em>TimingsCache.VALUES</em>; what <em>CountdownBloc</em> computes.
+	 */
+	private double[] getDay(long epochDay) {
+		final LocalDate date = LocalDate.ofEpochDay(epochDay);
+		final boolean isRamadan = HijriCalendar.isRamadan(epochDay);
+		final TimingsMethod method = city.method;
+		
+		final double daysSinceEpoch = AstronomyMath.daysSinceEpoch(date.getYear(), date.getMonthValue(),
+				date.getDayOfMonth(), 12, 0, 0) - city.longitude / 15 / 24;
+		
+		final double[] dayTimings;
+		
+		if (method.usesFixedOffsetForIsha()) {
+			dayTimings = PrayerTimings.getTimings(method.getFajrAngleDegrees(), false,
+					(int) method.getIshaFixedOffset(isRamadan), daysSinceEpoch, 0, city.longitude, city.latitude);
+		}
+		else {
+			dayTimings = PrayerTimings.getTimings(method.getFajrAngleDegrees(), false, method.getIshaAngleDegrees(),
+					daysSinceEpoch, 0, city.longitude, city.latitude);
+		}
+		
+		final double[] timings = new double[7];
+		System.arraycopy(dayTimings, 0, timings, 0, 5);
+		timings[5] = PrayerTimings.getFajr(method.getFajrAngleDegrees(), daysSinceEpoch + 1, 0, city.longitude, city.latitude);
+		timings[6] = PrayerTimings.getMagrib(daysSinceEpoch - 1, 0, city.longitude, city.latitude);
+		
+		return timings;
+	}
+	
+	private static long key(long eventTime, int reminderIndex) {
+		return eventTime * 8 + reminderIndex;
+	}
+	
+	
+	private static final class City {
+		final String name;
+		final double longitude;
+		final double latitude;
+		final ZoneId zone;
+		final TimingsMethod method;
+		
+		City(String name, double longitude, double latitude, String zone, TimingsMethod method) {
+			this.name = name;
+			this.longitude = longitude;
+			this.latitude = latitude;
+			this.zone = ZoneId.of(zone);
+			this.method = method;
+		}
+	}
+}
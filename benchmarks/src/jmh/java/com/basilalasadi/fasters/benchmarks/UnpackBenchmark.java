@@ -0,0 +1,119 @@
+package com.basilalasadi.fasters.benchmarks;
+
+import com.basilalasadi.fasters.database.Unpacker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * First launch unpacking of the worldcities database: the old 1 KB copy loop against
+ * <em>Unpacker</em>, which also syncs, renames and writes the manifest. The archive is made of
+ * generated data of the same size as the real database, kept in memory like an asset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnpackBenchmark {
+	private static final int DATABASE_SIZE = 3203072;
+	
+	private byte[] archive;
+	private File destination;
+	
+	@Setup
+	public void setup() throws IOException {
+		// Rows of short words and numbers, which compress about as well as the real database.
+		final Random random = new Random(1);
+		final ByteArrayOutputStream database = new ByteArrayOutputStream(DATABASE_SIZE);
+		
+		while (database.size() < DATABASE_SIZE) {
+			for (int i = 4 + random.nextInt(8); i > 0; i--) {
+				database.write('a' + random.nextInt(26));
+			}
+			database.write(random.nextInt(256));
+			database.write(random.nextInt(256));
+		}
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+			zip.putNextEntry(new ZipEntry("worldcities.sqlite3"));
+			zip.write(database.toByteArray(), 0, DATABASE_SIZE);
+			zip.closeEntry();
+		}
+		
+		archive = bytes.toByteArray();
+		destination = File.createTempFile("worldcities", ".db");
+		
+		try (InputStream in = openEntry()) {
+			Unpacker.unpack(in, destination);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		Unpacker.delete(destination);
+	}
+	
+	@Benchmark
+	public long copyLoop() throws IOException {
+		try (InputStream in = openEntry(); FileOutputStream out = new FileOutputStream(destination)) {
+			byte[] buffer = new byte[1024];
+			
+			while (true) {
+				int numBytes = in.read(buffer);
+				
+				if (numBytes == -1) {
+					break;
+				}
+				else {
+					out.write(buffer, 0, numBytes);
+				}
+			}
+		}
+		
+		return destination.length();
+	}
+	
+	@Benchmark
+	public long unpacker() throws IOException {
+		try (InputStream in = openEntry()) {
+			return Unpacker.unpack(in, destination).size;
+		}
+	}
+	
+	@Benchmark
+	public boolean verify() {
+		return Unpacker.verify(destination);
+	}
+	
+	private InputStream openEntry() throws IOException {
+		ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive));
+		zip.getNextEntry();
+		return zip;
+	}
+}
@@ -0,0 +1,219 @@
+package com.basilalasadi.fasters.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+
+/**
+ * Converts the worldcities SQLite database (plain, or zipped as in the assets dir) to the
+ * columnar city store read by <em>CityStore</em> in the app. See that class for the format.
+ */
+public abstract class GenerateCityStoreTask extends DefaultTask {
+	public static final String FILE_NAME = "cities.bin";
+	public static final int MAGIC = 0x46435453;
+	public static final int VERSION = 1;
+	
+	/**
+	 * @return The worldcities database, either a SQLite file or a zip archive containing one.
+	 */
+	@InputFile
+	@PathSensitive(PathSensitivity.NONE)
+	public abstract RegularFileProperty getDatabase();
+	
+	/**
+	 * @return Directory to write <em>cities.bin</em> to.
+	 */
+	@OutputDirectory
+	public abstract DirectoryProperty getOutputDirectory();
+	
+	@TaskAction
+	public void generate() throws IOException, SQLException {
+		File database = getDatabase().get().getAsFile();
+		
+		if (database.getName().endsWith(".zip")) {
+			database = unzipDatabase(database, new File(getTemporaryDir(), "worldcities.sqlite3"));
+		}
+		
+		final List<String> countries = new ArrayList<>();
+		final List<Integer> countryStarts = new ArrayList<>();
+		final List<Integer> admins = new ArrayList<>();
+		final List<Integer> cities = new ArrayList<>();
+		final List<Double> longitudes = new ArrayList<>();
+		final List<Double> latitudes = new ArrayList<>();
+		final StringPool pool = new StringPool();
+		
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database.getAbsolutePath());
+				Statement statement = connection.createStatement();
+				ResultSet rows = statement.executeQuery(
+						"SELECT country, admin, city, longitude, latitude FROM cities ORDER BY country, admin, city")) {
+			
+			while (rows.next()) {
+				final String country = rows.getString(1);
+				
+				if (countries.isEmpty() || !countries.get(countries.size() - 1).equals(country)) {
+					countries.add(country);
+					countryStarts.add(cities.size());
+				}
+				
+				admins.add(pool.add(rows.getString(2)));
+				cities.add(pool.add(rows.getString(3)));
+				longitudes.add(rows.getDouble(4));
+				latitudes.add(rows.getDouble(5));
+			}
+		}
+		
+		final int[] countryNames = new int[countries.size()];
+		
+		for (int i = 0; i < countryNames.length; i++) {
+			countryNames[i] = pool.add(countries.get(i));
+		}
+		
+		final File output = new File(getOutputDirectory().get().getAsFile(), FILE_NAME);
+		
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(cities.size());
+			out.writeInt(countries.size());
+			out.writeInt(pool.size());
+			out.writeInt(pool.byteSize());
+			
+			for (double longitude : longitudes) {
+				out.writeDouble(longitude);
+			}
+			for (double latitude : latitudes) {
+				out.writeDouble(latitude);
+			}
+			for (int admin : admins) {
+				out.writeInt(admin);
+			}
+			for (int city : cities) {
+				out.writeInt(city);
+			}
+			for (int countryName : countryNames) {
+				out.writeInt(countryName);
+			}
+			for (int countryStart : countryStarts) {
+				out.writeInt(countryStart);
+			}
+			out.writeInt(cities.size());
+			
+			pool.write(out);
+		}
+		
+		getLogger().info("Wrote {} cities of {} countries to {}.", cities.size(), countries.size(), output);
+	}
+	
+	/**
+	 * Extracts the SQLite database from a zip archive.
+	 */
+	private static File unzipDatabase(File archive, File destination) throws IOException {
+		try (ZipInputStream in = new ZipInputStream(new FileInputStream(archive))) {
+			ZipEntry entry;
+			
+			while ((entry = in.getNextEntry()) != null) {
+				final String name = entry.getName();
+				
+				if (name.endsWith(".db") || name.endsWith(".sqlite") || name.endsWith(".sqlite3")) {
+					try (OutputStream out = new FileOutputStream(destination)) {
+						copy(in, out);
+					}
+					
+					return destination;
+				}
+			}
+		}
+		
+		throw new FileNotFoundException("No database in " + archive + ".");
+	}
+	
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		final byte[] buffer = new byte[64 * 1024];
+		int n;
+		
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+	}
+	
+	
+	/**
+	 * Deduplicated UTF-8 strings, stored back to back.
+	 */
+	private static final class StringPool {
+		private final Map<String, Integer> indices = new HashMap<>();
+		private final List<byte[]> strings = new ArrayList<>();
+		private int byteSize = 0;
+		
+		/**
+		 * @return index of the string.
+		 */
+		int add(String string) {
+			Integer index = indices.get(string);
+			
+			if (index == null) {
+				final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				
+				index = strings.size();
+				indices.put(string, index);
+				strings.add(bytes);
+				byteSize += bytes.length;
+			}
+			
+			return index;
+		}
+		
+		int size() {
+			return strings.size();
+		}
+		
+		int byteSize() {
+			return byteSize;
+		}
+		
+		/**
+		 * Writes the offsets of the strings, followed by the strings.
+		 */
+		void write(DataOutputStream out) throws IOException {
+			int offset = 0;
+			
+			for (byte[] string : strings) {
+				out.writeInt(offset);
+				offset += string.length;
+			}
+			out.writeInt(offset);
+			
+			for (byte[] string : strings) {
+				out.write(string);
+			}
+		}
+	}
+}